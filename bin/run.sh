@@ -39,5 +39,9 @@ else
     echo "Config file '$CONFIG_FILE_PATH' does not exists. Using default config file from app resources"
     java -jar ${WORK_DIR}/ojai-search-plugin.jar &
 fi
+SEARCH_SERVICE_PID=$!
 
-sleep infinity
+# Forward 'docker stop' signal, so the service flushes pending changes and commits offsets before exit
+trap 'kill -TERM ${SEARCH_SERVICE_PID}; wait ${SEARCH_SERVICE_PID}' TERM INT
+
+wait ${SEARCH_SERVICE_PID}
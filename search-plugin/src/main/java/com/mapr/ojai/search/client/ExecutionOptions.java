@@ -0,0 +1,75 @@
+package com.mapr.ojai.search.client;
+
+/**
+ * Execution settings of the client. Limits, which are not set, are not applied:
+ * <pre>
+ *     searchClient.setExecutionOptions(new ExecutionOptions()
+ *             .virtualThreads(true)       // searches run at virtual threads on Java 21+
+ *             .elasticConcurrency(64)     // at most 64 concurrent ElasticSearch requests
+ *             .maprDbConcurrency(128));   // at most 128 concurrent MapR-DB fetches
+ * </pre>
+ * Concurrency limits apply to both blocking and {@link OjaiSearchClient#searchAsync asynchronous} searches, callers
+ * over the limit wait for a permit.
+ */
+public class ExecutionOptions {
+
+    private boolean virtualThreads;
+    private Integer elasticConcurrency;
+    private Integer maprDbConcurrency;
+
+    /**
+     * Whether asynchronous searches and calls with deadline run at virtual threads. Falls back to platform threads if
+     * the JVM does not support virtual threads.
+     */
+    public ExecutionOptions virtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    /**
+     * Maximum number of concurrent ElasticSearch requests of this client.
+     */
+    public ExecutionOptions elasticConcurrency(int elasticConcurrency) {
+
+        if (elasticConcurrency <= 0) {
+            throw new IllegalArgumentException("ElasticSearch concurrency must be greater than zero");
+        }
+
+        this.elasticConcurrency = elasticConcurrency;
+        return this;
+    }
+
+    /**
+     * Maximum number of concurrent fetches of the found documents from MapR-DB JSON Tables.
+     */
+    public ExecutionOptions maprDbConcurrency(int maprDbConcurrency) {
+
+        if (maprDbConcurrency <= 0) {
+            throw new IllegalArgumentException("MapR-DB concurrency must be greater than zero");
+        }
+
+        this.maprDbConcurrency = maprDbConcurrency;
+        return this;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public Integer getElasticConcurrency() {
+        return elasticConcurrency;
+    }
+
+    public Integer getMaprDbConcurrency() {
+        return maprDbConcurrency;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionOptions{" +
+                "virtualThreads=" + virtualThreads +
+                ", elasticConcurrency=" + elasticConcurrency +
+                ", maprDbConcurrency=" + maprDbConcurrency +
+                '}';
+    }
+}
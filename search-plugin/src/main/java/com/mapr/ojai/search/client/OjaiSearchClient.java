@@ -1,13 +1,50 @@
 package com.mapr.ojai.search.client;
 
+import com.mapr.ojai.search.client.aggregation.AggregationResult;
+import com.mapr.ojai.search.client.aggregation.AggregationResults;
+import com.mapr.ojai.search.client.aggregation.OjaiSearchAggregation;
+import com.mapr.ojai.search.client.query.FilterQuery;
 import com.mapr.ojai.search.client.query.OjaiSearchQuery;
+import com.mapr.ojai.search.config.FieldConfig;
+import com.mapr.ojai.search.lucene.LuceneDocuments;
+import com.mapr.ojai.search.lucene.LuceneIndexes;
+import com.mapr.ojai.search.lucene.LuceneQueryContext;
+import com.mapr.ojai.search.util.DocumentIds;
+import com.mapr.ojai.search.util.OjaiSearchServiceUtils;
+import com.mapr.ojai.search.util.ThreadPools;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.IndicesOptions;
 import org.elasticsearch.client.transport.TransportClient;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.text.Text;
 import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.elasticsearch.index.IndexNotFoundException;
+import org.elasticsearch.index.query.Operator;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.script.ScriptType;
+import org.elasticsearch.script.mustache.SearchTemplateRequestBuilder;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.Aggregation;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.subphase.highlight.HighlightBuilder;
+import org.elasticsearch.search.fetch.subphase.highlight.HighlightField;
+import org.elasticsearch.search.sort.SortOrder;
 import org.elasticsearch.transport.client.PreBuiltTransportClient;
 import org.ojai.DocumentStream;
 import org.ojai.store.*;
@@ -18,9 +55,31 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -28,17 +87,186 @@ public class OjaiSearchClient implements Closeable {
 
     private static final Logger log = LoggerFactory.getLogger(OjaiSearchClient.class);
 
+    /**
+     * Log of the searches, which take longer than {@link SearchOptions#slowQueryMs(long) threshold}.
+     */
+    private static final Logger slowLog = LoggerFactory.getLogger("com.mapr.ojai.search.client.slowlog");
+
+    /**
+     * Same as default size of ES search request.
+     */
+    private static final int DEFAULT_MAX_HITS = 10;
+
+    private static final String SEARCH_TEMPLATE_ID_PREFIX = "ojai-search-";
+
+    /**
+     * Reserved parameters of search templates, which carry the limits of prepared search execution.
+     */
+    private static final String RESERVED_PARAM_PREFIX = "ojai_";
+    private static final String SIZE_PARAM = RESERVED_PARAM_PREFIX + "size";
+    private static final String TIMEOUT_PARAM = RESERVED_PARAM_PREFIX + "timeout";
+    private static final String TERMINATE_AFTER_PARAM = RESERVED_PARAM_PREFIX + "terminate_after";
+
+    /**
+     * Reserved parameter, which carries the rendered profile, sort and highlight options of the execution.
+     */
+    private static final String HIT_OPTIONS_PARAM = RESERVED_PARAM_PREFIX + "hit_options";
+
+    /**
+     * Default ES timeout and per-shard document limit of suggestions. Superseded suggestion can not be cancelled at
+     * the cluster, so its work is bounded by these limits instead.
+     */
+    private static final long DEFAULT_SUGGEST_TIMEOUT_MS = 200L;
+    private static final int DEFAULT_SUGGEST_TERMINATE_AFTER = 10_000;
+
+    static final long NO_DEADLINE = Long.MIN_VALUE;
+
+    private static final long DEFAULT_CONSISTENT_READ_TIMEOUT_MS = 10_000L;
+    private static final long WATERMARK_POLL_INTERVAL_MS = 20L;
+
     private final Connection connection;
     private final TransportClient client;
+    private final LuceneIndexes luceneIndexes;
+
+    /**
+     * Ids of stored search templates by their source.
+     */
+    private final Map<String, String> searchTemplates = new ConcurrentHashMap<>();
+
+    /**
+     * Executes asynchronous searches, as well as OJAI and Lucene calls of the searches with deadline.
+     */
+    private volatile ExecutorService executor = ThreadPools.newExecutor("ojai-search", false);
+
+    /**
+     * Permits of concurrent ElasticSearch requests and MapR-DB fetches, {@code null} if not limited.
+     */
+    private volatile Semaphore elasticPermits;
+    private volatile Semaphore maprDbPermits;
+
+    private volatile ExecutionOptions executionOptions = new ExecutionOptions();
 
+    private volatile SearchOptions defaultOptions = new SearchOptions();
+
+    /**
+     * Admission state of the registered tenants by their names.
+     */
+    private final Map<String, TenantState> tenants = new ConcurrentHashMap<>();
+
+    /**
+     * Policy of a tenant, along with its rate limit, concurrency permits and metrics. Searches and MapR-DB fetches
+     * of the found documents are limited by separate permits, so neither holds a permit after the call returns.
+     */
+    private static class TenantState {
+
+        private final String tenant;
+        private final TenantPolicy policy;
+        private final TokenBucket rateLimit;
+        private final Semaphore permits;
+        private final Semaphore fetchPermits;
+        private final TenantMetrics metrics;
+
+        private TenantState(String tenant, TenantPolicy policy, TenantMetrics metrics) {
+            this.tenant = tenant;
+            this.policy = policy;
+            this.rateLimit = (policy.getSearchesPerSecond() != null)
+                    ? new TokenBucket(policy.getSearchesPerSecond(), policy.getBurst())
+                    : null;
+            this.permits = (policy.getMaxConcurrentSearches() != null)
+                    ? new Semaphore(policy.getMaxConcurrentSearches())
+                    : null;
+            this.fetchPermits = (policy.getMaxConcurrentSearches() != null)
+                    ? new Semaphore(policy.getMaxConcurrentSearches())
+                    : null;
+            this.metrics = metrics;
+        }
+
+        /**
+         * Caps the hits and ES timeout of the options by the tenant's limits.
+         */
+        private SearchOptions limit(SearchOptions options) {
+
+            SearchOptions limited = new SearchOptions(options);
+            if (policy.getMaxHits() != null) {
+                limited.maxHits(Math.min(maxHits(options), policy.getMaxHits()));
+            }
+
+            if (policy.getTimeoutMs() != null) {
+                limited.timeoutMs((options.getTimeoutMs() != null)
+                        ? Math.min(options.getTimeoutMs(), policy.getTimeoutMs())
+                        : policy.getTimeoutMs());
+            }
+
+            return limited;
+        }
+
+        /**
+         * Admits the search. Search over the rate limit fails immediately, search over the concurrency limit waits
+         * for a permit until the deadline.
+         */
+        private void admit(long deadlineNanos) {
+
+            if (rateLimit != null && !rateLimit.tryAcquire()) {
+                metrics.rejected();
+                throw new IllegalStateException("Search rate limit of tenant '" + tenant + "' is exceeded");
+            }
+
+            if (permits == null) {
+                return;
+            }
+
+            try {
+                if (deadlineNanos == NO_DEADLINE) {
+                    permits.acquire();
+                } else if (!permits.tryAcquire(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS)) {
+                    metrics.rejected();
+                    throw new IllegalStateException("Concurrency limit of tenant '" + tenant +
+                            "' is not released before the deadline", new TimeoutException());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Search is interrupted", e);
+            }
+        }
+
+        private void complete(long startedNanos) {
+
+            if (permits != null) {
+                permits.release();
+            }
+
+            metrics.searched(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos));
+        }
+    }
+
+    /**
+     * Result of the search. Fetch of the found documents of the tenant's search is limited by the tenant's fetch
+     * permits, which are held only while the fetch is started.
+     */
     public class OjaiSearchResult {
 
         private String tablePath;
         private List<String> documentIds;
+        private List<OjaiSearchHit> hits;
+        private boolean timedOut;
+        private boolean partial;
+        private long deadlineNanos = NO_DEADLINE;
+        private final SearchTimings timings = new SearchTimings();
 
-        private OjaiSearchResult(String tablePath, List<String> documentIds) {
+        /**
+         * Executed query as it is logged: ES search source, search template with its parameters or Lucene query.
+         */
+        private String executedQuery;
+        private Long slowQueryMs;
+        private final AtomicBoolean slowLogged = new AtomicBoolean();
+        private Semaphore fetchPermits;
+
+        private OjaiSearchResult(String tablePath, List<OjaiSearchHit> hits) {
             this.tablePath = tablePath;
-            this.documentIds = documentIds;
+            this.hits = hits;
+            this.documentIds = hits.stream()
+                    .map(OjaiSearchHit::getEncodedId)
+                    .collect(Collectors.toList());
         }
 
         private OjaiSearchResult(String tablePath) {
@@ -49,10 +277,53 @@ public class OjaiSearchClient implements Closeable {
             return documentIds != null ? documentIds : Collections.emptyList();
         }
 
+        /**
+         * Returns the hits in the order of relevance or of the {@link SearchOptions#sort(String, boolean) sort}, along
+         * with their scores, highlighted fragments and sort values.
+         *
+         * @return search hits.
+         */
+        public List<OjaiSearchHit> getHits() {
+            return hits != null ? hits : Collections.emptyList();
+        }
+
+        /**
+         * Returns whether ElasticSearch search timed out, so only hits, collected before the timeout, are returned.
+         *
+         * @return {@code true} if search timed out.
+         */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * Returns whether result may miss matching documents, since search timed out, terminated early or some of
+         * the shards failed.
+         *
+         * @return {@code true} if result is partial.
+         */
+        public boolean isPartial() {
+            return partial;
+        }
+
+        /**
+         * Returns timings of the search phases. Fetch phase is recorded once the stream of the found documents is
+         * exhausted or closed.
+         *
+         * @return search timings.
+         */
+        public SearchTimings getTimings() {
+            return timings;
+        }
+
         public DocumentStream find() {
 
-            QueryCondition condition = connection.newCondition().in("_id", getDocumentIds());
-            return connection.getStore(tablePath).find(condition.build());
+            QueryCondition condition = connection.newCondition().in("_id", DocumentIds.decodeAll(getDocumentIds()));
+            long startedNanos = System.nanoTime();
+            return timed(() -> withinDeadline(deadlineNanos, () -> withPermit(maprDbPermits, deadlineNanos,
+                    () -> withPermit(fetchPermits, deadlineNanos,
+                            () -> connection.getStore(tablePath).find(condition.build()))), DocumentStream::close),
+                    startedNanos);
         }
 
         public QueryResult find(QueryCondition queryCondition) {
@@ -60,16 +331,236 @@ public class OjaiSearchClient implements Closeable {
             Query query = connection.newQuery()
                     .where(connection.newCondition()
                             .and()
-                            .condition(connection.newCondition().in("_id", getDocumentIds()).build())
+                            .condition(connection.newCondition()
+                                    .in("_id", DocumentIds.decodeAll(getDocumentIds()))
+                                    .build())
                             .condition(queryCondition.isBuilt() ? queryCondition : queryCondition.build())
                             .close()
                             .build()
                     )
                     .build();
 
-            return connection.getStore(tablePath).find(query);
+            long startedNanos = System.nanoTime();
+            return timed(() -> withinDeadline(deadlineNanos, () -> withPermit(maprDbPermits, deadlineNanos,
+                    () -> withPermit(fetchPermits, deadlineNanos, () -> connection.getStore(tablePath).find(query))),
+                    DocumentStream::close), startedNanos);
+        }
+
+        private QueryResult timed(Supplier<DocumentStream> fetch, long startedNanos) {
+            return new TimedDocumentStream(fetch.get(), startedNanos, deadlineNanos,
+                    (fetchNanos, documentsReturned) -> {
+                        timings.fetched(fetchNanos, documentsReturned);
+                        logIfSlow();
+                    });
+        }
+
+        /**
+         * Logs the query along with its timings once, if the search phases, recorded so far, exceed the threshold.
+         */
+        private void logIfSlow() {
+            if (slowQueryMs != null && timings.getTotalMs() > slowQueryMs && slowLogged.compareAndSet(false, true)) {
+                slowLog.warn("Slow search of table '{}': {}, query: {}", tablePath, timings, executedQuery);
+            }
+        }
+
+    }
+
+    /**
+     * Search query, compiled once into ElasticSearch search template, which is stored at the cluster. Executions send
+     * only the template id and parameter values, so the query is neither rebuilt at the client nor transferred
+     * over the wire.
+     */
+    public class PreparedSearch {
+
+        private final String tablePath;
+        private final String templateId;
+
+        private PreparedSearch(String tablePath, String templateId) {
+            this.tablePath = tablePath;
+            this.templateId = templateId;
+        }
+
+        public OjaiSearchResult execute(String name, Object value) {
+            return execute(Collections.singletonMap(name, value));
+        }
+
+        public OjaiSearchResult execute(String name, Object value, SearchOptions options) {
+            return execute(Collections.singletonMap(name, value), options);
+        }
+
+        /**
+         * Executes prepared search, binding placeholders to the specified values.
+         *
+         * @param params placeholder values by placeholder names.
+         * @return search result.
+         */
+        public OjaiSearchResult execute(Map<String, Object> params) {
+            return execute(params, defaultOptions);
+        }
+
+        /**
+         * Executes prepared search, binding placeholders to the specified values and applying the specified options,
+         * the same way as {@link #search(String, OjaiSearchQuery, SearchOptions) search} does. Max hits, ES timeout,
+         * terminate-after, as well as profile, sort and highlight options are bound as reserved template parameters.
+         *
+         * @param params  placeholder values by placeholder names.
+         * @param options search limits, can be {@code null}.
+         * @return search result.
+         */
+        public OjaiSearchResult execute(Map<String, Object> params, SearchOptions options) {
+
+            if (params == null) {
+                throw new IllegalArgumentException("Parameters can not be null");
+            }
+
+            for (String name : params.keySet()) {
+                if (name.startsWith(RESERVED_PARAM_PREFIX)) {
+                    throw new IllegalArgumentException("Parameter name '" + name + "' is reserved");
+                }
+            }
+
+            SearchOptions effectiveOptions = (options != null) ? options.withDefaults(defaultOptions) : defaultOptions;
+            return admitted(effectiveOptions, (limited, deadlineNanos) -> execute(params, limited, deadlineNanos));
+        }
+
+        private OjaiSearchResult execute(Map<String, Object> params, SearchOptions options, long deadlineNanos) {
+
+            awaitReadAfter(tablePath, options, deadlineNanos);
+
+            Map<String, Object> boundParams = templateParams(params, options);
+            SearchRequest searchRequest = new SearchRequest(indexName(tablePath, options));
+            searchRequest.indicesOptions(IndicesOptions.lenientExpandOpen());
+
+            long startedNanos = System.nanoTime();
+            SearchResponse response = withPermit(elasticPermits, deadlineNanos, () -> await(
+                    new SearchTemplateRequestBuilder(client)
+                            .setRequest(searchRequest)
+                            .setScript(templateId)
+                            .setScriptType(ScriptType.STORED)
+                            .setScriptParams(boundParams)
+                            .execute(),
+                    deadlineNanos).getResponse());
+
+            OjaiSearchResult result = toResult(tablePath, response, startedNanos);
+            result.executedQuery = "template " + templateId + ", params " + boundParams;
+            result.deadlineNanos = deadlineNanos;
+            result.fetchPermits = fetchPermits(options);
+            result.slowQueryMs = options.getSlowQueryMs();
+            result.logIfSlow();
+            return result;
+        }
+
+        public String getTemplateId() {
+            return templateId;
+        }
+    }
+
+    /**
+     * Search-as-you-type session, for example of a single user's input box. Each new suggestion request releases
+     * the caller of the in-flight request of the same session, since its result is superseded. Superseded request
+     * still runs at the cluster until it completes or its ES timeout elapses.
+     */
+    public class SuggestSession {
+
+        private final AtomicReference<ActionFuture<SearchResponse>> inFlight = new AtomicReference<>();
+
+        private SuggestSession() {
+        }
+
+        /**
+         * Suggests distinct values of the autocomplete field, which words start with the words of the specified
+         * prefix. Field must be declared with 'autocomplete: true' option at the table's mapping.
+         *
+         * @param tablePath MapR-DB JSON Table path.
+         * @param field     autocomplete field.
+         * @param prefix    text, entered so far.
+         * @param limit     maximum number of matching documents.
+         * @return suggested field values.
+         * @throws CancellationException if the request was superseded by the newer request of the same session.
+         */
+        public List<String> suggest(String tablePath, String field, String prefix, int limit) {
+            return suggest(tablePath, field, prefix, limit, defaultOptions);
+        }
+
+        /**
+         * Suggests distinct values of the autocomplete field, applying the specified limits. Suggestion is admitted
+         * the same way as search: it waits for the concurrency permit within the deadline and is limited by the
+         * tenant's policy. ES timeout and terminate-after default to 200 ms and 10000 documents per shard.
+         *
+         * @param tablePath MapR-DB JSON Table path.
+         * @param field     autocomplete field.
+         * @param prefix    text, entered so far.
+         * @param limit     maximum number of matching documents.
+         * @param options   search limits, can be {@code null}.
+         * @return suggested field values.
+         * @throws CancellationException if the request was superseded by the newer request of the same session.
+         */
+        public List<String> suggest(String tablePath, String field, String prefix, int limit,
+                                    SearchOptions options) {
+
+            if (tablePath == null || tablePath.isEmpty()) {
+                throw new IllegalArgumentException("Table path can not be empty");
+            }
+
+            if (field == null || field.isEmpty()) {
+                throw new IllegalArgumentException("Autocomplete field can not be empty");
+            }
+
+            if (limit <= 0) {
+                throw new IllegalArgumentException("Suggestions limit must be greater than zero");
+            }
+
+            if (luceneIndexes != null) {
+                throw new UnsupportedOperationException("Suggestions are not supported by embedded Lucene backend");
+            }
+
+            if (prefix == null || prefix.trim().isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            SearchOptions effectiveOptions = ((options != null) ? options.withDefaults(defaultOptions) : defaultOptions)
+                    .withDefaults(new SearchOptions()
+                            .timeoutMs(DEFAULT_SUGGEST_TIMEOUT_MS)
+                            .terminateAfter(DEFAULT_SUGGEST_TERMINATE_AFTER));
+
+            SearchResponse response = admitted(effectiveOptions, (limited, deadlineNanos) -> {
+
+                SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+                        .query(QueryBuilders.matchQuery(field + "." + FieldConfig.AUTOCOMPLETE_SUBFIELD, prefix)
+                                .operator(Operator.AND))
+                        .fetchSource(field, null)
+                        .size((limited.getMaxHits() != null) ? Math.min(limit, limited.getMaxHits()) : limit);
+
+                return executeSearch(tablePath, sourceBuilder, limited, deadlineNanos, future -> {
+                    ActionFuture<SearchResponse> superseded = inFlight.getAndSet(future);
+                    if (superseded != null) {
+                        superseded.cancel(true);
+                    }
+                }, future -> inFlight.compareAndSet(future, null));
+            });
+
+            Set<String> suggestions = new LinkedHashSet<>();
+            for (SearchHit hit : response.getHits().getHits()) {
+                Object value = XContentMapValues.extractValue(field, hit.getSourceAsMap());
+                if (value instanceof List) {
+                    ((List<?>) value).forEach(element -> suggestions.add(String.valueOf(element)));
+                } else if (value != null) {
+                    suggestions.add(String.valueOf(value));
+                }
+            }
+
+            return new ArrayList<>(suggestions);
         }
 
+        /**
+         * Cancels in-flight request of this session, if any.
+         */
+        public void cancel() {
+            ActionFuture<SearchResponse> current = inFlight.getAndSet(null);
+            if (current != null) {
+                current.cancel(true);
+            }
+        }
     }
 
     public OjaiSearchClient(Connection connection, String elasticHost, int elasticPort) {
@@ -80,6 +571,7 @@ public class OjaiSearchClient implements Closeable {
 
         this.connection = connection;
         this.client = createElasticSearchClient(elasticHost, elasticPort);
+        this.luceneIndexes = null;
     }
 
     public OjaiSearchClient(Connection connection, String elasticHostPort) {
@@ -99,6 +591,7 @@ public class OjaiSearchClient implements Closeable {
             int port = Integer.valueOf(hostPortPair[1]);
             this.connection = connection;
             this.client = createElasticSearchClient(host, port);
+            this.luceneIndexes = null;
         } catch (NumberFormatException e) {
             throw new IllegalArgumentException("Invalid Elastic Search host-port string. Can not parse '" +
                     hostPortPair[1] + "' as port number");
@@ -113,6 +606,7 @@ public class OjaiSearchClient implements Closeable {
 
         this.connection = DriverManager.getConnection(connectionURL);
         this.client = createElasticSearchClient(elasticHost, elasticPort);
+        this.luceneIndexes = null;
     }
 
     public OjaiSearchClient(String connectionURL, String elasticHostPort) {
@@ -128,12 +622,35 @@ public class OjaiSearchClient implements Closeable {
             int port = Integer.valueOf(hostPortPair[1]);
             this.connection = DriverManager.getConnection(connectionURL);
             this.client = createElasticSearchClient(host, port);
+            this.luceneIndexes = null;
         } catch (NumberFormatException e) {
             throw new IllegalArgumentException("Invalid Elastic Search host-port string. Can not parse '" +
                     hostPortPair[1] + "' as port number");
         }
     }
 
+    /**
+     * Creates client, which searches embedded Lucene indices instead of ElasticSearch. Indices are maintained by the
+     * Search Service, which runs with 'lucene' backend.
+     *
+     * @param connection    OJAI connection.
+     * @param luceneIndexes embedded Lucene indices, obtained via {@link LuceneIndexes#open}.
+     */
+    public OjaiSearchClient(Connection connection, LuceneIndexes luceneIndexes) {
+
+        if (connection == null) {
+            throw new IllegalArgumentException("OJAI connection can not be null");
+        }
+
+        if (luceneIndexes == null) {
+            throw new IllegalArgumentException("Lucene indexes can not be null");
+        }
+
+        this.connection = connection;
+        this.client = null;
+        this.luceneIndexes = luceneIndexes;
+    }
+
     private TransportClient createElasticSearchClient(String elasticHost, int elasticPort) {
 
         if (elasticHost == null || elasticHost.isEmpty()) {
@@ -156,6 +673,557 @@ public class OjaiSearchClient implements Closeable {
     }
 
     public OjaiSearchResult search(String tablePath, OjaiSearchQuery query) {
+        return search(tablePath, query, defaultOptions);
+    }
+
+    /**
+     * Searches documents asynchronously. Search runs at the client's executor, which uses virtual threads if enabled
+     * by {@link #setExecutionOptions(ExecutionOptions)}, so thousands of concurrent searches do not require a large
+     * thread pool.
+     *
+     * @param tablePath MapR-DB JSON Table path.
+     * @param query     OJAI search query.
+     * @param options   search limits, can be {@code null}.
+     * @return future of the search result.
+     */
+    public CompletableFuture<OjaiSearchResult> searchAsync(String tablePath, OjaiSearchQuery query,
+                                                           SearchOptions options) {
+        return CompletableFuture.supplyAsync(() -> search(tablePath, query, options), executor);
+    }
+
+    /**
+     * Searches documents, applying the specified limits. Limits, which are not set, are taken from the
+     * {@link #setDefaultOptions(SearchOptions) default options}. Deadline covers both this call and the subsequent
+     * {@link OjaiSearchResult#find() fetch} of the found documents.
+     *
+     * @param tablePath MapR-DB JSON Table path.
+     * @param query     OJAI search query.
+     * @param options   search limits.
+     * @return search result.
+     */
+    public OjaiSearchResult search(String tablePath, OjaiSearchQuery query, SearchOptions options) {
+
+        checkSearchArguments(tablePath, query);
+        SearchOptions effectiveOptions = (options != null) ? options.withDefaults(defaultOptions) : defaultOptions;
+        return admitted(effectiveOptions, (limited, deadlineNanos) -> search(tablePath, query, limited,
+                deadlineNanos));
+    }
+
+    /**
+     * Executes the call, admitted by the tenant of the options, if any. Tenant's permit is held until the call
+     * completes.
+     *
+     * @param options effective options.
+     * @param call    call, which accepts options, limited by the tenant's policy, and the deadline.
+     */
+    private <T> T admitted(SearchOptions options, BiFunction<SearchOptions, Long, T> call) {
+
+        TenantState tenantState = tenantState(options.getTenant());
+        if (tenantState == null) {
+            return call.apply(options, deadlineNanos(options));
+        }
+
+        SearchOptions limited = tenantState.limit(options);
+        long deadlineNanos = deadlineNanos(limited);
+        tenantState.admit(deadlineNanos);
+
+        long startedNanos = System.nanoTime();
+        try {
+            return call.apply(limited, deadlineNanos);
+        } finally {
+            tenantState.complete(startedNanos);
+        }
+    }
+
+    private OjaiSearchResult search(String tablePath, OjaiSearchQuery query, SearchOptions effectiveOptions,
+                                    long deadlineNanos) {
+
+        awaitReadAfter(tablePath, effectiveOptions, deadlineNanos);
+
+        OjaiSearchResult result;
+        long startedNanos = System.nanoTime();
+        if (luceneIndexes != null) {
+            AtomicReference<String> luceneQuery = new AtomicReference<>();
+            result = new OjaiSearchResult(tablePath, withinDeadline(deadlineNanos,
+                    () -> searchLucene(tablePath, query, maxHits(effectiveOptions), luceneQuery::set)));
+            result.timings.searched(System.nanoTime() - startedNanos, result.getDocumentIds().size());
+            result.executedQuery = luceneQuery.get();
+        } else {
+            SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
+            sourceBuilder.query(elasticQuery(query)).size(maxHits(effectiveOptions)).fetchSource(false);
+            applyHitOptions(sourceBuilder, effectiveOptions);
+
+            SearchResponse response = executeSearch(tablePath, sourceBuilder, effectiveOptions, deadlineNanos);
+            result = toResult(tablePath, response, startedNanos);
+            result.executedQuery = sourceBuilder.toString();
+        }
+
+        result.deadlineNanos = deadlineNanos;
+        result.fetchPermits = fetchPermits(effectiveOptions);
+        result.slowQueryMs = effectiveOptions.getSlowQueryMs();
+        result.logIfSlow();
+        return result;
+    }
+
+    /**
+     * Waits until the changes up to the {@link SearchOptions#readAfter(long) read-after} timestamp are indexed, if
+     * it is set.
+     */
+    private void awaitReadAfter(String tablePath, SearchOptions options, long deadlineNanos) {
+
+        if (options.getReadAfter() == null) {
+            return;
+        }
+
+        long waitNanos = (deadlineNanos == NO_DEADLINE)
+                ? TimeUnit.MILLISECONDS.toNanos(DEFAULT_CONSISTENT_READ_TIMEOUT_MS)
+                : remainingNanos(deadlineNanos);
+        if (!awaitIndexed(tablePath, options.getReadAfter(), TimeUnit.NANOSECONDS.toMillis(waitNanos))) {
+            throw new IllegalStateException("Changes of table '" + tablePath + "' up to " +
+                    options.getReadAfter() + " are not indexed in time", new TimeoutException());
+        }
+    }
+
+    private OjaiSearchResult toResult(String tablePath, SearchResponse response, long startedNanos) {
+
+        long searchedNanos = System.nanoTime();
+        OjaiSearchResult result = new OjaiSearchResult(tablePath, toHits(response));
+        result.timings.searched(response, searchedNanos - startedNanos, System.nanoTime() - searchedNanos);
+        result.timedOut = response.isTimedOut();
+        result.partial = response.isTimedOut() || Boolean.TRUE.equals(response.isTerminatedEarly()) ||
+                response.getFailedShards() > 0;
+        return result;
+    }
+
+    /**
+     * Registers the tenant or replaces its policy. Searches with {@link SearchOptions#tenant(String) tenant} option
+     * are admitted and limited according to the tenant's policy. Metrics of the tenant are retained on replacement.
+     *
+     * @param tenant tenant name.
+     * @param policy tenant's limits.
+     */
+    public void registerTenant(String tenant, TenantPolicy policy) {
+
+        if (tenant == null || tenant.isEmpty()) {
+            throw new IllegalArgumentException("Tenant can not be empty");
+        }
+
+        if (policy == null) {
+            throw new IllegalArgumentException("Tenant policy can not be null");
+        }
+
+        tenants.compute(tenant, (name, existing) -> new TenantState(name, policy,
+                (existing != null) ? existing.metrics : new TenantMetrics(name)));
+    }
+
+    /**
+     * Returns search metrics of the registered tenant.
+     *
+     * @param tenant tenant name.
+     * @return tenant's metrics.
+     */
+    public TenantMetrics getTenantMetrics(String tenant) {
+        return tenantStateOrFail(tenant).metrics;
+    }
+
+    private TenantState tenantState(String tenant) {
+        return (tenant != null) ? tenantStateOrFail(tenant) : null;
+    }
+
+    /**
+     * Returns permits of the MapR-DB fetches of the tenant of the options, {@code null} if not limited.
+     */
+    private Semaphore fetchPermits(SearchOptions options) {
+        TenantState tenantState = tenantState(options.getTenant());
+        return (tenantState != null) ? tenantState.fetchPermits : null;
+    }
+
+    private TenantState tenantStateOrFail(String tenant) {
+
+        TenantState tenantState = tenants.get(tenant);
+        if (tenantState == null) {
+            throw new IllegalArgumentException("Tenant '" + tenant + "' is not registered");
+        }
+
+        return tenantState;
+    }
+
+    /**
+     * Executes structured query in filter context, so it neither computes scores nor misses ES query cache.
+     */
+    private static QueryBuilder elasticQuery(OjaiSearchQuery query) {
+        return (query instanceof FilterQuery) ? QueryBuilders.constantScoreQuery(query.query()) : query.query();
+    }
+
+    /**
+     * Executes structured query as constant score query, the same way as ElasticSearch filter context does.
+     */
+    private static org.apache.lucene.search.Query luceneQuery(OjaiSearchQuery query, LuceneQueryContext context) {
+        org.apache.lucene.search.Query luceneQuery = query.luceneQuery(context);
+        return (query instanceof FilterQuery) ? new ConstantScoreQuery(luceneQuery) : luceneQuery;
+    }
+
+    /**
+     * Applies profile, sort and highlight options to the search source.
+     */
+    private static void applyHitOptions(SearchSourceBuilder sourceBuilder, SearchOptions options) {
+
+        if (Boolean.TRUE.equals(options.getProfile())) {
+            sourceBuilder.profile(true);
+        }
+
+        if (options.getHighlightFields() != null) {
+            sourceBuilder.highlighter(highlighter(options));
+        }
+
+        if (options.getSort() != null) {
+            options.getSort().forEach((field, ascending) ->
+                    sourceBuilder.sort(field, ascending ? SortOrder.ASC : SortOrder.DESC));
+            sourceBuilder.trackScores(true);
+        }
+    }
+
+    private static HighlightBuilder highlighter(SearchOptions options) {
+
+        HighlightBuilder highlighter = new HighlightBuilder();
+        options.getHighlightFields().forEach(highlighter::field);
+
+        if (options.getFragmentSize() != null) {
+            highlighter.fragmentSize(options.getFragmentSize());
+        }
+
+        if (options.getNumberOfFragments() != null) {
+            highlighter.numOfFragments(options.getNumberOfFragments());
+        }
+
+        return highlighter;
+    }
+
+    private static List<OjaiSearchHit> toHits(SearchResponse response) {
+
+        SearchHit[] searchHits = response.getHits().getHits();
+        List<OjaiSearchHit> hits = new ArrayList<>(searchHits.length);
+        for (SearchHit searchHit : searchHits) {
+
+            Map<String, List<String>> highlights = null;
+            if (searchHit.getHighlightFields() != null && !searchHit.getHighlightFields().isEmpty()) {
+                highlights = new LinkedHashMap<>();
+                for (HighlightField field : searchHit.getHighlightFields().values()) {
+                    List<String> fragments = (field.fragments() != null)
+                            ? Stream.of(field.fragments()).map(Text::string).collect(Collectors.toList())
+                            : Collections.emptyList();
+                    highlights.put(field.name(), fragments);
+                }
+            }
+
+            hits.add(new OjaiSearchHit(searchHit.getId(), searchHit.getScore(), highlights,
+                    searchHit.getSortValues()));
+        }
+
+        return hits;
+    }
+
+    private static int maxHits(SearchOptions options) {
+        return (options.getMaxHits() != null) ? options.getMaxHits() : DEFAULT_MAX_HITS;
+    }
+
+    /**
+     * Waits until changes, written to MapR-DB JSON Table up to the specified timestamp, are indexed and visible to
+     * search. Requires Search Service to run in consistent-read mode, which publishes per-table watermarks.
+     *
+     * @param tablePath      MapR-DB JSON Table path.
+     * @param writeTimestamp timestamp of the write.
+     * @param timeoutMs      maximum time to wait.
+     * @return {@code true} if changes are indexed, {@code false} if timeout elapsed.
+     */
+    public boolean awaitIndexed(String tablePath, long writeTimestamp, long timeoutMs) {
+
+        if (tablePath == null || tablePath.isEmpty()) {
+            throw new IllegalArgumentException("Table path can not be empty");
+        }
+
+        if (luceneIndexes != null) {
+            throw new UnsupportedOperationException("Consistent reads are not supported by embedded Lucene backend");
+        }
+
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+
+            if (watermark(tablePath) >= writeTimestamp) {
+                return true;
+            }
+
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(remainingNanos(deadlineNanos));
+            if (remainingMs <= 0) {
+                return false;
+            }
+
+            try {
+                Thread.sleep(Math.min(WATERMARK_POLL_INTERVAL_MS, remainingMs));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Wait for indexed changes is interrupted", e);
+            }
+        }
+    }
+
+    /**
+     * Returns watermark of the table: the minimum over the watermarks of all its changelog partitions, which may be
+     * published by different Search Service instances. Table, which partition has no watermark yet, has none.
+     */
+    private long watermark(String tablePath) {
+
+        try {
+            // Gets are real-time, so the latest published watermarks are returned regardless of refresh
+            GetResponse first = client.prepareGet(OjaiSearchServiceUtils.WATERMARK_INDEX,
+                    OjaiSearchServiceUtils.WATERMARK_TYPE, OjaiSearchServiceUtils.watermarkId(tablePath, 0)).get();
+            if (!first.isExists()) {
+                return Long.MIN_VALUE;
+            }
+
+            long watermark = first.getVersion();
+            int partitions = ((Number) first.getSource().get(OjaiSearchServiceUtils.WATERMARK_PARTITIONS_FIELD))
+                    .intValue();
+            if (partitions <= 1) {
+                return watermark;
+            }
+
+            MultiGetRequestBuilder multiGet = client.prepareMultiGet();
+            for (int partition = 1; partition < partitions; partition++) {
+                multiGet.add(OjaiSearchServiceUtils.WATERMARK_INDEX, OjaiSearchServiceUtils.WATERMARK_TYPE,
+                        OjaiSearchServiceUtils.watermarkId(tablePath, partition));
+            }
+
+            for (MultiGetItemResponse item : multiGet.get()) {
+                if (item.isFailed() || !item.getResponse().isExists()) {
+                    return Long.MIN_VALUE;
+                }
+
+                watermark = Math.min(watermark, item.getResponse().getVersion());
+            }
+
+            return watermark;
+        } catch (IndexNotFoundException e) {
+            // Search Service has not published any watermark yet
+            return Long.MIN_VALUE;
+        }
+    }
+
+    public SearchOptions getDefaultOptions() {
+        return defaultOptions;
+    }
+
+    /**
+     * Sets default limits, which are applied to searches, counts and aggregations.
+     *
+     * @param defaultOptions default search limits.
+     */
+    public void setDefaultOptions(SearchOptions defaultOptions) {
+
+        if (defaultOptions == null) {
+            throw new IllegalArgumentException("Default search options can not be null");
+        }
+
+        this.defaultOptions = defaultOptions;
+    }
+
+    /**
+     * Creates new search-as-you-type session. Sessions are thread-safe, but requests of a single session supersede
+     * each other, so a separate session must be created per input, for example per user.
+     *
+     * @return new suggest session.
+     */
+    public SuggestSession newSuggestSession() {
+        return new SuggestSession();
+    }
+
+    /**
+     * Compiles search query with placeholders into prepared search, which can be executed many times with different
+     * parameter values. Placeholders are specified as {@link #param(String) mustache variables} in place of query
+     * values:
+     * <pre>
+     *     PreparedSearch autocomplete = searchClient.prepare("/apps/test_table",
+     *             new MatchPhrasePrefix("title", OjaiSearchClient.param("text")));
+     *
+     *     DocumentStream found = autocomplete.execute("text", "new yo").find();
+     * </pre>
+     * Search template is stored at the ElasticSearch cluster once per distinct query. Not supported by embedded
+     * Lucene backend.
+     *
+     * @param tablePath MapR-DB JSON Table path.
+     * @param query     OJAI search query with placeholders.
+     * @return prepared search.
+     */
+    public PreparedSearch prepare(String tablePath, OjaiSearchQuery query) {
+
+        checkSearchArguments(tablePath, query);
+        if (luceneIndexes != null) {
+            throw new UnsupportedOperationException("Prepared searches are not supported by embedded Lucene backend");
+        }
+
+        String templateId = searchTemplates.computeIfAbsent(searchTemplateSource(query), this::storeSearchTemplate);
+        return new PreparedSearch(tablePath, templateId);
+    }
+
+    /**
+     * Returns source of the search template of the query. Structured query is executed in filter context, the same
+     * way as search does. Options are bound at execution time, optional ones are rendered only if their parameters
+     * are set.
+     */
+    static String searchTemplateSource(OjaiSearchQuery query) {
+
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
+        sourceBuilder.query(elasticQuery(query)).fetchSource(false);
+
+        String json = sourceBuilder.toString().trim();
+        return json.substring(0, json.length() - 1) +
+                ",\"size\":{{" + SIZE_PARAM + "}}" +
+                "{{#" + TIMEOUT_PARAM + "}},\"timeout\":\"{{" + TIMEOUT_PARAM + "}}\"{{/" + TIMEOUT_PARAM + "}}" +
+                "{{#" + TERMINATE_AFTER_PARAM + "}},\"terminate_after\":{{" + TERMINATE_AFTER_PARAM + "}}" +
+                "{{/" + TERMINATE_AFTER_PARAM + "}}" +
+                "{{#" + HIT_OPTIONS_PARAM + "}},{{{" + HIT_OPTIONS_PARAM + "}}}{{/" + HIT_OPTIONS_PARAM + "}}}";
+    }
+
+    /**
+     * Returns parameters of the prepared search execution: placeholder values along with the reserved parameters of
+     * the options. Profile, sort and highlight options are rendered the same way as search renders them, and bound
+     * as a single fragment of the search source.
+     */
+    static Map<String, Object> templateParams(Map<String, Object> params, SearchOptions options) {
+
+        Map<String, Object> boundParams = new LinkedHashMap<>(params);
+        boundParams.put(SIZE_PARAM, maxHits(options));
+        if (options.getTimeoutMs() != null) {
+            boundParams.put(TIMEOUT_PARAM, options.getTimeoutMs() + "ms");
+        }
+
+        if (options.getTerminateAfter() != null) {
+            boundParams.put(TERMINATE_AFTER_PARAM, options.getTerminateAfter());
+        }
+
+        SearchSourceBuilder hitOptions = new SearchSourceBuilder();
+        applyHitOptions(hitOptions, options);
+        String json = hitOptions.toString().trim();
+        String fragment = json.substring(1, json.length() - 1).trim();
+        if (!fragment.isEmpty()) {
+            boundParams.put(HIT_OPTIONS_PARAM, fragment);
+        }
+
+        return boundParams;
+    }
+
+    /**
+     * Returns placeholder of prepared search parameter.
+     *
+     * @param name parameter name.
+     * @return placeholder, which is replaced with the parameter value at execution time.
+     */
+    public static String param(String name) {
+
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Parameter name can not be empty");
+        }
+
+        return "{{" + name + "}}";
+    }
+
+    public long count(String tablePath, OjaiSearchQuery query) {
+        return count(tablePath, query, defaultOptions);
+    }
+
+    /**
+     * Counts documents, matching search query, without fetching hits or documents. Count of the tenant is admitted
+     * by the tenant's policy, and count with {@link SearchOptions#readAfter(long) read-after} waits for the changes
+     * to be indexed, the same way as search.
+     *
+     * @param tablePath MapR-DB JSON Table path.
+     * @param query     OJAI search query.
+     * @param options   search limits, can be {@code null}.
+     * @return number of matching documents.
+     */
+    public long count(String tablePath, OjaiSearchQuery query, SearchOptions options) {
+
+        checkSearchArguments(tablePath, query);
+        SearchOptions effectiveOptions = (options != null) ? options.withDefaults(defaultOptions) : defaultOptions;
+        return admitted(effectiveOptions, (limited, deadlineNanos) -> {
+
+            awaitReadAfter(tablePath, limited, deadlineNanos);
+            if (luceneIndexes != null) {
+                return withinDeadline(deadlineNanos, () -> countLucene(tablePath, query));
+            }
+
+            SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
+            sourceBuilder.query(elasticQuery(query)).size(0).fetchSource(false);
+            return executeSearch(tablePath, sourceBuilder, limited, deadlineNanos).getHits().getTotalHits();
+        });
+    }
+
+    /**
+     * Computes aggregations over the documents, matching search query. Results are returned directly from
+     * ElasticSearch, neither hits nor documents are fetched. Not supported by embedded Lucene backend.
+     *
+     * @param tablePath    MapR-DB JSON Table path.
+     * @param query        OJAI search query.
+     * @param aggregations aggregations to compute.
+     * @return aggregation results along with the number of matching documents.
+     */
+    public AggregationResults aggregate(String tablePath, OjaiSearchQuery query,
+                                        OjaiSearchAggregation... aggregations) {
+        return aggregate(tablePath, query, defaultOptions, aggregations);
+    }
+
+    /**
+     * Computes aggregations over the documents, matching search query. Aggregation of the tenant is admitted by the
+     * tenant's policy, and aggregation with {@link SearchOptions#readAfter(long) read-after} waits for the changes to
+     * be indexed, the same way as search. Not supported by embedded Lucene backend.
+     *
+     * @param tablePath    MapR-DB JSON Table path.
+     * @param query        OJAI search query.
+     * @param options      search limits, can be {@code null}.
+     * @param aggregations aggregations to compute.
+     * @return aggregation results along with the number of matching documents.
+     */
+    public AggregationResults aggregate(String tablePath, OjaiSearchQuery query, SearchOptions options,
+                                        OjaiSearchAggregation... aggregations) {
+
+        checkSearchArguments(tablePath, query);
+        if (aggregations == null || aggregations.length == 0) {
+            throw new IllegalArgumentException("At least one aggregation must be specified");
+        }
+
+        if (luceneIndexes != null) {
+            throw new UnsupportedOperationException("Aggregations are not supported by embedded Lucene backend");
+        }
+
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
+        sourceBuilder.query(elasticQuery(query)).size(0).fetchSource(false);
+        for (OjaiSearchAggregation aggregation : aggregations) {
+            sourceBuilder.aggregation(aggregation.aggregation());
+        }
+
+        SearchOptions effectiveOptions = (options != null) ? options.withDefaults(defaultOptions) : defaultOptions;
+        SearchResponse response = admitted(effectiveOptions, (limited, deadlineNanos) -> {
+            awaitReadAfter(tablePath, limited, deadlineNanos);
+            return executeSearch(tablePath, sourceBuilder, limited, deadlineNanos);
+        });
+
+        Map<String, AggregationResult> results = new LinkedHashMap<>();
+        for (OjaiSearchAggregation aggregation : aggregations) {
+
+            // Aggregations are missing if none of the table's indices exist yet
+            Aggregation esAggregation = (response.getAggregations() != null)
+                    ? response.getAggregations().get(aggregation.getName())
+                    : null;
+
+            results.put(aggregation.getName(), (esAggregation != null)
+                    ? aggregation.result(esAggregation)
+                    : AggregationResult.ofBuckets(aggregation.getName(), Collections.emptyList()));
+        }
+
+        return new AggregationResults(response.getHits().getTotalHits(), results);
+    }
+
+    private void checkSearchArguments(String tablePath, OjaiSearchQuery query) {
 
         if (tablePath == null || tablePath.isEmpty()) {
             throw new IllegalArgumentException("Table path can not be empty");
@@ -164,27 +1232,303 @@ public class OjaiSearchClient implements Closeable {
         if (query == null) {
             throw new IllegalArgumentException("OJAI search query can not be null");
         }
+    }
 
-        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
-        sourceBuilder.query(query.query()).fetchSource(false);
-        SearchRequest searchRequest = new SearchRequest();
-        searchRequest.source(sourceBuilder);
+    private String storeSearchTemplate(String source) {
+
+        // Template id is derived from its content, so the same query is stored once and shared between clients
+        String templateId = SEARCH_TEMPLATE_ID_PREFIX + sha1Hex(source);
+        try {
+            XContentBuilder content = XContentFactory.jsonBuilder()
+                    .startObject()
+                    .startObject("script")
+                    .field("lang", "mustache")
+                    .field("source", source)
+                    .endObject()
+                    .endObject();
+
+            client.admin().cluster().preparePutStoredScript()
+                    .setId(templateId)
+                    .setContent(content.bytes(), XContentType.JSON)
+                    .get();
+        } catch (IOException | ElasticsearchException e) {
+            throw new IllegalStateException("Can not store ES search template '" + templateId + "'", e);
+        }
+
+        log.debug("Stored ES search template '{}': {}", templateId, source);
+        return templateId;
+    }
+
+    private static String sha1Hex(String value) {
 
-        SearchResponse response;
         try {
-            response = client.search(searchRequest).get();
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
+    private SearchResponse executeSearch(String tablePath, SearchSourceBuilder sourceBuilder, SearchOptions options,
+                                         long deadlineNanos) {
+        return executeSearch(tablePath, sourceBuilder, options, deadlineNanos, null, null);
+    }
+
+    /**
+     * Executes ES search, applying the limits of the options.
+     *
+     * @param submitted called with the future of the sent request, can be {@code null}.
+     * @param completed called with the same future once the response is received or the wait fails, can be
+     *                  {@code null}.
+     */
+    private SearchResponse executeSearch(String tablePath, SearchSourceBuilder sourceBuilder, SearchOptions options,
+                                         long deadlineNanos, Consumer<ActionFuture<SearchResponse>> submitted,
+                                         Consumer<ActionFuture<SearchResponse>> completed) {
+
+        if (options.getTimeoutMs() != null) {
+            sourceBuilder.timeout(TimeValue.timeValueMillis(options.getTimeoutMs()));
+        }
+
+        if (options.getTerminateAfter() != null) {
+            sourceBuilder.terminateAfter(options.getTerminateAfter());
+        }
+
+        SearchRequest searchRequest = new SearchRequest(indexName(tablePath, options));
+        searchRequest.indicesOptions(IndicesOptions.lenientExpandOpen()).source(sourceBuilder);
+
+        return withPermit(elasticPermits, deadlineNanos, () -> {
+            ActionFuture<SearchResponse> future = client.search(searchRequest);
+            if (submitted != null) {
+                submitted.accept(future);
+            }
+
+            try {
+                return await(future, deadlineNanos);
+            } finally {
+                if (completed != null) {
+                    completed.accept(future);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns index or alias, named after the table, so only the table's indices are searched. Tenant's policy may
+     * route the tenant's searches to a separate index.
+     */
+    private String indexName(String tablePath, SearchOptions options) {
+
+        String indexName = OjaiSearchServiceUtils.tablePathToIndexName(tablePath);
+        TenantState tenantState = tenantState(options.getTenant());
+        if (tenantState != null) {
+            indexName = tenantState.policy.indexName(indexName, tenantState.tenant);
+        }
+
+        return indexName;
+    }
+
+    private static <T> T await(ActionFuture<T> future, long deadlineNanos) {
+
+        try {
+            return (deadlineNanos == NO_DEADLINE)
+                    ? future.get()
+                    : future.get(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IllegalStateException("ES search response is not received before the deadline", e);
         } catch (InterruptedException | ExecutionException e) {
             throw new IllegalStateException("Can not get ES search response", e);
         }
+    }
 
-        List<String> foundDocsIds = Stream.of(response.getHits().getHits())
-                .map(SearchHit::getId)
-                .collect(Collectors.toList());
+    /**
+     * Executes the call, holding a permit. Caller waits for the permit until the deadline.
+     *
+     * @param permits permits or {@code null} if concurrency is not limited.
+     */
+    private static <T> T withPermit(Semaphore permits, long deadlineNanos, Callable<T> call) {
 
-        return new OjaiSearchResult(tablePath, foundDocsIds);
+        if (permits != null) {
+            try {
+                if (deadlineNanos == NO_DEADLINE) {
+                    permits.acquire();
+                } else if (!permits.tryAcquire(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS)) {
+                    throw new IllegalStateException("Concurrency limit is not released before the deadline",
+                            new TimeoutException());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Search is interrupted", e);
+            }
+        }
+
+        try {
+            return call.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
+    private <T> T withinDeadline(long deadlineNanos, Callable<T> call) {
+        return withinDeadline(deadlineNanos, call, null);
+    }
+
+    /**
+     * Executes the call within the deadline. Since OJAI and Lucene calls can not be interrupted, the call is executed
+     * at the separate thread, so the caller is released once the deadline passes. Result of the call, which completes
+     * after the deadline, is passed to the discard function, so late document streams are closed.
+     *
+     * @param discard function, which releases late result, can be {@code null}.
+     */
+    private <T> T withinDeadline(long deadlineNanos, Callable<T> call, Consumer<? super T> discard) {
+
+        if (deadlineNanos == NO_DEADLINE) {
+            try {
+                return call.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+
+        try {
+            return future.get(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            abandon(future, discard);
+            throw new IllegalStateException("Search is not completed before the deadline", e);
+        } catch (InterruptedException e) {
+            abandon(future, discard);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search is interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Discards the result of the abandoned call once it completes, or right away if it has already completed.
+     */
+    private static <T> void abandon(CompletableFuture<T> future, Consumer<? super T> discard) {
+        if (discard != null) {
+            future.thenAccept(discard);
+        }
+    }
+
+    private static long deadlineNanos(SearchOptions options) {
+        return (options.getDeadlineMs() != null)
+                ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getDeadlineMs())
+                : NO_DEADLINE;
+    }
+
+    private static long remainingNanos(long deadlineNanos) {
+        return Math.max(0L, deadlineNanos - System.nanoTime());
+    }
+
+    private long countLucene(String tablePath, OjaiSearchQuery query) {
+
+        String indexName = OjaiSearchServiceUtils.tablePathToIndexName(tablePath);
+        IndexSearcher searcher = luceneIndexes.acquire(indexName);
+        if (searcher == null) {
+            return 0L;
+        }
+
+        try {
+            LuceneQueryContext context = new LuceneQueryContext(luceneIndexes.getAnalyzer(), searcher.getIndexReader());
+            return searcher.count(luceneQuery(query, context));
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not search Lucene index '" + indexName + "'", e);
+        } finally {
+            luceneIndexes.release(indexName, searcher);
+        }
     }
 
+    /**
+     * Searches embedded Lucene index.
+     *
+     * @param executed called with the executed Lucene query, unless the index does not exist yet.
+     */
+    private List<OjaiSearchHit> searchLucene(String tablePath, OjaiSearchQuery query, int maxHits,
+                                             Consumer<String> executed) {
+
+        String indexName = OjaiSearchServiceUtils.tablePathToIndexName(tablePath);
+        IndexSearcher searcher = luceneIndexes.acquire(indexName);
+        if (searcher == null) {
+            return Collections.emptyList();
+        }
+
+        try {
+            LuceneQueryContext context = new LuceneQueryContext(luceneIndexes.getAnalyzer(), searcher.getIndexReader());
+            org.apache.lucene.search.Query luceneQuery = luceneQuery(query, context);
+            executed.accept(luceneQuery.toString());
+            TopDocs topDocs = searcher.search(luceneQuery, maxHits);
+
+            List<OjaiSearchHit> hits = new ArrayList<>(topDocs.scoreDocs.length);
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                String id = searcher.doc(scoreDoc.doc, Collections.singleton(LuceneDocuments.ID_FIELD))
+                        .get(LuceneDocuments.ID_FIELD);
+                hits.add(new OjaiSearchHit(id, scoreDoc.score, null, null));
+            }
+
+            return hits;
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not search Lucene index '" + indexName + "'", e);
+        } finally {
+            luceneIndexes.release(indexName, searcher);
+        }
+    }
+
+
+    public ExecutionOptions getExecutionOptions() {
+        return executionOptions;
+    }
+
+    /**
+     * Replaces execution settings. Calls, which are already running, complete with the previous settings.
+     *
+     * @param executionOptions execution settings.
+     */
+    public void setExecutionOptions(ExecutionOptions executionOptions) {
+
+        if (executionOptions == null) {
+            throw new IllegalArgumentException("Execution options can not be null");
+        }
+
+        ExecutorService previous = executor;
+        this.executor = ThreadPools.newExecutor("ojai-search", executionOptions.isVirtualThreads());
+        this.elasticPermits = (executionOptions.getElasticConcurrency() != null)
+                ? new Semaphore(executionOptions.getElasticConcurrency())
+                : null;
+        this.maprDbPermits = (executionOptions.getMaprDbConcurrency() != null)
+                ? new Semaphore(executionOptions.getMaprDbConcurrency())
+                : null;
+        this.executionOptions = executionOptions;
+        previous.shutdown();
+    }
 
     /**
      * Returns OJAI connection, used by this instance of {@link OjaiSearchClient}.
@@ -197,6 +1541,7 @@ public class OjaiSearchClient implements Closeable {
 
     @Override
     public void close() throws IOException {
+        executor.shutdownNow();
         connection.close();
     }
 }
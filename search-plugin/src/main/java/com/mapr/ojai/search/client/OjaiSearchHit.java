@@ -0,0 +1,85 @@
+package com.mapr.ojai.search.client;
+
+import com.mapr.ojai.search.util.DocumentIds;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single hit of the search: id of the found document along with its score, highlighted fragments of the
+ * {@link SearchOptions#highlight(String...) requested fields} and sort values. Result pages can be rendered from the
+ * hits without fetching whole documents from MapR-DB JSON Table.
+ */
+public class OjaiSearchHit {
+
+    private static final Object[] NO_SORT_VALUES = new Object[0];
+
+    private final String encodedId;
+    private final float score;
+    private final Map<String, List<String>> highlights;
+    private final Object[] sortValues;
+
+    OjaiSearchHit(String encodedId, float score, Map<String, List<String>> highlights, Object[] sortValues) {
+        this.encodedId = encodedId;
+        this.score = score;
+        this.highlights = (highlights != null) ? highlights : Collections.emptyMap();
+        this.sortValues = (sortValues != null) ? sortValues : NO_SORT_VALUES;
+    }
+
+    String getEncodedId() {
+        return encodedId;
+    }
+
+    /**
+     * Returns the document id.
+     *
+     * @return {@link String}, {@link java.nio.ByteBuffer} or {@link Long}, according to the type of the document id.
+     */
+    public Object getId() {
+        return DocumentIds.decode(encodedId);
+    }
+
+    /**
+     * Returns the relevance score of the document, {@link Float#NaN} if it is not computed.
+     */
+    public float getScore() {
+        return score;
+    }
+
+    /**
+     * Returns highlighted fragments by field names. Fields without matches are absent.
+     */
+    public Map<String, List<String>> getHighlights() {
+        return highlights;
+    }
+
+    /**
+     * Returns highlighted fragments of the field.
+     *
+     * @param field field name.
+     * @return fragments or empty list if the field is not highlighted.
+     */
+    public List<String> getHighlights(String field) {
+        return highlights.getOrDefault(field, Collections.emptyList());
+    }
+
+    /**
+     * Returns values, by which the hit is {@link SearchOptions#sort(String, boolean) sorted}, empty if sort is not
+     * specified.
+     */
+    public Object[] getSortValues() {
+        return sortValues.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "OjaiSearchHit{" +
+                "id='" + encodedId + '\'' +
+                ", score=" + score +
+                ", highlights=" + highlights +
+                ", sortValues=" + Arrays.toString(sortValues) +
+                '}';
+    }
+}
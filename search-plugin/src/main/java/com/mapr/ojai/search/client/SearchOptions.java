@@ -0,0 +1,325 @@
+package com.mapr.ojai.search.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-call limits of the search. Limits, which are not set, are not applied:
+ * <pre>
+ *     SearchOptions options = new SearchOptions()
+ *             .timeoutMs(200)         // ES collects hits for 200 ms at most and returns partial result
+ *             .terminateAfter(10000)  // each shard stops after 10000 matching documents
+ *             .deadlineMs(500)        // whole call, including fetch from MapR-DB, fails after 500 ms
+ *             .maxHits(50)            // at most 50 documents are found
+ *             .tenant("acme")         // limits and index of the registered tenant policy are applied
+ *             .slowQueryMs(300)       // query and its timings are logged if the call takes more than 300 ms
+ *             .profile(true)          // ES profile is returned with the timings of the result
+ *             .highlight("title")     // hits carry highlighted fragments of the title
+ *             .sort("date", false);   // hits are sorted by date, descending
+ * </pre>
+ * Embedded Lucene backend applies deadline and max hits only, its hits carry scores only.
+ */
+public class SearchOptions {
+
+    private Long timeoutMs;
+    private Integer terminateAfter;
+    private Long deadlineMs;
+    private Long readAfter;
+    private Integer maxHits;
+    private String tenant;
+    private Boolean profile;
+    private Long slowQueryMs;
+    private List<String> highlightFields;
+    private Integer fragmentSize;
+    private Integer numberOfFragments;
+    private Map<String, Boolean> sort;
+
+    public SearchOptions() {
+    }
+
+    public SearchOptions(SearchOptions other) {
+        this.timeoutMs = other.timeoutMs;
+        this.terminateAfter = other.terminateAfter;
+        this.deadlineMs = other.deadlineMs;
+        this.readAfter = other.readAfter;
+        this.maxHits = other.maxHits;
+        this.tenant = other.tenant;
+        this.profile = other.profile;
+        this.slowQueryMs = other.slowQueryMs;
+        this.highlightFields = (other.highlightFields != null) ? new ArrayList<>(other.highlightFields) : null;
+        this.fragmentSize = other.fragmentSize;
+        this.numberOfFragments = other.numberOfFragments;
+        this.sort = (other.sort != null) ? new LinkedHashMap<>(other.sort) : null;
+    }
+
+    /**
+     * ElasticSearch search timeout. Shards, which do not finish in time, return hits collected so far and result is
+     * marked as {@link OjaiSearchClient.OjaiSearchResult#isTimedOut() timed out}.
+     */
+    public SearchOptions timeoutMs(long timeoutMs) {
+
+        if (timeoutMs <= 0) {
+            throw new IllegalArgumentException("Search timeout must be greater than zero");
+        }
+
+        this.timeoutMs = timeoutMs;
+        return this;
+    }
+
+    /**
+     * Maximum number of documents to collect per shard. Shards, which reach it, terminate early and result is marked
+     * as {@link OjaiSearchClient.OjaiSearchResult#isPartial() partial}.
+     */
+    public SearchOptions terminateAfter(int terminateAfter) {
+
+        if (terminateAfter <= 0) {
+            throw new IllegalArgumentException("Terminate after must be greater than zero");
+        }
+
+        this.terminateAfter = terminateAfter;
+        return this;
+    }
+
+    /**
+     * Client-side deadline, which covers both ElasticSearch search and fetch of the found documents from MapR-DB
+     * JSON Table. Call, which misses the deadline, fails with {@link IllegalStateException}, caused by
+     * {@link java.util.concurrent.TimeoutException}.
+     */
+    public SearchOptions deadlineMs(long deadlineMs) {
+
+        if (deadlineMs <= 0) {
+            throw new IllegalArgumentException("Search deadline must be greater than zero");
+        }
+
+        this.deadlineMs = deadlineMs;
+        return this;
+    }
+
+    /**
+     * Enables consistent read: search waits until changes, written to MapR-DB JSON Table up to the specified
+     * timestamp, are indexed and visible to search. Requires Search Service to run in consistent-read mode. Wait is
+     * bounded by the deadline if set.
+     *
+     * @param writeTimestamp timestamp of the write, for example {@code System.currentTimeMillis()} after the write.
+     */
+    public SearchOptions readAfter(long writeTimestamp) {
+        this.readAfter = writeTimestamp;
+        return this;
+    }
+
+    /**
+     * Maximum number of found documents. Ten documents are found by default.
+     */
+    public SearchOptions maxHits(int maxHits) {
+
+        if (maxHits <= 0) {
+            throw new IllegalArgumentException("Max hits must be greater than zero");
+        }
+
+        this.maxHits = maxHits;
+        return this;
+    }
+
+    /**
+     * Tenant, on behalf of which search is executed. Search is subject to the tenant's
+     * {@link OjaiSearchClient#registerTenant(String, TenantPolicy) policy}.
+     */
+    public SearchOptions tenant(String tenant) {
+
+        if (tenant == null || tenant.isEmpty()) {
+            throw new IllegalArgumentException("Tenant can not be empty");
+        }
+
+        this.tenant = tenant;
+        return this;
+    }
+
+    /**
+     * Enables ElasticSearch profiling of the search. Profile is available at the
+     * {@link OjaiSearchClient.OjaiSearchResult#getTimings() timings} of the result. Profiling adds significant
+     * overhead, so it is meant for troubleshooting of particular queries.
+     */
+    public SearchOptions profile(boolean profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    /**
+     * Threshold of the slow-query log. Query and its timings are logged to {@code com.mapr.ojai.search.client.slowlog}
+     * logger if the search or the search along with the fetch of the found documents takes longer.
+     */
+    public SearchOptions slowQueryMs(long slowQueryMs) {
+
+        if (slowQueryMs < 0) {
+            throw new IllegalArgumentException("Slow query threshold can not be negative");
+        }
+
+        this.slowQueryMs = slowQueryMs;
+        return this;
+    }
+
+    /**
+     * Requests highlighted fragments of the fields, which are computed by ElasticSearch and returned with the
+     * {@link OjaiSearchClient.OjaiSearchResult#getHits() hits}, so snippets do not require fetch of whole documents.
+     */
+    public SearchOptions highlight(String... fields) {
+
+        if (fields == null || fields.length == 0) {
+            throw new IllegalArgumentException("Highlight fields can not be empty");
+        }
+
+        this.highlightFields = new ArrayList<>(Arrays.asList(fields));
+        return this;
+    }
+
+    /**
+     * Size of the highlighted fragment in characters. ElasticSearch default is 100.
+     */
+    public SearchOptions fragmentSize(int fragmentSize) {
+
+        if (fragmentSize <= 0) {
+            throw new IllegalArgumentException("Fragment size must be greater than zero");
+        }
+
+        this.fragmentSize = fragmentSize;
+        return this;
+    }
+
+    /**
+     * Maximum number of highlighted fragments per field. ElasticSearch default is 5.
+     */
+    public SearchOptions numberOfFragments(int numberOfFragments) {
+
+        if (numberOfFragments <= 0) {
+            throw new IllegalArgumentException("Number of fragments must be greater than zero");
+        }
+
+        this.numberOfFragments = numberOfFragments;
+        return this;
+    }
+
+    /**
+     * Sorts hits by the field instead of score. Can be called several times, subsequent fields break ties. Scores are
+     * still computed, sort values are returned with the {@link OjaiSearchClient.OjaiSearchResult#getHits() hits}.
+     *
+     * @param field     indexed field.
+     * @param ascending sort order.
+     */
+    public SearchOptions sort(String field, boolean ascending) {
+
+        if (field == null || field.isEmpty()) {
+            throw new IllegalArgumentException("Sort field can not be empty");
+        }
+
+        if (sort == null) {
+            sort = new LinkedHashMap<>();
+        }
+
+        sort.put(field, ascending);
+        return this;
+    }
+
+    /**
+     * Returns options, which limits are taken from these options or from the defaults if not set.
+     *
+     * @param defaults default options.
+     * @return merged options.
+     */
+    public SearchOptions withDefaults(SearchOptions defaults) {
+
+        SearchOptions merged = new SearchOptions(this);
+        if (defaults != null) {
+            merged.timeoutMs = (timeoutMs != null) ? timeoutMs : defaults.timeoutMs;
+            merged.terminateAfter = (terminateAfter != null) ? terminateAfter : defaults.terminateAfter;
+            merged.deadlineMs = (deadlineMs != null) ? deadlineMs : defaults.deadlineMs;
+            merged.readAfter = (readAfter != null) ? readAfter : defaults.readAfter;
+            merged.maxHits = (maxHits != null) ? maxHits : defaults.maxHits;
+            merged.tenant = (tenant != null) ? tenant : defaults.tenant;
+            merged.profile = (profile != null) ? profile : defaults.profile;
+            merged.slowQueryMs = (slowQueryMs != null) ? slowQueryMs : defaults.slowQueryMs;
+            if (highlightFields == null && defaults.highlightFields != null) {
+                merged.highlightFields = new ArrayList<>(defaults.highlightFields);
+            }
+            merged.fragmentSize = (fragmentSize != null) ? fragmentSize : defaults.fragmentSize;
+            merged.numberOfFragments = (numberOfFragments != null) ? numberOfFragments : defaults.numberOfFragments;
+            if (sort == null && defaults.sort != null) {
+                merged.sort = new LinkedHashMap<>(defaults.sort);
+            }
+        }
+
+        return merged;
+    }
+
+    public Long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    public Integer getTerminateAfter() {
+        return terminateAfter;
+    }
+
+    public Long getDeadlineMs() {
+        return deadlineMs;
+    }
+
+    public Long getReadAfter() {
+        return readAfter;
+    }
+
+    public Integer getMaxHits() {
+        return maxHits;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public Boolean getProfile() {
+        return profile;
+    }
+
+    public Long getSlowQueryMs() {
+        return slowQueryMs;
+    }
+
+    public List<String> getHighlightFields() {
+        return (highlightFields != null) ? Collections.unmodifiableList(highlightFields) : null;
+    }
+
+    public Integer getFragmentSize() {
+        return fragmentSize;
+    }
+
+    public Integer getNumberOfFragments() {
+        return numberOfFragments;
+    }
+
+    /**
+     * Returns sort order by field names, {@code true} for ascending order.
+     */
+    public Map<String, Boolean> getSort() {
+        return (sort != null) ? Collections.unmodifiableMap(sort) : null;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchOptions{" +
+                "timeoutMs=" + timeoutMs +
+                ", terminateAfter=" + terminateAfter +
+                ", deadlineMs=" + deadlineMs +
+                ", readAfter=" + readAfter +
+                ", maxHits=" + maxHits +
+                ", tenant='" + tenant + '\'' +
+                ", profile=" + profile +
+                ", slowQueryMs=" + slowQueryMs +
+                ", highlightFields=" + highlightFields +
+                ", fragmentSize=" + fragmentSize +
+                ", numberOfFragments=" + numberOfFragments +
+                ", sort=" + sort +
+                '}';
+    }
+}
@@ -0,0 +1,153 @@
+package com.mapr.ojai.search.client;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.profile.ProfileShardResult;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Breakdown of a single search call into its phases: search at ElasticSearch or embedded Lucene index, extraction of
+ * the found document ids and fetch of the documents from MapR-DB JSON Table. Fetch phase is recorded once the stream,
+ * returned by {@link OjaiSearchClient.OjaiSearchResult#find()}, is exhausted or closed.
+ */
+public class SearchTimings {
+
+    private static final double NANOS_PER_MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private long searchNanos;
+    private long tookMs = -1;
+    private int totalShards;
+    private int successfulShards;
+    private int failedShards;
+    private long totalHits = -1;
+    private int hits;
+    private long idExtractionNanos;
+    private Map<String, ProfileShardResult> profileResults = Collections.emptyMap();
+
+    private volatile long fetchNanos = -1;
+    private volatile long documentsReturned;
+
+    SearchTimings() {
+    }
+
+    void searched(long searchNanos, int hits) {
+        this.searchNanos = searchNanos;
+        this.hits = hits;
+    }
+
+    void searched(SearchResponse response, long searchNanos, long idExtractionNanos) {
+
+        searched(searchNanos, response.getHits().getHits().length);
+        this.tookMs = response.getTookInMillis();
+        this.totalShards = response.getTotalShards();
+        this.successfulShards = response.getSuccessfulShards();
+        this.failedShards = response.getFailedShards();
+        this.totalHits = response.getHits().getTotalHits();
+        this.idExtractionNanos = idExtractionNanos;
+
+        if (response.getProfileResults() != null) {
+            this.profileResults = response.getProfileResults();
+        }
+    }
+
+    void fetched(long fetchNanos, long documentsReturned) {
+        this.documentsReturned = documentsReturned;
+        this.fetchNanos = fetchNanos;
+    }
+
+    /**
+     * Search time, observed by the client, including the transport and the wait for the concurrency permit.
+     */
+    public double getSearchMs() {
+        return searchNanos / NANOS_PER_MS;
+    }
+
+    /**
+     * Search time, reported by ElasticSearch, or {@code -1} for embedded Lucene backend.
+     */
+    public long getTookMs() {
+        return tookMs;
+    }
+
+    public int getTotalShards() {
+        return totalShards;
+    }
+
+    public int getSuccessfulShards() {
+        return successfulShards;
+    }
+
+    public int getFailedShards() {
+        return failedShards;
+    }
+
+    /**
+     * Number of matching documents, reported by ElasticSearch, or {@code -1} for embedded Lucene backend.
+     */
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * Number of returned document ids.
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    public double getIdExtractionMs() {
+        return idExtractionNanos / NANOS_PER_MS;
+    }
+
+    /**
+     * Returns whether the found documents are fetched, so fetch timings are available.
+     */
+    public boolean isFetched() {
+        return fetchNanos >= 0;
+    }
+
+    /**
+     * Time from the MapR-DB query till the stream of the found documents is exhausted or closed, {@code -1} if
+     * documents are not fetched yet.
+     */
+    public double getFetchMs() {
+        long nanos = fetchNanos;
+        return (nanos >= 0) ? nanos / NANOS_PER_MS : -1;
+    }
+
+    public long getDocumentsReturned() {
+        return documentsReturned;
+    }
+
+    /**
+     * Sum of the search, id extraction and fetch phases.
+     */
+    public double getTotalMs() {
+        return (searchNanos + idExtractionNanos + Math.max(0L, fetchNanos)) / NANOS_PER_MS;
+    }
+
+    /**
+     * ElasticSearch profile by shard ids, empty unless {@link SearchOptions#profile(boolean) profiling} is enabled.
+     */
+    public Map<String, ProfileShardResult> getProfileResults() {
+        return profileResults;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchTimings{" +
+                "searchMs=" + String.format("%.3f", getSearchMs()) +
+                ", tookMs=" + tookMs +
+                ", shards=" + successfulShards + "/" + totalShards +
+                ", failedShards=" + failedShards +
+                ", totalHits=" + totalHits +
+                ", hits=" + hits +
+                ", idExtractionMs=" + String.format("%.3f", getIdExtractionMs()) +
+                ", fetchMs=" + String.format("%.3f", getFetchMs()) +
+                ", documentsReturned=" + documentsReturned +
+                ", totalMs=" + String.format("%.3f", getTotalMs()) +
+                '}';
+    }
+}
@@ -0,0 +1,99 @@
+package com.mapr.ojai.search.client;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Search latency of a single tenant. Latencies are counted in fixed buckets, so percentiles are approximated by the
+ * upper bound of the bucket.
+ */
+public class TenantMetrics {
+
+    private static final long[] BUCKET_BOUNDS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1_000, 2_000, 5_000, 10_000};
+
+    private final String tenant;
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalLatencyMs = new LongAdder();
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MS.length + 1);
+
+    TenantMetrics(String tenant) {
+        this.tenant = tenant;
+    }
+
+    void searched(long latencyMs) {
+
+        searches.increment();
+        totalLatencyMs.add(latencyMs);
+
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MS.length && latencyMs > BUCKET_BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        buckets.incrementAndGet(bucket);
+    }
+
+    void rejected() {
+        rejected.increment();
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    /**
+     * Number of completed searches, including failed ones.
+     */
+    public long getSearches() {
+        return searches.sum();
+    }
+
+    /**
+     * Number of searches, rejected by the rate or concurrency limit.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public double getMeanLatencyMs() {
+        long count = searches.sum();
+        return (count > 0) ? (double) totalLatencyMs.sum() / count : 0.0;
+    }
+
+    /**
+     * Returns the approximate latency percentile.
+     *
+     * @param percentile percentile, from 0 to 100.
+     * @return upper bound of the bucket, which contains the percentile, or {@link Long#MAX_VALUE} if it is above
+     * the last bucket.
+     */
+    public long getLatencyPercentileMs(double percentile) {
+
+        long count = searches.sum();
+        if (count == 0) {
+            return 0L;
+        }
+
+        long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_BOUNDS_MS.length; bucket++) {
+            seen += buckets.get(bucket);
+            if (seen >= rank) {
+                return BUCKET_BOUNDS_MS[bucket];
+            }
+        }
+
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return "TenantMetrics{" +
+                "tenant='" + tenant + '\'' +
+                ", searches=" + getSearches() +
+                ", rejected=" + getRejected() +
+                ", meanLatencyMs=" + getMeanLatencyMs() +
+                ", p99LatencyMs=" + getLatencyPercentileMs(99) +
+                '}';
+    }
+}
@@ -0,0 +1,146 @@
+package com.mapr.ojai.search.client;
+
+/**
+ * Limits of the searches, executed on behalf of a single tenant. Limits, which are not set, are not applied:
+ * <pre>
+ *     searchClient.registerTenant("acme", new TenantPolicy()
+ *             .maxConcurrentSearches(8)           // at most 8 searches of the tenant run at once
+ *             .rateLimit(50, 100)                 // 50 searches per second, bursts up to 100
+ *             .maxHits(100)                       // at most 100 documents per search
+ *             .timeoutMs(300)                     // ElasticSearch collects hits for 300 ms at most
+ *             .indexPattern("{index}-{tenant}")); // tenant's filtered alias of the table's index
+ * </pre>
+ * Searches over the rate limit fail immediately, searches over the concurrency limit wait for a permit within their
+ * deadline, so a burst of one tenant does not delay searches of the others.
+ */
+public class TenantPolicy {
+
+    public static final String INDEX_PLACEHOLDER = "{index}";
+    public static final String TENANT_PLACEHOLDER = "{tenant}";
+
+    private Integer maxConcurrentSearches;
+    private Double searchesPerSecond;
+    private Integer burst;
+    private Integer maxHits;
+    private Long timeoutMs;
+    private String indexPattern;
+
+    /**
+     * Maximum number of concurrent searches of the tenant.
+     */
+    public TenantPolicy maxConcurrentSearches(int maxConcurrentSearches) {
+
+        if (maxConcurrentSearches <= 0) {
+            throw new IllegalArgumentException("Max concurrent searches must be greater than zero");
+        }
+
+        this.maxConcurrentSearches = maxConcurrentSearches;
+        return this;
+    }
+
+    /**
+     * Token bucket rate limit of the tenant's searches.
+     *
+     * @param searchesPerSecond sustained rate of searches.
+     * @param burst             maximum number of searches, which can be executed at once after idle period.
+     */
+    public TenantPolicy rateLimit(double searchesPerSecond, int burst) {
+
+        if (searchesPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate limit and burst must be greater than zero");
+        }
+
+        this.searchesPerSecond = searchesPerSecond;
+        this.burst = burst;
+        return this;
+    }
+
+    /**
+     * Maximum number of documents, found by a single search. Greater {@link SearchOptions#maxHits(int)} is capped.
+     */
+    public TenantPolicy maxHits(int maxHits) {
+
+        if (maxHits <= 0) {
+            throw new IllegalArgumentException("Max hits must be greater than zero");
+        }
+
+        this.maxHits = maxHits;
+        return this;
+    }
+
+    /**
+     * ElasticSearch search timeout of the tenant's searches. Greater {@link SearchOptions#timeoutMs(long)} is capped.
+     */
+    public TenantPolicy timeoutMs(long timeoutMs) {
+
+        if (timeoutMs <= 0) {
+            throw new IllegalArgumentException("Search timeout must be greater than zero");
+        }
+
+        this.timeoutMs = timeoutMs;
+        return this;
+    }
+
+    /**
+     * Name of the tenant-specific index or filtered alias, which is searched instead of the table's index. Pattern
+     * can contain {@value #INDEX_PLACEHOLDER} and {@value #TENANT_PLACEHOLDER} placeholders.
+     */
+    public TenantPolicy indexPattern(String indexPattern) {
+
+        if (indexPattern == null || indexPattern.isEmpty()) {
+            throw new IllegalArgumentException("Index pattern can not be empty");
+        }
+
+        this.indexPattern = indexPattern;
+        return this;
+    }
+
+    /**
+     * Resolves the index name to be searched.
+     *
+     * @param indexName index or alias, named after the table.
+     * @param tenant    tenant name.
+     * @return tenant-specific index name or the specified one if pattern is not set.
+     */
+    public String indexName(String indexName, String tenant) {
+        return (indexPattern != null)
+                ? indexPattern.replace(INDEX_PLACEHOLDER, indexName).replace(TENANT_PLACEHOLDER, tenant)
+                : indexName;
+    }
+
+    public Integer getMaxConcurrentSearches() {
+        return maxConcurrentSearches;
+    }
+
+    public Double getSearchesPerSecond() {
+        return searchesPerSecond;
+    }
+
+    public Integer getBurst() {
+        return burst;
+    }
+
+    public Integer getMaxHits() {
+        return maxHits;
+    }
+
+    public Long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    public String getIndexPattern() {
+        return indexPattern;
+    }
+
+    @Override
+    public String toString() {
+        return "TenantPolicy{" +
+                "maxConcurrentSearches=" + maxConcurrentSearches +
+                ", searchesPerSecond=" + searchesPerSecond +
+                ", burst=" + burst +
+                ", maxHits=" + maxHits +
+                ", timeoutMs=" + timeoutMs +
+                ", indexPattern='" + indexPattern + '\'' +
+                '}';
+    }
+}
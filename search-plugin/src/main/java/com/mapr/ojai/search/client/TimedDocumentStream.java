@@ -0,0 +1,165 @@
+package com.mapr.ojai.search.client;
+
+import org.ojai.Document;
+import org.ojai.DocumentListener;
+import org.ojai.DocumentReader;
+import org.ojai.DocumentStream;
+import org.ojai.store.QueryPlan;
+import org.ojai.store.QueryResult;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stream of the fetched documents, which counts them and reports the fetch time once it is exhausted or closed.
+ * Iteration past the deadline closes the stream and fails.
+ */
+class TimedDocumentStream implements QueryResult {
+
+    interface FetchListener {
+
+        void fetched(long fetchNanos, long documents);
+    }
+
+    private final DocumentStream delegate;
+    private final long startedNanos;
+    private final long deadlineNanos;
+    private final FetchListener listener;
+
+    private final AtomicLong documents = new AtomicLong();
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    /**
+     * @param deadlineNanos deadline of the search, {@link OjaiSearchClient#NO_DEADLINE} if not limited.
+     */
+    TimedDocumentStream(DocumentStream delegate, long startedNanos, long deadlineNanos, FetchListener listener) {
+        this.delegate = delegate;
+        this.startedNanos = startedNanos;
+        this.deadlineNanos = deadlineNanos;
+        this.listener = listener;
+    }
+
+    @Override
+    public void streamTo(DocumentListener documentListener) {
+        delegate.streamTo(new DocumentListener() {
+
+            @Override
+            public boolean documentArrived(Document document) {
+
+                // Streaming is stopped, so the stream is closed by the caller
+                if (expired()) {
+                    if (completed.compareAndSet(false, true)) {
+                        listener.fetched(System.nanoTime() - startedNanos, documents.get());
+                        documentListener.failed(deadlineExceeded());
+                    }
+                    return false;
+                }
+
+                documents.incrementAndGet();
+                return documentListener.documentArrived(document);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                if (complete()) {
+                    documentListener.failed(e);
+                }
+            }
+
+            @Override
+            public void eos() {
+                if (complete()) {
+                    documentListener.eos();
+                }
+            }
+        });
+    }
+
+    @Override
+    public Iterator<Document> iterator() {
+        return counting(delegate.iterator());
+    }
+
+    @Override
+    public Iterable<DocumentReader> documentReaders() {
+        Iterable<DocumentReader> readers = delegate.documentReaders();
+        return () -> counting(readers.iterator());
+    }
+
+    @Override
+    public QueryPlan getQueryPlan() {
+
+        if (!(delegate instanceof QueryResult)) {
+            throw new UnsupportedOperationException("Query plan is not available for the document stream");
+        }
+
+        return ((QueryResult) delegate).getQueryPlan();
+    }
+
+    @Override
+    public void close() {
+        try {
+            delegate.close();
+        } finally {
+            complete();
+        }
+    }
+
+    private <T> Iterator<T> counting(Iterator<T> iterator) {
+        return new Iterator<T>() {
+
+            @Override
+            public boolean hasNext() {
+
+                checkDeadline();
+                boolean hasNext = iterator.hasNext();
+                if (!hasNext) {
+                    complete();
+                }
+
+                return hasNext;
+            }
+
+            @Override
+            public T next() {
+                checkDeadline();
+                T next = iterator.next();
+                documents.incrementAndGet();
+                return next;
+            }
+        };
+    }
+
+    private void checkDeadline() {
+        if (expired()) {
+            close();
+            throw deadlineExceeded();
+        }
+    }
+
+    private boolean expired() {
+        return deadlineNanos != OjaiSearchClient.NO_DEADLINE && System.nanoTime() - deadlineNanos > 0;
+    }
+
+    private static IllegalStateException deadlineExceeded() {
+        return new IllegalStateException("Documents are not fetched before the deadline", new TimeoutException());
+    }
+
+    /**
+     * Reports the fetch once.
+     *
+     * @return {@code true} if the fetch is reported by this call.
+     */
+    private boolean complete() {
+
+        if (completed.compareAndSet(false, true)) {
+            listener.fetched(System.nanoTime() - startedNanos, documents.get());
+            return true;
+        }
+
+        return false;
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.mapr.ojai.search.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket, refilled continuously at the fixed rate up to its capacity.
+ */
+class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+
+    private double tokens;
+    private long refilledAtNanos = System.nanoTime();
+
+    TokenBucket(double tokensPerSecond, int capacity) {
+        this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = capacity;
+        this.tokens = capacity;
+    }
+
+    /**
+     * Takes a token if available.
+     *
+     * @return {@code true} if token is taken.
+     */
+    synchronized boolean tryAcquire() {
+
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAtNanos) * tokensPerNano);
+        refilledAtNanos = now;
+
+        if (tokens < 1) {
+            return false;
+        }
+
+        tokens--;
+        return true;
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.mapr.ojai.search.client.aggregation;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a single aggregation. Bucket aggregations, such as terms and histogram, provide list of buckets, while
+ * metric aggregations, such as min, max and avg, provide single value.
+ */
+public class AggregationResult {
+
+    public static class Bucket {
+
+        private final Object key;
+        private final long docCount;
+
+        public Bucket(Object key, long docCount) {
+            this.key = key;
+            this.docCount = docCount;
+        }
+
+        public Object getKey() {
+            return key;
+        }
+
+        public long getDocCount() {
+            return docCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Bucket{" +
+                    "key=" + key +
+                    ", docCount=" + docCount +
+                    '}';
+        }
+    }
+
+    private final String name;
+    private final List<Bucket> buckets;
+    private final Double value;
+
+    private AggregationResult(String name, List<Bucket> buckets, Double value) {
+        this.name = name;
+        this.buckets = buckets;
+        this.value = value;
+    }
+
+    public static AggregationResult ofBuckets(String name, List<Bucket> buckets) {
+        return new AggregationResult(name, buckets, null);
+    }
+
+    /**
+     * Creates result of metric aggregation. Non-finite values, which ElasticSearch returns when there are no
+     * documents with the field, are converted to {@code null}.
+     */
+    public static AggregationResult ofValue(String name, double value) {
+        return new AggregationResult(name, Collections.emptyList(), Double.isFinite(value) ? value : null);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Bucket> getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * Returns value of metric aggregation.
+     *
+     * @return value of metric aggregation or {@code null} if there are no documents with the field.
+     */
+    public Double getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "AggregationResult{" +
+                "name='" + name + '\'' +
+                ", buckets=" + buckets +
+                ", value=" + value +
+                '}';
+    }
+}
@@ -0,0 +1,50 @@
+package com.mapr.ojai.search.client.aggregation;
+
+import java.util.Map;
+
+/**
+ * Results of the aggregations along with the total number of documents, matching search query.
+ */
+public class AggregationResults {
+
+    private final long totalHits;
+    private final Map<String, AggregationResult> results;
+
+    public AggregationResults(long totalHits, Map<String, AggregationResult> results) {
+        this.totalHits = totalHits;
+        this.results = results;
+    }
+
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * Returns result of the aggregation with the specified name.
+     *
+     * @param name name of the aggregation.
+     * @return aggregation result.
+     * @throws IllegalArgumentException if there is no aggregation with the specified name.
+     */
+    public AggregationResult get(String name) {
+
+        AggregationResult result = results.get(name);
+        if (result == null) {
+            throw new IllegalArgumentException("There is no aggregation with name '" + name + "'");
+        }
+
+        return result;
+    }
+
+    public Map<String, AggregationResult> asMap() {
+        return results;
+    }
+
+    @Override
+    public String toString() {
+        return "AggregationResults{" +
+                "totalHits=" + totalHits +
+                ", results=" + results +
+                '}';
+    }
+}
@@ -0,0 +1,37 @@
+package com.mapr.ojai.search.client.aggregation;
+
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.metrics.NumericMetricsAggregation;
+
+/**
+ * Computes the average value of the numeric field.
+ * <br/>
+ * <a href=https://www.elastic.co/guide/en/elasticsearch/reference/current/search-aggregations-metrics-avg-aggregation.html>ES documentation</a>
+ */
+public class AvgAggregation implements OjaiSearchAggregation {
+
+    private String name;
+    private String field;
+
+    public AvgAggregation(String name, String field) {
+        this.name = name;
+        this.field = field;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public AggregationBuilder aggregation() {
+        return AggregationBuilders.avg(name).field(field);
+    }
+
+    @Override
+    public AggregationResult result(Aggregation aggregation) {
+        return AggregationResult.ofValue(name, ((NumericMetricsAggregation.SingleValue) aggregation).value());
+    }
+}
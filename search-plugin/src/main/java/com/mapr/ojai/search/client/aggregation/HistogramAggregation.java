@@ -0,0 +1,52 @@
+package com.mapr.ojai.search.client.aggregation;
+
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Buckets documents by the numeric field into fixed-size intervals. Empty buckets are not returned.
+ * <br/>
+ * <a href=https://www.elastic.co/guide/en/elasticsearch/reference/current/search-aggregations-bucket-histogram-aggregation.html>ES documentation</a>
+ */
+public class HistogramAggregation implements OjaiSearchAggregation {
+
+    private String name;
+    private String field;
+    private double interval;
+
+    public HistogramAggregation(String name, String field, double interval) {
+
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Histogram interval must be greater than zero");
+        }
+
+        this.name = name;
+        this.field = field;
+        this.interval = interval;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public AggregationBuilder aggregation() {
+        return AggregationBuilders.histogram(name).field(field).interval(interval).minDocCount(1);
+    }
+
+    @Override
+    public AggregationResult result(Aggregation aggregation) {
+
+        List<AggregationResult.Bucket> buckets = ((Histogram) aggregation).getBuckets().stream()
+                .map(bucket -> new AggregationResult.Bucket(bucket.getKey(), bucket.getDocCount()))
+                .collect(Collectors.toList());
+
+        return AggregationResult.ofBuckets(name, buckets);
+    }
+}
@@ -0,0 +1,37 @@
+package com.mapr.ojai.search.client.aggregation;
+
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.metrics.NumericMetricsAggregation;
+
+/**
+ * Computes the minimum value of the numeric field.
+ * <br/>
+ * <a href=https://www.elastic.co/guide/en/elasticsearch/reference/current/search-aggregations-metrics-min-aggregation.html>ES documentation</a>
+ */
+public class MinAggregation implements OjaiSearchAggregation {
+
+    private String name;
+    private String field;
+
+    public MinAggregation(String name, String field) {
+        this.name = name;
+        this.field = field;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public AggregationBuilder aggregation() {
+        return AggregationBuilders.min(name).field(field);
+    }
+
+    @Override
+    public AggregationResult result(Aggregation aggregation) {
+        return AggregationResult.ofValue(name, ((NumericMetricsAggregation.SingleValue) aggregation).value());
+    }
+}
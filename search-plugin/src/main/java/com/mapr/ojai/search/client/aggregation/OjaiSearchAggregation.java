@@ -0,0 +1,29 @@
+package com.mapr.ojai.search.client.aggregation;
+
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+
+/**
+ * Aggregation over indexed fields of the documents, matching search query. Aggregation results are returned directly
+ * from ElasticSearch, so documents are not fetched from MapR-DB JSON Table.
+ */
+public interface OjaiSearchAggregation {
+
+    /**
+     * Returns name of the aggregation, which is used to get its result from {@link AggregationResults}.
+     *
+     * @return name of the aggregation.
+     */
+    String getName();
+
+    AggregationBuilder aggregation();
+
+    /**
+     * Converts ElasticSearch aggregation of the search response into the result of this aggregation.
+     *
+     * @param aggregation ElasticSearch aggregation, named after this aggregation.
+     * @return aggregation result.
+     */
+    AggregationResult result(Aggregation aggregation);
+
+}
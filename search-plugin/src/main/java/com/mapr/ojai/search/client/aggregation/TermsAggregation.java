@@ -0,0 +1,62 @@
+package com.mapr.ojai.search.client.aggregation;
+
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Buckets documents by the unique values of the field. Returns the most frequent values along with the number of
+ * documents. Field must be aggregatable, such as keyword or numeric one.
+ * <br/>
+ * <a href=https://www.elastic.co/guide/en/elasticsearch/reference/current/search-aggregations-bucket-terms-aggregation.html>ES documentation</a>
+ */
+public class TermsAggregation implements OjaiSearchAggregation {
+
+    /**
+     * Same as default size of ES terms aggregation.
+     */
+    private static final int DEFAULT_SIZE = 10;
+
+    private String name;
+    private String field;
+    private int size;
+
+    public TermsAggregation(String name, String field) {
+        this(name, field, DEFAULT_SIZE);
+    }
+
+    public TermsAggregation(String name, String field, int size) {
+
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size of terms aggregation must be greater than zero");
+        }
+
+        this.name = name;
+        this.field = field;
+        this.size = size;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public AggregationBuilder aggregation() {
+        return AggregationBuilders.terms(name).field(field).size(size);
+    }
+
+    @Override
+    public AggregationResult result(Aggregation aggregation) {
+
+        List<AggregationResult.Bucket> buckets = ((Terms) aggregation).getBuckets().stream()
+                .map(bucket -> new AggregationResult.Bucket(bucket.getKey(), bucket.getDocCount()))
+                .collect(Collectors.toList());
+
+        return AggregationResult.ofBuckets(name, buckets);
+    }
+}
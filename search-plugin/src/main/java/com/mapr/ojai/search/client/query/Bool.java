@@ -0,0 +1,124 @@
+package com.mapr.ojai.search.client.query;
+
+import com.mapr.ojai.search.lucene.LuceneQueryContext;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A query that matches documents matching boolean combinations of other queries:
+ * <pre>
+ *     new Bool()
+ *         .must(new Match("description", "new york city"))
+ *         .filter(new Term("status", "published"))
+ *         .mustNot(new Range("price").gt(100))
+ * </pre>
+ * {@link FilterQuery Structured queries}, added as {@code must} clauses, are executed in filter context, since they do
+ * not contribute to the score, so ElasticSearch can cache their results.
+ * <br/>
+ * <a href=https://www.elastic.co/guide/en/elasticsearch/reference/current/query-dsl-bool-query.html>ES documentation</a>
+ */
+public class Bool implements OjaiSearchQuery {
+
+    private final List<OjaiSearchQuery> must = new ArrayList<>();
+    private final List<OjaiSearchQuery> should = new ArrayList<>();
+    private final List<OjaiSearchQuery> filter = new ArrayList<>();
+    private final List<OjaiSearchQuery> mustNot = new ArrayList<>();
+    private Integer minimumShouldMatch;
+
+    /**
+     * Adds clause, which must appear in matching documents. Structured queries are added in filter context.
+     */
+    public Bool must(OjaiSearchQuery query) {
+        if (query instanceof FilterQuery) {
+            filter.add(query);
+        } else {
+            must.add(nonNull(query));
+        }
+        return this;
+    }
+
+    /**
+     * Adds clause, which should appear in matching documents.
+     */
+    public Bool should(OjaiSearchQuery query) {
+        should.add(nonNull(query));
+        return this;
+    }
+
+    /**
+     * Adds clause, which must appear in matching documents, but does not contribute to the score.
+     */
+    public Bool filter(OjaiSearchQuery query) {
+        filter.add(nonNull(query));
+        return this;
+    }
+
+    /**
+     * Adds clause, which must not appear in matching documents. Executed in filter context.
+     */
+    public Bool mustNot(OjaiSearchQuery query) {
+        mustNot.add(nonNull(query));
+        return this;
+    }
+
+    /**
+     * Specifies the minimum number of should clauses, which must match. By default, at least one should clause must
+     * match if there are no must or filter clauses.
+     */
+    public Bool minimumShouldMatch(int minimumShouldMatch) {
+        this.minimumShouldMatch = minimumShouldMatch;
+        return this;
+    }
+
+    @Override
+    public QueryBuilder query() {
+
+        BoolQueryBuilder boolQuery = QueryBuilders.boolQuery();
+        must.forEach(query -> boolQuery.must(query.query()));
+        should.forEach(query -> boolQuery.should(query.query()));
+        filter.forEach(query -> boolQuery.filter(query.query()));
+        mustNot.forEach(query -> boolQuery.mustNot(query.query()));
+
+        if (minimumShouldMatch != null) {
+            boolQuery.minimumShouldMatch(minimumShouldMatch);
+        }
+
+        return boolQuery;
+    }
+
+    @Override
+    public Query luceneQuery(LuceneQueryContext context) {
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        must.forEach(query -> builder.add(query.luceneQuery(context), BooleanClause.Occur.MUST));
+        should.forEach(query -> builder.add(query.luceneQuery(context), BooleanClause.Occur.SHOULD));
+        filter.forEach(query -> builder.add(query.luceneQuery(context), BooleanClause.Occur.FILTER));
+        mustNot.forEach(query -> builder.add(query.luceneQuery(context), BooleanClause.Occur.MUST_NOT));
+
+        // Same as ElasticSearch, query with must_not clauses only matches all the other documents
+        if (must.isEmpty() && should.isEmpty() && filter.isEmpty()) {
+            builder.add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+        }
+
+        if (minimumShouldMatch != null) {
+            builder.setMinimumNumberShouldMatch(minimumShouldMatch);
+        }
+
+        return builder.build();
+    }
+
+    private static OjaiSearchQuery nonNull(OjaiSearchQuery query) {
+        if (query == null) {
+            throw new IllegalArgumentException("Query clause can not be null");
+        }
+        return query;
+    }
+}
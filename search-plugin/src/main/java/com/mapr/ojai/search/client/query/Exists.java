@@ -0,0 +1,32 @@
+package com.mapr.ojai.search.client.query;
+
+import com.mapr.ojai.search.lucene.LuceneDocuments;
+import com.mapr.ojai.search.lucene.LuceneQueryContext;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+
+/**
+ * Returns documents that have at least one non-null value in the specified field.
+ * <br/>
+ * <a href=https://www.elastic.co/guide/en/elasticsearch/reference/current/query-dsl-exists-query.html>ES documentation</a>
+ */
+public class Exists implements FilterQuery {
+
+    private String field;
+
+    public Exists(String field) {
+        this.field = field;
+    }
+
+    @Override
+    public QueryBuilder query() {
+        return QueryBuilders.existsQuery(field);
+    }
+
+    @Override
+    public Query luceneQuery(LuceneQueryContext context) {
+        return new TermQuery(new org.apache.lucene.index.Term(LuceneDocuments.FIELD_NAMES_FIELD, field));
+    }
+}
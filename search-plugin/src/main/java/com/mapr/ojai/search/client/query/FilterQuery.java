@@ -0,0 +1,9 @@
+package com.mapr.ojai.search.client.query;
+
+/**
+ * Structured query, which answers "does this document match?" without computing relevance score. When it is used as a
+ * clause of {@link Bool} query, it is executed in filter context, so its results are cached by ElasticSearch and do
+ * not contribute to the score.
+ */
+public interface FilterQuery extends OjaiSearchQuery {
+}
@@ -0,0 +1,63 @@
+package com.mapr.ojai.search.client.query;
+
+import com.mapr.ojai.search.lucene.LuceneQueryContext;
+import org.apache.lucene.document.LatLonPoint;
+import org.apache.lucene.search.Query;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+
+/**
+ * Matches documents with 'geo_point' field values within the bounding box:
+ * <pre>
+ *     new GeoBoundingBox("location").topLeft(40.73, -74.10).bottomRight(40.01, -71.12)
+ * </pre>
+ * Query is executed against the BKD tree of the field, so location filters do not require scans of the fetched
+ * documents. Embedded Lucene backend matches points, indexed as objects of 'lat' and 'lon' fields.
+ * <br/>
+ * <a href=https://www.elastic.co/guide/en/elasticsearch/reference/current/query-dsl-geo-bounding-box-query.html>ES documentation</a>
+ */
+public class GeoBoundingBox implements FilterQuery {
+
+    private String field;
+    private Double top;
+    private Double left;
+    private Double bottom;
+    private Double right;
+
+    public GeoBoundingBox(String field) {
+        this.field = field;
+    }
+
+    public GeoBoundingBox topLeft(double lat, double lon) {
+        this.top = lat;
+        this.left = lon;
+        return this;
+    }
+
+    public GeoBoundingBox bottomRight(double lat, double lon) {
+        this.bottom = lat;
+        this.right = lon;
+        return this;
+    }
+
+    @Override
+    public QueryBuilder query() {
+
+        if (top == null || bottom == null) {
+            throw new IllegalStateException("Corners of geo bounding box query are not specified");
+        }
+
+        return QueryBuilders.geoBoundingBoxQuery(field).setCorners(top, left, bottom, right);
+    }
+
+    @Override
+    public Query luceneQuery(LuceneQueryContext context) {
+
+        if (top == null || bottom == null) {
+            throw new IllegalStateException("Corners of geo bounding box query are not specified");
+        }
+
+        // Box, which crosses the dateline, has its left longitude greater than the right one
+        return LatLonPoint.newBoxQuery(field, bottom, top, left, right);
+    }
+}
@@ -0,0 +1,65 @@
+package com.mapr.ojai.search.client.query;
+
+import com.mapr.ojai.search.lucene.LuceneQueryContext;
+import org.apache.lucene.document.LatLonPoint;
+import org.apache.lucene.search.Query;
+import org.elasticsearch.common.unit.DistanceUnit;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+
+/**
+ * Matches documents with 'geo_point' field values within the distance from the point:
+ * <pre>
+ *     new GeoDistance("location").point(40.71, -74.00).distance("5km")
+ * </pre>
+ * Query is executed against the BKD tree of the field, so location filters do not require scans of the fetched
+ * documents. Embedded Lucene backend matches points, indexed as objects of 'lat' and 'lon' fields.
+ * <br/>
+ * <a href=https://www.elastic.co/guide/en/elasticsearch/reference/current/query-dsl-geo-distance-query.html>ES documentation</a>
+ */
+public class GeoDistance implements FilterQuery {
+
+    private String field;
+    private double lat;
+    private double lon;
+    private String distance;
+
+    public GeoDistance(String field) {
+        this.field = field;
+    }
+
+    public GeoDistance point(double lat, double lon) {
+        this.lat = lat;
+        this.lon = lon;
+        return this;
+    }
+
+    /**
+     * @param distance distance with unit, for example '200m' or '12km'.
+     */
+    public GeoDistance distance(String distance) {
+        this.distance = distance;
+        return this;
+    }
+
+    @Override
+    public QueryBuilder query() {
+
+        if (distance == null) {
+            throw new IllegalStateException("Distance of geo distance query is not specified");
+        }
+
+        return QueryBuilders.geoDistanceQuery(field).point(lat, lon).distance(distance);
+    }
+
+    @Override
+    public Query luceneQuery(LuceneQueryContext context) {
+
+        if (distance == null) {
+            throw new IllegalStateException("Distance of geo distance query is not specified");
+        }
+
+        double meters = DistanceUnit.parse(distance, DistanceUnit.DEFAULT, DistanceUnit.METERS);
+        return LatLonPoint.newDistanceQuery(field, lat, lon, meters);
+    }
+}
@@ -1,5 +1,9 @@
 package com.mapr.ojai.search.client.query;
 
+import com.mapr.ojai.search.lucene.LuceneQueryContext;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 
@@ -33,6 +37,14 @@ public class Match implements OjaiSearchQuery {
         return QueryBuilders.matchQuery(field, text).operator(operator());
     }
 
+    @Override
+    public Query luceneQuery(LuceneQueryContext context) {
+
+        BooleanClause.Occur occur = (this.operator == Operator.AND) ? BooleanClause.Occur.MUST : BooleanClause.Occur.SHOULD;
+        Query query = context.getQueryBuilder().createBooleanQuery(field, String.valueOf(text), occur);
+        return (query != null) ? query : new MatchNoDocsQuery();
+    }
+
     private org.elasticsearch.index.query.Operator operator() {
         return (this.operator == Operator.AND)
                 ? org.elasticsearch.index.query.Operator.AND
@@ -1,5 +1,8 @@
 package com.mapr.ojai.search.client.query;
 
+import com.mapr.ojai.search.lucene.LuceneQueryContext;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 
@@ -21,4 +24,10 @@ public class MatchPhrase implements OjaiSearchQuery {
     public QueryBuilder query() {
         return QueryBuilders.matchPhraseQuery(field, text);
     }
+
+    @Override
+    public Query luceneQuery(LuceneQueryContext context) {
+        Query query = context.getQueryBuilder().createPhraseQuery(field, String.valueOf(text));
+        return (query != null) ? query : new MatchNoDocsQuery();
+    }
 }
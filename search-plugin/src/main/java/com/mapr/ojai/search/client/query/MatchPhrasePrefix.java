@@ -1,8 +1,19 @@
 package com.mapr.ojai.search.client.query;
 
+import com.mapr.ojai.search.lucene.LuceneQueryContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.spans.SpanMultiTermQueryWrapper;
+import org.apache.lucene.search.spans.SpanNearQuery;
+import org.apache.lucene.search.spans.SpanQuery;
+import org.apache.lucene.search.spans.SpanTermQuery;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 
+import java.util.List;
+
 /**
  * The match_phrase_prefix is the same as match_phrase, except that it allows for prefix matches on the last term in
  * the text. In addition, it also accepts a max_expansions parameter (default 50) that can control to how many suffixes
@@ -31,4 +42,30 @@ public class MatchPhrasePrefix implements OjaiSearchQuery {
     public QueryBuilder query() {
         return QueryBuilders.matchPhrasePrefixQuery(field, text).maxExpansions(maxExpansions);
     }
+
+    @Override
+    public Query luceneQuery(LuceneQueryContext context) {
+
+        List<String> terms = context.analyze(field, String.valueOf(text));
+        if (terms.isEmpty()) {
+            return new MatchNoDocsQuery();
+        }
+
+        // Last term is expanded to at most 'maxExpansions' most frequent suffixes
+        SpanMultiTermQueryWrapper<PrefixQuery> prefix =
+                new SpanMultiTermQueryWrapper<>(new PrefixQuery(new Term(field, terms.get(terms.size() - 1))));
+        prefix.setRewriteMethod(new SpanMultiTermQueryWrapper.TopTermsSpanBooleanQueryRewrite(maxExpansions));
+
+        if (terms.size() == 1) {
+            return prefix;
+        }
+
+        SpanQuery[] clauses = new SpanQuery[terms.size()];
+        for (int i = 0; i < terms.size() - 1; i++) {
+            clauses[i] = new SpanTermQuery(new Term(field, terms.get(i)));
+        }
+        clauses[terms.size() - 1] = prefix;
+
+        return new SpanNearQuery(clauses, 0, true);
+    }
 }
@@ -1,8 +1,16 @@
 package com.mapr.ojai.search.client.query;
 
+import com.mapr.ojai.search.lucene.LuceneQueryContext;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * The multi_match query builds on the match query to allow multi-field queries. Fields can be specified with
  * wildcards (eg: "*_name").
@@ -33,6 +41,24 @@ public class MultiMatch implements OjaiSearchQuery {
         return QueryBuilders.multiMatchQuery(text, fields).operator(operator());
     }
 
+    @Override
+    public Query luceneQuery(LuceneQueryContext context) {
+
+        BooleanClause.Occur occur = (this.operator == Operator.AND) ? BooleanClause.Occur.MUST : BooleanClause.Occur.SHOULD;
+        List<Query> fieldQueries = new ArrayList<>();
+        for (String fieldPattern : fields) {
+            for (String field : context.resolveFields(fieldPattern)) {
+                Query fieldQuery = context.getQueryBuilder().createBooleanQuery(field, String.valueOf(text), occur);
+                if (fieldQuery != null) {
+                    fieldQueries.add(fieldQuery);
+                }
+            }
+        }
+
+        // Same as 'best_fields' type of ES multi_match query
+        return (fieldQueries.isEmpty()) ? new MatchNoDocsQuery() : new DisjunctionMaxQuery(fieldQueries, 0.0f);
+    }
+
     private org.elasticsearch.index.query.Operator operator() {
         return (this.operator == Operator.AND)
                 ? org.elasticsearch.index.query.Operator.AND
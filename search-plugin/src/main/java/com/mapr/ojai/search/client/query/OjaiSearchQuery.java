@@ -1,9 +1,24 @@
 package com.mapr.ojai.search.client.query;
 
+import com.mapr.ojai.search.lucene.LuceneQueryContext;
+import org.apache.lucene.search.Query;
 import org.elasticsearch.index.query.QueryBuilder;
 
 public interface OjaiSearchQuery {
 
     QueryBuilder query();
 
+    /**
+     * Translates this query into Lucene query, which is executed against embedded Lucene index. Queries, which do not
+     * override this method, are supported by ElasticSearch backend only.
+     *
+     * @param context provides analyzer and field information of the searched index.
+     * @return Lucene query.
+     * @throws UnsupportedOperationException if the query is not supported by embedded Lucene backend.
+     */
+    default Query luceneQuery(LuceneQueryContext context) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() +
+                " query is not supported by embedded Lucene backend");
+    }
+
 }
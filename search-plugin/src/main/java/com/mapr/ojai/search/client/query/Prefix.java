@@ -0,0 +1,36 @@
+package com.mapr.ojai.search.client.query;
+
+import com.mapr.ojai.search.lucene.LuceneQueryContext;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+
+import java.util.Locale;
+
+/**
+ * Matches documents that have fields containing terms with a specified prefix (not analyzed).
+ * <br/>
+ * <a href=https://www.elastic.co/guide/en/elasticsearch/reference/current/query-dsl-prefix-query.html>ES documentation</a>
+ */
+public class Prefix implements FilterQuery {
+
+    private String field;
+    private String prefix;
+
+    public Prefix(String field, String prefix) {
+        this.field = field;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public QueryBuilder query() {
+        return QueryBuilders.prefixQuery(field, prefix);
+    }
+
+    @Override
+    public Query luceneQuery(LuceneQueryContext context) {
+        // Embedded Lucene index stores lowercased terms of all the fields
+        return new PrefixQuery(new org.apache.lucene.index.Term(field, prefix.toLowerCase(Locale.ROOT)));
+    }
+}
@@ -1,5 +1,9 @@
 package com.mapr.ojai.search.client.query;
 
+import com.mapr.ojai.search.lucene.LuceneQueryContext;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.Query;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 
@@ -22,4 +26,13 @@ public class QueryString implements OjaiSearchQuery {
     public QueryBuilder query() {
         return QueryBuilders.queryStringQuery(query).field(field);
     }
+
+    @Override
+    public Query luceneQuery(LuceneQueryContext context) {
+        try {
+            return new QueryParser(field, context.getAnalyzer()).parse(query);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Can not parse query string '" + query + "'", e);
+        }
+    }
 }
@@ -0,0 +1,146 @@
+package com.mapr.ojai.search.client.query;
+
+import com.mapr.ojai.search.lucene.LuceneQueryContext;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.search.Query;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.ojai.types.ODate;
+import org.ojai.types.OTimestamp;
+
+/**
+ * Matches documents with fields that have terms within a certain range. Bounds are specified via
+ * {@link #gt(Object)}, {@link #gte(Object)}, {@link #lt(Object)} and {@link #lte(Object)} methods:
+ * <pre>
+ *     new Range("price").gte(10).lt(20)
+ *     new Range("created").gte(ODate.parse("2017-01-01")).lt(new OTimestamp(System.currentTimeMillis()))
+ *     new Range("created").gte("now-1d/d").timeZone("+01:00")
+ * </pre>
+ * OJAI date and timestamp bounds are converted the same way as indexed OJAI values, so they match 'date' fields.
+ * Embedded Lucene backend supports numeric and timestamp bounds only, which are matched against the indexed numeric
+ * values.
+ * <br/>
+ * <a href=https://www.elastic.co/guide/en/elasticsearch/reference/current/query-dsl-range-query.html>ES documentation</a>
+ */
+public class Range implements FilterQuery {
+
+    private String field;
+    private Object from;
+    private Object to;
+    private boolean includeLower = true;
+    private boolean includeUpper = true;
+    private String format;
+    private String timeZone;
+
+    public Range(String field) {
+        this.field = field;
+    }
+
+    public Range gt(Object from) {
+        this.from = from;
+        this.includeLower = false;
+        return this;
+    }
+
+    public Range gte(Object from) {
+        this.from = from;
+        this.includeLower = true;
+        return this;
+    }
+
+    public Range lt(Object to) {
+        this.to = to;
+        this.includeUpper = false;
+        return this;
+    }
+
+    public Range lte(Object to) {
+        this.to = to;
+        this.includeUpper = true;
+        return this;
+    }
+
+    /**
+     * Format of the date bounds, which overrides the format of the field, for example 'dd/MM/yyyy'.
+     */
+    public Range format(String format) {
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * Time zone of the date bounds and date math, for example '+01:00'.
+     */
+    public Range timeZone(String timeZone) {
+        this.timeZone = timeZone;
+        return this;
+    }
+
+    @Override
+    public QueryBuilder query() {
+
+        RangeQueryBuilder rangeQuery = QueryBuilders.rangeQuery(field);
+        if (from != null) {
+            rangeQuery.from(bound(from), includeLower);
+        }
+
+        if (to != null) {
+            rangeQuery.to(bound(to), includeUpper);
+        }
+
+        if (format != null) {
+            rangeQuery.format(format);
+        }
+
+        if (timeZone != null) {
+            rangeQuery.timeZone(timeZone);
+        }
+
+        return rangeQuery;
+    }
+
+    @Override
+    public Query luceneQuery(LuceneQueryContext context) {
+
+        if (format != null || timeZone != null) {
+            throw new UnsupportedOperationException("Range format and time zone are not supported by embedded " +
+                    "Lucene backend");
+        }
+
+        double lower = (from != null) ? numericBound(from) : Double.NEGATIVE_INFINITY;
+        double upper = (to != null) ? numericBound(to) : Double.POSITIVE_INFINITY;
+        if (from != null && !includeLower) {
+            lower = Math.nextUp(lower);
+        }
+
+        if (to != null && !includeUpper) {
+            upper = Math.nextDown(upper);
+        }
+
+        return DoublePoint.newRangeQuery(field, lower, upper);
+    }
+
+    private double numericBound(Object value) {
+
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof OTimestamp) {
+            return ((OTimestamp) value).getMillis();
+        }
+
+        throw new UnsupportedOperationException("Range bound '" + value + "' of field '" + field + "' is not " +
+                "supported by embedded Lucene backend, only numeric and timestamp bounds are supported");
+    }
+
+    private static Object bound(Object value) {
+
+        if (value instanceof OTimestamp) {
+            return ((OTimestamp) value).getMillis();
+        } else if (value instanceof ODate) {
+            return ((ODate) value).toDateStr();
+        }
+
+        return value;
+    }
+}
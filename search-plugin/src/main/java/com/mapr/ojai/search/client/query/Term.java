@@ -0,0 +1,33 @@
+package com.mapr.ojai.search.client.query;
+
+import com.mapr.ojai.search.lucene.LuceneQueryContext;
+import org.apache.lucene.search.Query;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+
+/**
+ * The term query finds documents that contain the exact term specified. Unlike match query, the value is not analyzed,
+ * so it is intended for structured fields such as numbers, dates and keywords.
+ * <br/>
+ * <a href=https://www.elastic.co/guide/en/elasticsearch/reference/current/query-dsl-term-query.html>ES documentation</a>
+ */
+public class Term implements FilterQuery {
+
+    private String field;
+    private Object value;
+
+    public Term(String field, Object value) {
+        this.field = field;
+        this.value = value;
+    }
+
+    @Override
+    public QueryBuilder query() {
+        return QueryBuilders.termQuery(field, value);
+    }
+
+    @Override
+    public Query luceneQuery(LuceneQueryContext context) {
+        return context.exactQuery(field, String.valueOf(value));
+    }
+}
@@ -0,0 +1,45 @@
+package com.mapr.ojai.search.client.query;
+
+import com.mapr.ojai.search.lucene.LuceneQueryContext;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+
+/**
+ * Filters documents that have fields that match any of the provided terms (not analyzed).
+ * <br/>
+ * <a href=https://www.elastic.co/guide/en/elasticsearch/reference/current/query-dsl-terms-query.html>ES documentation</a>
+ */
+public class Terms implements FilterQuery {
+
+    private String field;
+    private Object[] values;
+
+    public Terms(String field, Object... values) {
+
+        if (values == null || values.length == 0) {
+            throw new IllegalArgumentException("At least one term must be specified");
+        }
+
+        this.field = field;
+        this.values = values;
+    }
+
+    @Override
+    public QueryBuilder query() {
+        return QueryBuilders.termsQuery(field, values);
+    }
+
+    @Override
+    public Query luceneQuery(LuceneQueryContext context) {
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (Object value : values) {
+            builder.add(context.exactQuery(field, String.valueOf(value)), BooleanClause.Occur.SHOULD);
+        }
+
+        return builder.build();
+    }
+}
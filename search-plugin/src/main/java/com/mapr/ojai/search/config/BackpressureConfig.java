@@ -0,0 +1,87 @@
+package com.mapr.ojai.search.config;
+
+/**
+ * Settings of the adaptive limit of concurrent bulk requests to ElasticSearch. Limit grows while ElasticSearch
+ * responds in time and shrinks on rejections or slow responses. Rejected bulk items are retried with backoff, and
+ * consumption of the changelogs is paused while ElasticSearch stays overloaded.
+ */
+public class BackpressureConfig {
+
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+    public static final long DEFAULT_LATENCY_THRESHOLD_MS = 5_000L;
+    public static final int DEFAULT_MAX_RETRIES = 5;
+    public static final long DEFAULT_RETRY_BACKOFF_MS = 100L;
+    public static final long DEFAULT_PAUSE_MS = 1_000L;
+
+    private int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+    private long latencyThresholdMs = DEFAULT_LATENCY_THRESHOLD_MS;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long retryBackoffMs = DEFAULT_RETRY_BACKOFF_MS;
+    private long pauseMs = DEFAULT_PAUSE_MS;
+
+    /**
+     * Upper bound of the adaptive limit of concurrent bulk requests.
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Bulk response time, above which the limit is decreased.
+     */
+    public long getLatencyThresholdMs() {
+        return latencyThresholdMs;
+    }
+
+    public void setLatencyThresholdMs(long latencyThresholdMs) {
+        this.latencyThresholdMs = latencyThresholdMs;
+    }
+
+    /**
+     * Number of retries of rejected bulk items, before they are sent to the dead-letter queue.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Delay before the first retry of rejected bulk items, doubled on each subsequent retry.
+     */
+    public long getRetryBackoffMs() {
+        return retryBackoffMs;
+    }
+
+    public void setRetryBackoffMs(long retryBackoffMs) {
+        this.retryBackoffMs = retryBackoffMs;
+    }
+
+    /**
+     * Time, for which changelog partitions are paused after ElasticSearch is overloaded at the minimum limit.
+     */
+    public long getPauseMs() {
+        return pauseMs;
+    }
+
+    public void setPauseMs(long pauseMs) {
+        this.pauseMs = pauseMs;
+    }
+
+    @Override
+    public String toString() {
+        return "BackpressureConfig{" +
+                "maxConcurrentRequests=" + maxConcurrentRequests +
+                ", latencyThresholdMs=" + latencyThresholdMs +
+                ", maxRetries=" + maxRetries +
+                ", retryBackoffMs=" + retryBackoffMs +
+                ", pauseMs=" + pauseMs +
+                '}';
+    }
+}
@@ -0,0 +1,71 @@
+package com.mapr.ojai.search.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Settings of bulk requests, which are used to send changes to ElasticSearch.
+ */
+public class BulkConfig {
+
+    public static final int DEFAULT_ACTIONS = 500;
+
+    /**
+     * Content type of the indexed document sources.
+     */
+    public enum SourceFormat {
+        @JsonProperty("json")
+        JSON,
+        @JsonProperty("smile")
+        SMILE,
+        @JsonProperty("cbor")
+        CBOR
+    }
+
+    private int actions = DEFAULT_ACTIONS;
+    private SourceFormat format = SourceFormat.SMILE;
+    private boolean compress;
+
+    /**
+     * Maximum number of changes sent in a single bulk request. Pending changes are also sent after each batch of
+     * consumed Change Data Records.
+     */
+    public int getActions() {
+        return actions;
+    }
+
+    public void setActions(int actions) {
+        this.actions = actions;
+    }
+
+    /**
+     * Format, in which document sources are encoded. Binary formats are smaller on the wire and are parsed faster
+     * by ElasticSearch.
+     */
+    public SourceFormat getFormat() {
+        return format;
+    }
+
+    public void setFormat(SourceFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Whether requests to ElasticSearch are compressed by the transport client. Requires restart.
+     */
+    public boolean isCompress() {
+        return compress;
+    }
+
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkConfig{" +
+                "actions=" + actions +
+                ", format=" + format +
+                ", compress=" + compress +
+                '}';
+    }
+}
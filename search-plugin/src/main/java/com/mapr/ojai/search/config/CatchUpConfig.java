@@ -0,0 +1,85 @@
+package com.mapr.ojai.search.config;
+
+/**
+ * Settings of catch-up mode, which is used for large backfills, such as initial load or service restart after
+ * downtime. In catch-up mode periodic refresh and replicas of the written indices are disabled and larger bulk
+ * requests are used. Index settings are restored and indices are refreshed once consumer catches up.
+ */
+public class CatchUpConfig {
+
+    public static final long DEFAULT_LAG_THRESHOLD_MS = 300_000L;
+    public static final long DEFAULT_RECOVERED_LAG_MS = 10_000L;
+    public static final int DEFAULT_BULK_ACTIONS = 5_000;
+
+    private boolean enabled = true;
+    private boolean force;
+    private long lagThresholdMs = DEFAULT_LAG_THRESHOLD_MS;
+    private long recoveredLagMs = DEFAULT_RECOVERED_LAG_MS;
+    private int bulkActions = DEFAULT_BULK_ACTIONS;
+
+    /**
+     * Whether catch-up mode is detected from the consumer lag.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Forces catch-up mode regardless of the consumer lag, for example during initial load.
+     */
+    public boolean isForce() {
+        return force;
+    }
+
+    public void setForce(boolean force) {
+        this.force = force;
+    }
+
+    /**
+     * Catch-up mode is entered when the age of consumed Change Data Records exceeds this threshold.
+     */
+    public long getLagThresholdMs() {
+        return lagThresholdMs;
+    }
+
+    public void setLagThresholdMs(long lagThresholdMs) {
+        this.lagThresholdMs = lagThresholdMs;
+    }
+
+    /**
+     * Catch-up mode is left when the age of consumed Change Data Records drops below this value.
+     */
+    public long getRecoveredLagMs() {
+        return recoveredLagMs;
+    }
+
+    public void setRecoveredLagMs(long recoveredLagMs) {
+        this.recoveredLagMs = recoveredLagMs;
+    }
+
+    /**
+     * Maximum number of changes sent in a single bulk request in catch-up mode.
+     */
+    public int getBulkActions() {
+        return bulkActions;
+    }
+
+    public void setBulkActions(int bulkActions) {
+        this.bulkActions = bulkActions;
+    }
+
+    @Override
+    public String toString() {
+        return "CatchUpConfig{" +
+                "enabled=" + enabled +
+                ", force=" + force +
+                ", lagThresholdMs=" + lagThresholdMs +
+                ", recoveredLagMs=" + recoveredLagMs +
+                ", bulkActions=" + bulkActions +
+                '}';
+    }
+}
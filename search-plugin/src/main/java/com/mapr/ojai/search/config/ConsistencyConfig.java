@@ -0,0 +1,44 @@
+package com.mapr.ojai.search.config;
+
+/**
+ * Settings of consistent-read mode. In this mode Search Service periodically refreshes indices of the tables and
+ * publishes per-table watermarks, timestamps up to which changes are indexed and visible to search, so Search Client
+ * can wait for its own writes instead of forcing refresh on each write.
+ */
+public class ConsistencyConfig {
+
+    public static final long DEFAULT_PUBLISH_INTERVAL_MS = 200L;
+
+    private boolean enabled;
+    private long publishIntervalMs = DEFAULT_PUBLISH_INTERVAL_MS;
+
+    /**
+     * Whether watermarks are published.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * How often indices are refreshed and watermarks are published. Bounds the wait of consistent reads.
+     */
+    public long getPublishIntervalMs() {
+        return publishIntervalMs;
+    }
+
+    public void setPublishIntervalMs(long publishIntervalMs) {
+        this.publishIntervalMs = publishIntervalMs;
+    }
+
+    @Override
+    public String toString() {
+        return "ConsistencyConfig{" +
+                "enabled=" + enabled +
+                ", publishIntervalMs=" + publishIntervalMs +
+                '}';
+    }
+}
@@ -0,0 +1,61 @@
+package com.mapr.ojai.search.config;
+
+import java.util.List;
+
+/**
+ * Settings of the changelog consumer. Instances of Search Service with the same group id share partitions of the
+ * changelogs, so indexing is scaled out by running more instances. Each instance can also be limited to a subset of
+ * the tables.
+ */
+public class ConsumerConfig {
+
+    public static final String DEFAULT_GROUP_ID = "ojai-search-service";
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT_MS = 30_000L;
+
+    private String groupId = DEFAULT_GROUP_ID;
+    private List<String> tables;
+    private long shutdownTimeoutMs = DEFAULT_SHUTDOWN_TIMEOUT_MS;
+
+    /**
+     * Consumer group id. Partitions of the changelogs are balanced between instances with the same group id.
+     */
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(String groupId) {
+        this.groupId = groupId;
+    }
+
+    /**
+     * Paths of the tables, which changelogs are consumed by this instance. Empty list means all the tables.
+     */
+    public List<String> getTables() {
+        return tables;
+    }
+
+    public void setTables(List<String> tables) {
+        this.tables = tables;
+    }
+
+    /**
+     * Maximum time to flush pending changes on shutdown. Offsets of the changes, which are not flushed in time, are
+     * not committed, so the changes are consumed again after restart.
+     */
+    public long getShutdownTimeoutMs() {
+        return shutdownTimeoutMs;
+    }
+
+    public void setShutdownTimeoutMs(long shutdownTimeoutMs) {
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+    }
+
+    @Override
+    public String toString() {
+        return "ConsumerConfig{" +
+                "groupId='" + groupId + '\'' +
+                ", tables=" + tables +
+                ", shutdownTimeoutMs=" + shutdownTimeoutMs +
+                '}';
+    }
+}
@@ -0,0 +1,59 @@
+package com.mapr.ojai.search.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Settings of the dead-letter queue, to which Change Data Records are sent if they can not be indexed.
+ */
+public class DeadLetterConfig {
+
+    public enum Type {
+        @JsonProperty("stream")
+        STREAM,
+        @JsonProperty("file")
+        FILE
+    }
+
+    private Type type;
+    private String topic;
+    private String path;
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    /**
+     * Dead-letter topic in '/stream-name:topic-name' format. Used by 'stream' dead-letter queue.
+     */
+    public String getTopic() {
+        return topic;
+    }
+
+    public void setTopic(String topic) {
+        this.topic = topic;
+    }
+
+    /**
+     * Path of the local file, to which dead letters are appended. Used by 'file' dead-letter queue.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    @Override
+    public String toString() {
+        return "DeadLetterConfig{" +
+                "type=" + type +
+                ", topic='" + topic + '\'' +
+                ", path='" + path + '\'' +
+                '}';
+    }
+}
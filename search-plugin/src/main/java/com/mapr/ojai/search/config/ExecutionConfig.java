@@ -0,0 +1,44 @@
+package com.mapr.ojai.search.config;
+
+/**
+ * Settings of the threads, which run blocking MapR-DB and ElasticSearch work of Search Service besides the consumer,
+ * such as backfills of the tables.
+ */
+public class ExecutionConfig {
+
+    public static final int DEFAULT_BACKFILL_CONCURRENCY = 1;
+
+    private boolean virtualThreads;
+    private int backfillConcurrency = DEFAULT_BACKFILL_CONCURRENCY;
+
+    /**
+     * Whether background tasks run at virtual threads. Falls back to platform threads if the JVM does not support
+     * virtual threads.
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Maximum number of tables, which are backfilled from MapR-DB concurrently.
+     */
+    public int getBackfillConcurrency() {
+        return backfillConcurrency;
+    }
+
+    public void setBackfillConcurrency(int backfillConcurrency) {
+        this.backfillConcurrency = backfillConcurrency;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionConfig{" +
+                "virtualThreads=" + virtualThreads +
+                ", backfillConcurrency=" + backfillConcurrency +
+                '}';
+    }
+}
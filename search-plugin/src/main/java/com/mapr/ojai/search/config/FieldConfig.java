@@ -0,0 +1,112 @@
+package com.mapr.ojai.search.config;
+
+/**
+ * Explicit ElasticSearch mapping of the indexed field.
+ */
+public class FieldConfig {
+
+    /**
+     * Name of the edge n-gram sub-field, which is created for autocomplete fields.
+     */
+    public static final String AUTOCOMPLETE_SUBFIELD = "autocomplete";
+
+    private String type;
+    private String analyzer;
+    private Boolean index;
+    private Boolean docValues;
+    private boolean autocomplete;
+    private String format;
+    private Double scalingFactor;
+
+    /**
+     * ElasticSearch field datatype, for example: 'text', 'keyword', 'long' or 'date'.
+     */
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    /**
+     * Analyzer of 'text' field.
+     */
+    public String getAnalyzer() {
+        return analyzer;
+    }
+
+    public void setAnalyzer(String analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * Whether field is searchable. Not searchable fields are still stored at the document source.
+     */
+    public Boolean getIndex() {
+        return index;
+    }
+
+    public void setIndex(Boolean index) {
+        this.index = index;
+    }
+
+    /**
+     * Whether field is stored in column-oriented fashion, which is required for sorting and aggregations.
+     */
+    public Boolean getDocValues() {
+        return docValues;
+    }
+
+    public void setDocValues(Boolean docValues) {
+        this.docValues = docValues;
+    }
+
+    /**
+     * Whether field is indexed for search-as-you-type. Prefixes of the field's words are indexed at the
+     * '{@value #AUTOCOMPLETE_SUBFIELD}' sub-field, so suggestions do not expand terms at query time.
+     */
+    public boolean isAutocomplete() {
+        return autocomplete;
+    }
+
+    public void setAutocomplete(boolean autocomplete) {
+        this.autocomplete = autocomplete;
+    }
+
+    /**
+     * Date format of 'date' field, for example 'yyyy-MM-dd HH:mm:ss||epoch_millis'. OJAI dates and timestamps are
+     * indexed as 'yyyy-MM-dd' strings and epoch milliseconds, which are accepted by the default format.
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    /**
+     * Scaling factor of 'scaled_float' field, for example 100 for prices with cents.
+     */
+    public Double getScalingFactor() {
+        return scalingFactor;
+    }
+
+    public void setScalingFactor(Double scalingFactor) {
+        this.scalingFactor = scalingFactor;
+    }
+
+    @Override
+    public String toString() {
+        return "FieldConfig{" +
+                "type='" + type + '\'' +
+                ", analyzer='" + analyzer + '\'' +
+                ", index=" + index +
+                ", docValues=" + docValues +
+                ", autocomplete=" + autocomplete +
+                ", format='" + format + '\'' +
+                ", scalingFactor=" + scalingFactor +
+                '}';
+    }
+}
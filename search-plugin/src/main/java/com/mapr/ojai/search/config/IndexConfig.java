@@ -0,0 +1,147 @@
+package com.mapr.ojai.search.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Per-table ElasticSearch index strategy. Tables without index config are indexed to a single index, which is created
+ * with default settings.
+ */
+public class IndexConfig {
+
+    /**
+     * Time period covered by a single index of time-bucketed table.
+     */
+    public enum TimeBucket {
+        @JsonProperty("day")
+        DAY,
+        @JsonProperty("month")
+        MONTH,
+        @JsonProperty("year")
+        YEAR
+    }
+
+    private Integer shards;
+    private Integer replicas;
+    private String routingField;
+    private TimeBucket timeBucket;
+    private String timestampField;
+    private boolean aliased;
+    private String refreshInterval;
+    private String translogDurability;
+    private String translogSyncInterval;
+
+    public Integer getShards() {
+        return shards;
+    }
+
+    public void setShards(Integer shards) {
+        this.shards = shards;
+    }
+
+    public Integer getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(Integer replicas) {
+        this.replicas = replicas;
+    }
+
+    /**
+     * Document field, which value is used as routing value. Documents with the same routing value are stored at the
+     * same shard.
+     */
+    public String getRoutingField() {
+        return routingField;
+    }
+
+    public void setRoutingField(String routingField) {
+        this.routingField = routingField;
+    }
+
+    public TimeBucket getTimeBucket() {
+        return timeBucket;
+    }
+
+    public void setTimeBucket(TimeBucket timeBucket) {
+        this.timeBucket = timeBucket;
+    }
+
+    /**
+     * Document field, which value determines time bucket of the document. Required for time-bucketed tables.
+     * Documents without valid timestamp are indexed to the 'undated' bucket.
+     */
+    public String getTimestampField() {
+        return timestampField;
+    }
+
+    public void setTimestampField(String timestampField) {
+        this.timestampField = timestampField;
+    }
+
+    /**
+     * Whether table is indexed to the concrete index behind an alias, so it can be reindexed to the new index with
+     * alias swap.
+     */
+    public boolean isAliased() {
+        return aliased;
+    }
+
+    public void setAliased(boolean aliased) {
+        this.aliased = aliased;
+    }
+
+    /**
+     * How often indexed changes become visible to search, for example '30s'. '-1' disables periodic refresh.
+     */
+    public String getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(String refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Whether translog is fsynced after each request ('request') or in the background ('async').
+     */
+    public String getTranslogDurability() {
+        return translogDurability;
+    }
+
+    public void setTranslogDurability(String translogDurability) {
+        this.translogDurability = translogDurability;
+    }
+
+    /**
+     * How often translog is fsynced when durability is 'async', for example '5s'.
+     */
+    public String getTranslogSyncInterval() {
+        return translogSyncInterval;
+    }
+
+    public void setTranslogSyncInterval(String translogSyncInterval) {
+        this.translogSyncInterval = translogSyncInterval;
+    }
+
+    /**
+     * Time-bucketed tables are always indexed behind an alias.
+     */
+    public boolean usesAlias() {
+        return aliased || timeBucket != null;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexConfig{" +
+                "shards=" + shards +
+                ", replicas=" + replicas +
+                ", routingField='" + routingField + '\'' +
+                ", timeBucket=" + timeBucket +
+                ", timestampField='" + timestampField + '\'' +
+                ", aliased=" + aliased +
+                ", refreshInterval='" + refreshInterval + '\'' +
+                ", translogDurability='" + translogDurability + '\'' +
+                ", translogSyncInterval='" + translogSyncInterval + '\'' +
+                '}';
+    }
+}
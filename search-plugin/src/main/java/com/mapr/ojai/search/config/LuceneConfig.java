@@ -0,0 +1,56 @@
+package com.mapr.ojai.search.config;
+
+/**
+ * Settings of the embedded Lucene backend, which keeps one memory-mapped index per table under the {@code path}
+ * directory.
+ */
+public class LuceneConfig {
+
+    public static final long DEFAULT_REFRESH_INTERVAL_MS = 1_000L;
+    public static final long DEFAULT_COMMIT_INTERVAL_MS = 10_000L;
+
+    private String path;
+    private long refreshIntervalMs = DEFAULT_REFRESH_INTERVAL_MS;
+    private long commitIntervalMs = DEFAULT_COMMIT_INTERVAL_MS;
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Interval at which near-real-time searchers are reopened, so indexed changes become visible to searches.
+     */
+    public long getRefreshIntervalMs() {
+        return refreshIntervalMs;
+    }
+
+    public void setRefreshIntervalMs(long refreshIntervalMs) {
+        this.refreshIntervalMs = refreshIntervalMs;
+    }
+
+    /**
+     * Interval at which indexed changes are committed to disk in the background. Changes are committed on each flush
+     * as well, before the consumer commits their offsets. Committed changes are visible to searchers of other
+     * processes, which open the same directory.
+     */
+    public long getCommitIntervalMs() {
+        return commitIntervalMs;
+    }
+
+    public void setCommitIntervalMs(long commitIntervalMs) {
+        this.commitIntervalMs = commitIntervalMs;
+    }
+
+    @Override
+    public String toString() {
+        return "LuceneConfig{" +
+                "path='" + path + '\'' +
+                ", refreshIntervalMs=" + refreshIntervalMs +
+                ", commitIntervalMs=" + commitIntervalMs +
+                '}';
+    }
+}
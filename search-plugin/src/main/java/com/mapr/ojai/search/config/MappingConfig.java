@@ -0,0 +1,51 @@
+package com.mapr.ojai.search.config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Explicit ElasticSearch mapping, which is applied at index creation instead of dynamic mapping.
+ */
+public class MappingConfig {
+
+    public static final Set<String> DYNAMIC_VALUES = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("true", "false", "strict")));
+
+    public static final Set<String> FIELD_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "text", "keyword", "long", "integer", "short", "byte", "double", "float", "half_float", "scaled_float",
+            "date", "boolean", "binary", "ip", "geo_point", "object", "nested")));
+
+    private String dynamic;
+    private Map<String, FieldConfig> fields;
+
+    /**
+     * How fields, which are not declared at the mapping, are handled: 'true' adds them to the mapping, 'false'
+     * ignores them and 'strict' rejects the document.
+     */
+    public String getDynamic() {
+        return dynamic;
+    }
+
+    public void setDynamic(String dynamic) {
+        this.dynamic = dynamic;
+    }
+
+    public Map<String, FieldConfig> getFields() {
+        return fields;
+    }
+
+    public void setFields(Map<String, FieldConfig> fields) {
+        this.fields = fields;
+    }
+
+    @Override
+    public String toString() {
+        return "MappingConfig{" +
+                "dynamic='" + dynamic + '\'' +
+                ", fields=" + fields +
+                '}';
+    }
+}
@@ -15,11 +15,115 @@ public class SearchServiceConfig {
 
     private static final Logger log = LoggerFactory.getLogger(SearchServiceConfig.class);
 
+    /**
+     * Index backend, to which Change Data Records are sent.
+     */
+    public enum Backend {
+        @JsonProperty("elastic")
+        ELASTIC,
+        @JsonProperty("lucene")
+        LUCENE
+    }
+
+    private Backend backend = Backend.ELASTIC;
     @JsonProperty("elastic")
     private String elasticHostPort;
+    private LuceneConfig lucene;
+    private BulkConfig bulk = new BulkConfig();
+    private CatchUpConfig catchUp = new CatchUpConfig();
+    private BackpressureConfig backpressure = new BackpressureConfig();
+    private DeadLetterConfig deadLetter;
+    private SpillConfig spill;
+    private ConsistencyConfig consistency = new ConsistencyConfig();
+    private ConsumerConfig consumer = new ConsumerConfig();
+    private ExecutionConfig execution = new ExecutionConfig();
     private List<TableConfig> tables;
     private Map<String, String> tablePathChangelogCache = new HashMap<>();
 
+    public Backend getBackend() {
+        return backend;
+    }
+
+    public void setBackend(Backend backend) {
+        this.backend = backend;
+    }
+
+    public LuceneConfig getLucene() {
+        return lucene;
+    }
+
+    public void setLucene(LuceneConfig lucene) {
+        this.lucene = lucene;
+    }
+
+    public BulkConfig getBulk() {
+        return bulk;
+    }
+
+    public void setBulk(BulkConfig bulk) {
+        this.bulk = bulk;
+    }
+
+    public CatchUpConfig getCatchUp() {
+        return catchUp;
+    }
+
+    public void setCatchUp(CatchUpConfig catchUp) {
+        this.catchUp = catchUp;
+    }
+
+    public BackpressureConfig getBackpressure() {
+        return backpressure;
+    }
+
+    public void setBackpressure(BackpressureConfig backpressure) {
+        this.backpressure = backpressure;
+    }
+
+    public DeadLetterConfig getDeadLetter() {
+        return deadLetter;
+    }
+
+    public void setDeadLetter(DeadLetterConfig deadLetter) {
+        this.deadLetter = deadLetter;
+    }
+
+    /**
+     * Local spill log, used while ElasticSearch is unavailable. Changes are sent to the dead-letter queue instead if
+     * not set.
+     */
+    public SpillConfig getSpill() {
+        return spill;
+    }
+
+    public void setSpill(SpillConfig spill) {
+        this.spill = spill;
+    }
+
+    public ConsistencyConfig getConsistency() {
+        return consistency;
+    }
+
+    public void setConsistency(ConsistencyConfig consistency) {
+        this.consistency = consistency;
+    }
+
+    public ConsumerConfig getConsumer() {
+        return consumer;
+    }
+
+    public void setConsumer(ConsumerConfig consumer) {
+        this.consumer = consumer;
+    }
+
+    public ExecutionConfig getExecution() {
+        return execution;
+    }
+
+    public void setExecution(ExecutionConfig execution) {
+        this.execution = execution;
+    }
+
     public String getElasticHostPort() {
         return elasticHostPort;
     }
@@ -88,6 +192,39 @@ public class SearchServiceConfig {
         return validChangelogs;
     }
 
+    /**
+     * Returns whether changelog of the table is consumed by this instance.
+     *
+     * @param tablePath table path.
+     * @return {@code true} if table is among consumer's tables or consumer does not limit tables.
+     */
+    public boolean isAssignedTable(String tablePath) {
+        List<String> assignedTables = consumer.getTables();
+        return assignedTables == null || assignedTables.isEmpty() || assignedTables.contains(tablePath);
+    }
+
+    /**
+     * Returns changelogs of the tables, which are consumed by this instance.
+     *
+     * @return list of changelogs.
+     */
+    public List<String> getAssignedChangelogs() {
+
+        if (getTables() == null || getTables().isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> assignedChangelogs = new ArrayList<>();
+        for (TableConfig tableConfig : getTables()) {
+            String changelog = tableConfig.getChangelog();
+            if (changelog != null && !changelog.isEmpty() && isAssignedTable(tableConfig.getPath())) {
+                assignedChangelogs.add(changelog);
+            }
+        }
+
+        return assignedChangelogs;
+    }
+
     public Optional<String> tablePathForChangelog(String changelog) {
 
         if (changelog == null || changelog.isEmpty()) {
@@ -113,6 +250,33 @@ public class SearchServiceConfig {
         return optionalPath;
     }
 
+    public Optional<TableConfig> tableConfig(String tablePath) {
+
+        if (getTables() == null || getTables().isEmpty()) {
+            return Optional.empty();
+        }
+
+        return getTables().stream()
+                .filter(t -> tablePath.equals(t.getPath()))
+                .findAny();
+    }
+
+    /**
+     * Returns set of fields, which are allowed to be indexed for the specified table. Empty set means that all the
+     * fields are allowed.
+     *
+     * @param tablePath table path.
+     * @return set of fields, which are allowed to be indexed.
+     */
+    public Set<String> indexedFieldsForTable(String tablePath) {
+
+        Set<String> indexedFields = tableConfig(tablePath)
+                .map(TableConfig::getIndexedFields)
+                .orElse(null);
+
+        return (indexedFields != null) ? indexedFields : Collections.emptySet();
+    }
+
     public List<TableConfig> getTables() {
         return tables;
     }
@@ -121,6 +285,207 @@ public class SearchServiceConfig {
         this.tables = tables;
     }
 
+    /**
+     * Validates config, so misconfiguration is reported at startup rather than on the first change.
+     *
+     * @throws IllegalStateException if config is invalid.
+     */
+    public void validate() {
+
+        List<String> problems = new ArrayList<>();
+        if (backend == Backend.LUCENE) {
+            if (lucene == null || lucene.getPath() == null || lucene.getPath().isEmpty()) {
+                problems.add("Lucene backend requires 'lucene.path' to be specified");
+            }
+        } else {
+            try {
+                getElasticHost();
+                getElasticPort();
+            } catch (IllegalStateException e) {
+                problems.add(e.getMessage());
+            }
+        }
+
+        if (bulk.getActions() <= 0 || catchUp.getBulkActions() <= 0) {
+            problems.add("Bulk actions must be positive");
+        }
+
+        if (catchUp.getRecoveredLagMs() > catchUp.getLagThresholdMs()) {
+            problems.add("Catch-up recovered lag can not be greater than lag threshold");
+        }
+
+        if (backpressure.getMaxConcurrentRequests() <= 0 || backpressure.getLatencyThresholdMs() <= 0 ||
+                backpressure.getPauseMs() <= 0) {
+            problems.add("Backpressure concurrency, latency threshold and pause must be positive");
+        }
+
+        if (backpressure.getMaxRetries() < 0 || backpressure.getRetryBackoffMs() < 0) {
+            problems.add("Backpressure retries and retry backoff can not be negative");
+        }
+
+        if (spill != null) {
+            if (spill.getDirectory() == null || spill.getDirectory().isEmpty()) {
+                problems.add("Spill directory can not be empty");
+            }
+
+            if (spill.getSegmentBytes() <= 0 || spill.getMaxBytes() < spill.getSegmentBytes() ||
+                    spill.getSegmentBytes() > Integer.MAX_VALUE) {
+                problems.add("Spill segment size must be positive, at most 2 GB and not greater than max size");
+            }
+
+            if (spill.getReplayActions() <= 0 || spill.getRetryIntervalMs() <= 0) {
+                problems.add("Spill replay actions and retry interval must be positive");
+            }
+
+            if (backend == Backend.LUCENE) {
+                problems.add("Spill log is not supported by embedded Lucene backend");
+            }
+        }
+
+        if (consistency.isEnabled()) {
+            if (consistency.getPublishIntervalMs() <= 0) {
+                problems.add("Consistency publish interval must be positive");
+            }
+
+            if (backend == Backend.LUCENE) {
+                problems.add("Consistent-read mode is not supported by embedded Lucene backend");
+            }
+        }
+
+        if (consumer.getGroupId() == null || consumer.getGroupId().isEmpty()) {
+            problems.add("Consumer group id can not be empty");
+        }
+
+        if (consumer.getShutdownTimeoutMs() <= 0) {
+            problems.add("Consumer shutdown timeout must be positive");
+        }
+
+        if (consumer.getTables() != null) {
+            for (String tablePath : consumer.getTables()) {
+                if (!tableConfig(tablePath).isPresent()) {
+                    problems.add("Consumer table '" + tablePath + "' is not declared at tables");
+                }
+            }
+        }
+
+        if (execution.getBackfillConcurrency() <= 0) {
+            problems.add("Backfill concurrency must be positive");
+        }
+
+        if (deadLetter != null) {
+            if (deadLetter.getType() == DeadLetterConfig.Type.STREAM &&
+                    (deadLetter.getTopic() == null || !deadLetter.getTopic().startsWith("/") ||
+                            !deadLetter.getTopic().contains(":"))) {
+                problems.add("Dead-letter topic must be in '/stream-name:topic-name' format");
+            }
+
+            if (deadLetter.getType() == DeadLetterConfig.Type.FILE &&
+                    (deadLetter.getPath() == null || deadLetter.getPath().isEmpty())) {
+                problems.add("Dead-letter file path can not be empty");
+            }
+
+            if (deadLetter.getType() == null) {
+                problems.add("Dead-letter queue type must be either 'stream' or 'file'");
+            }
+        }
+
+        if (getTables() != null) {
+            for (TableConfig tableConfig : getTables()) {
+                problems.addAll(tableConfig.validate());
+            }
+        }
+
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Search service config is invalid: " + String.join("; ", problems));
+        }
+    }
+
+    /**
+     * Returns settings, which differ at the updated config, but can not be applied without restart.
+     *
+     * @param updated updated config.
+     * @return names of the changed settings, which require restart.
+     */
+    public List<String> restartRequiredChanges(SearchServiceConfig updated) {
+
+        List<String> changes = new ArrayList<>();
+        if (backend != updated.backend) {
+            changes.add("backend");
+        }
+
+        if (!Objects.equals(elasticHostPort, updated.elasticHostPort)) {
+            changes.add("elastic");
+        }
+
+        if (bulk.isCompress() != updated.bulk.isCompress()) {
+            changes.add("bulk.compress");
+        }
+
+        if (!Objects.equals(String.valueOf(lucene), String.valueOf(updated.lucene))) {
+            changes.add("lucene");
+        }
+
+        if (!Objects.equals(String.valueOf(deadLetter), String.valueOf(updated.deadLetter))) {
+            changes.add("deadLetter");
+        }
+
+        if (!Objects.equals(String.valueOf(spill), String.valueOf(updated.spill))) {
+            changes.add("spill");
+        }
+
+        if (!Objects.equals(consumer.getGroupId(), updated.consumer.getGroupId())) {
+            changes.add("consumer.groupId");
+        }
+
+        if (!Objects.equals(String.valueOf(backpressure), String.valueOf(updated.backpressure))) {
+            changes.add("backpressure");
+        }
+
+        if (!Objects.equals(String.valueOf(execution), String.valueOf(updated.execution))) {
+            changes.add("execution");
+        }
+
+        return changes;
+    }
+
+    /**
+     * Returns tables, which documents must be backfilled after the updated config is applied: tables, which are added
+     * to the updated config or to this consumer, and tables with additional indexed fields.
+     *
+     * @param updated updated config.
+     * @return paths of the tables to backfill.
+     */
+    public List<String> tablesToBackfill(SearchServiceConfig updated) {
+
+        List<String> backfill = new ArrayList<>();
+        if (updated.getTables() == null) {
+            return backfill;
+        }
+
+        for (TableConfig updatedTable : updated.getTables()) {
+
+            // Each instance backfills tables, which it consumes
+            if (!updated.isAssignedTable(updatedTable.getPath())) {
+                continue;
+            }
+
+            Optional<TableConfig> currentTable = tableConfig(updatedTable.getPath());
+            if (!currentTable.isPresent() || !isAssignedTable(updatedTable.getPath())) {
+                backfill.add(updatedTable.getPath());
+                continue;
+            }
+
+            // Empty set means that all the fields are indexed
+            Set<String> currentFields = indexedFieldsForTable(updatedTable.getPath());
+            Set<String> updatedFields = updated.indexedFieldsForTable(updatedTable.getPath());
+            if (!currentFields.isEmpty() && (updatedFields.isEmpty() || !currentFields.containsAll(updatedFields))) {
+                backfill.add(updatedTable.getPath());
+            }
+        }
+
+        return backfill;
+    }
+
     public static SearchServiceConfig fromResource(String resourceName) {
 
         if (resourceName == null || resourceName.isEmpty()) {
@@ -152,7 +517,17 @@ public class SearchServiceConfig {
     @Override
     public String toString() {
         return "SearchServiceConfig{" +
-                "elasticHostPort='" + elasticHostPort + '\'' +
+                "backend=" + backend +
+                ", elasticHostPort='" + elasticHostPort + '\'' +
+                ", lucene=" + lucene +
+                ", bulk=" + bulk +
+                ", catchUp=" + catchUp +
+                ", backpressure=" + backpressure +
+                ", deadLetter=" + deadLetter +
+                ", spill=" + spill +
+                ", consistency=" + consistency +
+                ", consumer=" + consumer +
+                ", execution=" + execution +
                 ", tables=" + tables +
                 '}';
     }
@@ -0,0 +1,87 @@
+package com.mapr.ojai.search.config;
+
+/**
+ * Settings of the local spill log, to which changes are written while ElasticSearch is unavailable or keeps rejecting
+ * them. Spilled changes are replayed in order once ElasticSearch recovers, so consumption of the changelogs does not
+ * stop during short outages.
+ */
+public class SpillConfig {
+
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+    public static final int DEFAULT_REPLAY_ACTIONS = 1000;
+    public static final long DEFAULT_RETRY_INTERVAL_MS = 5_000L;
+
+    private String directory;
+    private long segmentBytes = DEFAULT_SEGMENT_BYTES;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private int replayActions = DEFAULT_REPLAY_ACTIONS;
+    private long retryIntervalMs = DEFAULT_RETRY_INTERVAL_MS;
+
+    /**
+     * Local directory of the spill log segments and the replay checkpoint. Must not be shared between Search Service
+     * instances.
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Size of a single memory-mapped segment file.
+     */
+    public long getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public void setSegmentBytes(long segmentBytes) {
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Maximum size of unreplayed segments. Changes, which do not fit, are sent to the dead-letter queue.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Number of spilled changes, which are read, coalesced and replayed at once.
+     */
+    public int getReplayActions() {
+        return replayActions;
+    }
+
+    public void setReplayActions(int replayActions) {
+        this.replayActions = replayActions;
+    }
+
+    /**
+     * Time between the failure of ElasticSearch and the next replay attempt.
+     */
+    public long getRetryIntervalMs() {
+        return retryIntervalMs;
+    }
+
+    public void setRetryIntervalMs(long retryIntervalMs) {
+        this.retryIntervalMs = retryIntervalMs;
+    }
+
+    @Override
+    public String toString() {
+        return "SpillConfig{" +
+                "directory='" + directory + '\'' +
+                ", segmentBytes=" + segmentBytes +
+                ", maxBytes=" + maxBytes +
+                ", replayActions=" + replayActions +
+                ", retryIntervalMs=" + retryIntervalMs +
+                '}';
+    }
+}
@@ -1,5 +1,8 @@
 package com.mapr.ojai.search.config;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class TableConfig {
@@ -7,6 +10,8 @@ public class TableConfig {
     private String path;
     private String changelog;
     private Set<String> indexedFields;
+    private IndexConfig index;
+    private MappingConfig mapping;
 
     public String getPath() {
         return path;
@@ -32,12 +37,122 @@ public class TableConfig {
         this.indexedFields = indexedFields;
     }
 
+    public IndexConfig getIndex() {
+        return index;
+    }
+
+    public void setIndex(IndexConfig index) {
+        this.index = index;
+    }
+
+    public MappingConfig getMapping() {
+        return mapping;
+    }
+
+    public void setMapping(MappingConfig mapping) {
+        this.mapping = mapping;
+    }
+
+    /**
+     * Validates table config.
+     *
+     * @return list of found problems, empty if config is valid.
+     */
+    public List<String> validate() {
+
+        List<String> problems = new ArrayList<>();
+        if (path == null || path.isEmpty()) {
+            problems.add("Table path can not be empty");
+            return problems;
+        }
+
+        boolean allFieldsIndexed = indexedFields == null || indexedFields.isEmpty();
+        if (index != null) {
+
+            if (index.getShards() != null && index.getShards() <= 0) {
+                problems.add("Table '" + path + "' must have positive number of shards");
+            }
+
+            if (index.getReplicas() != null && index.getReplicas() < 0) {
+                problems.add("Table '" + path + "' can not have negative number of replicas");
+            }
+
+            // Routing value is stored at the indexed document along with the other fields
+            if (index.getRoutingField() != null && !allFieldsIndexed &&
+                    !indexedFields.contains(index.getRoutingField())) {
+                problems.add("Routing field '" + index.getRoutingField() + "' of table '" + path +
+                        "' must be indexed");
+            }
+
+            if (index.getTimestampField() != null && index.getTimeBucket() == null) {
+                problems.add("Table '" + path + "' declares timestamp field, but does not declare time bucket");
+            }
+
+            // Bucket of each document must be determined by the document itself, so all its changes hit the same index
+            if (index.getTimeBucket() != null && index.getTimestampField() == null) {
+                problems.add("Table '" + path + "' declares time bucket, but does not declare timestamp field");
+            }
+        }
+
+        if (mapping != null) {
+
+            if (mapping.getDynamic() != null && !MappingConfig.DYNAMIC_VALUES.contains(mapping.getDynamic())) {
+                problems.add("Table '" + path + "' has invalid dynamic mapping value '" + mapping.getDynamic() +
+                        "'. Must be one of " + MappingConfig.DYNAMIC_VALUES);
+            }
+
+            Map<String, FieldConfig> fields = mapping.getFields();
+            if (fields != null) {
+                for (Map.Entry<String, FieldConfig> field : fields.entrySet()) {
+                    String type = (field.getValue() != null) ? field.getValue().getType() : null;
+                    if (type == null || !MappingConfig.FIELD_TYPES.contains(type)) {
+                        problems.add("Field '" + field.getKey() + "' of table '" + path + "' has invalid type '" +
+                                type + "'. Must be one of " + MappingConfig.FIELD_TYPES);
+                    } else if (field.getValue().getAnalyzer() != null && !"text".equals(type)) {
+                        problems.add("Field '" + field.getKey() + "' of table '" + path +
+                                "' declares analyzer, but it is not a 'text' field");
+                    } else if (field.getValue().isAutocomplete() && !"text".equals(type) && !"keyword".equals(type)) {
+                        problems.add("Field '" + field.getKey() + "' of table '" + path +
+                                "' is autocomplete, but it is neither 'text' nor 'keyword' field");
+                    } else if (field.getValue().getFormat() != null && !"date".equals(type)) {
+                        problems.add("Field '" + field.getKey() + "' of table '" + path +
+                                "' declares format, but it is not a 'date' field");
+                    } else if ("scaled_float".equals(type) != (field.getValue().getScalingFactor() != null)) {
+                        problems.add("Field '" + field.getKey() + "' of table '" + path +
+                                "' must declare scaling factor if and only if it is a 'scaled_float' field");
+                    } else if ("scaled_float".equals(type) && field.getValue().getScalingFactor() <= 0) {
+                        problems.add("Field '" + field.getKey() + "' of table '" + path +
+                                "' has invalid scaling factor. Must be greater than zero");
+                    }
+                }
+            }
+
+            // Strict mapping rejects documents with undeclared fields
+            if ("strict".equals(mapping.getDynamic())) {
+                if (allFieldsIndexed) {
+                    problems.add("Table '" + path + "' has strict mapping, so it must declare indexed fields");
+                } else {
+                    for (String indexedField : indexedFields) {
+                        if (fields == null || !fields.containsKey(indexedField)) {
+                            problems.add("Indexed field '" + indexedField + "' of table '" + path +
+                                    "' is not declared at strict mapping");
+                        }
+                    }
+                }
+            }
+        }
+
+        return problems;
+    }
+
     @Override
     public String toString() {
         return "TableConfig{" +
                 "path='" + path + '\'' +
                 ", changelog='" + changelog + '\'' +
                 ", indexedFields=" + indexedFields +
+                ", index=" + index +
+                ", mapping=" + mapping +
                 '}';
     }
 }
@@ -0,0 +1,87 @@
+package com.mapr.ojai.search.lucene;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LatLonPoint;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Converts JSON representation of MapR-DB JSON document to Lucene document. Nested fields are flattened using dot
+ * notation, so they are searchable by the same field paths as at ElasticSearch. Numeric values are also indexed as
+ * double points and objects of numeric 'lat' and 'lon' fields as geo points, so range and geo queries are executed
+ * against BKD trees.
+ */
+public final class LuceneDocuments {
+
+    public static final String ID_FIELD = "_id";
+
+    /**
+     * Contains names of all the fields, which document has. Used to check fields existence.
+     */
+    public static final String FIELD_NAMES_FIELD = "_field_names";
+
+    private LuceneDocuments() {
+    }
+
+    public static Document toDocument(String documentId, JsonNode node) {
+
+        Document document = new Document();
+        document.add(new StringField(ID_FIELD, documentId, Field.Store.YES));
+        addFields(document, null, node);
+
+        return document;
+    }
+
+    private static void addFields(Document document, String fieldPath, JsonNode node) {
+
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            return;
+        }
+
+        if (node.isObject()) {
+            if (fieldPath != null && isGeoPoint(node)) {
+                document.add(new LatLonPoint(fieldPath, node.get("lat").asDouble(), node.get("lon").asDouble()));
+            }
+
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                String nestedPath = (fieldPath == null) ? field.getKey() : fieldPath + "." + field.getKey();
+                addFields(document, nestedPath, field.getValue());
+            }
+            return;
+        }
+
+        if (node.isArray()) {
+            for (JsonNode element : node) {
+                addFields(document, fieldPath, element);
+            }
+            return;
+        }
+
+        if (fieldPath == null) {
+            return;
+        }
+
+        document.add(new TextField(fieldPath, node.asText(), Field.Store.NO));
+        document.add(new StringField(FIELD_NAMES_FIELD, fieldPath, Field.Store.NO));
+        if (node.isNumber()) {
+            document.add(new DoublePoint(fieldPath, node.asDouble()));
+        }
+    }
+
+    private static boolean isGeoPoint(JsonNode node) {
+
+        JsonNode lat = node.get("lat");
+        JsonNode lon = node.get("lon");
+        return node.size() == 2 && lat != null && lat.isNumber() && lon != null && lon.isNumber() &&
+                Math.abs(lat.asDouble()) <= 90 && Math.abs(lon.asDouble()) <= 180;
+    }
+
+}
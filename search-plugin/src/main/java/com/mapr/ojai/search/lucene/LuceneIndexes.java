@@ -0,0 +1,312 @@
+package com.mapr.ojai.search.lucene;
+
+import com.mapr.ojai.search.config.LuceneConfig;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.util.CharArraySet;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Set of embedded Lucene indices, one per table. Each index is stored in its own memory-mapped directory under the
+ * configured root path and searched via near-real-time searchers, which are reopened at the configured interval.
+ * <p>
+ * Writable instances are shared within JVM, so {@link com.mapr.ojai.search.client.OjaiSearchClient} co-located with
+ * the indexing service sees uncommitted changes. Read-only instances, opened by other processes, see committed changes
+ * only.
+ */
+public class LuceneIndexes implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(LuceneIndexes.class);
+
+    private static final Map<Path, LuceneIndexes> writableIndexes = new ConcurrentHashMap<>();
+
+    private final Path root;
+    private final boolean writable;
+    private final Analyzer analyzer = new StandardAnalyzer(CharArraySet.EMPTY_SET);
+    private final Map<String, LuceneIndex> indexes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Number of index services and searching clients, which share this writable instance. Guarded by
+     * {@link #writableIndexes}.
+     */
+    private int owners;
+
+    private class LuceneIndex implements Closeable {
+
+        private final Directory directory;
+        private final IndexWriter writer;
+        private volatile SearcherManager searcherManager;
+
+        private LuceneIndex(String indexName) throws IOException {
+
+            this.directory = new MMapDirectory(root.resolve(indexName));
+            if (writable) {
+                this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                        .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+                this.searcherManager = new SearcherManager(writer, null);
+            } else {
+                this.writer = null;
+                this.searcherManager = DirectoryReader.indexExists(directory)
+                        ? new SearcherManager(directory, null)
+                        : null;
+            }
+        }
+
+        private SearcherManager searcherManager() throws IOException {
+
+            // Read-only index can be created by the indexing service after this instance was opened
+            if (searcherManager == null && DirectoryReader.indexExists(directory)) {
+                synchronized (this) {
+                    if (searcherManager == null) {
+                        searcherManager = new SearcherManager(directory, null);
+                    }
+                }
+            }
+
+            return searcherManager;
+        }
+
+        private void refresh() throws IOException {
+            SearcherManager manager = searcherManager();
+            if (manager != null) {
+                manager.maybeRefresh();
+            }
+        }
+
+        private void commit() throws IOException {
+            if (writer != null && writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            if (searcherManager != null) {
+                searcherManager.close();
+            }
+
+            if (writer != null) {
+                writer.close();
+            }
+
+            directory.close();
+        }
+    }
+
+    private LuceneIndexes(LuceneConfig config, boolean writable) {
+
+        if (config.getPath() == null || config.getPath().isEmpty()) {
+            throw new IllegalArgumentException("Lucene index path can not be empty");
+        }
+
+        this.root = Paths.get(config.getPath()).toAbsolutePath();
+        this.writable = writable;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lucene-index-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        scheduler.scheduleWithFixedDelay(this::refreshAll, config.getRefreshIntervalMs(),
+                config.getRefreshIntervalMs(), TimeUnit.MILLISECONDS);
+
+        if (writable) {
+            scheduler.scheduleWithFixedDelay(this::commitAll, config.getCommitIntervalMs(),
+                    config.getCommitIntervalMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Opens indices for writing. Only one writable instance per root path is created within JVM, it is closed once
+     * all its owners close it.
+     *
+     * @param config Lucene backend config.
+     * @return writable indices.
+     */
+    public static LuceneIndexes openForWriting(LuceneConfig config) {
+
+        Path root = Paths.get(config.getPath()).toAbsolutePath();
+        synchronized (writableIndexes) {
+            LuceneIndexes indexes = writableIndexes.computeIfAbsent(root, path -> new LuceneIndexes(config, true));
+            indexes.owners++;
+            return indexes;
+        }
+    }
+
+    /**
+     * Opens indices for searching. Returns writable instance if it was opened within this JVM, so near-real-time
+     * changes are visible. Returned instance must be closed by the caller, writable instance is shared, so closing it
+     * does not affect the index services, which write to it.
+     *
+     * @param config Lucene backend config.
+     * @return indices for searching.
+     */
+    public static LuceneIndexes open(LuceneConfig config) {
+
+        Path root = Paths.get(config.getPath()).toAbsolutePath();
+        synchronized (writableIndexes) {
+            LuceneIndexes writableInstance = writableIndexes.get(root);
+            if (writableInstance != null) {
+                writableInstance.owners++;
+                return writableInstance;
+            }
+        }
+
+        return new LuceneIndexes(config, false);
+    }
+
+    public Analyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    public void update(String indexName, String documentId, Document document) {
+
+        try {
+            writer(indexName).updateDocument(new Term(LuceneDocuments.ID_FIELD, documentId), document);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not index document '" + documentId + "' to Lucene index '" +
+                    indexName + "'", e);
+        }
+    }
+
+    public void delete(String indexName, String documentId) {
+
+        try {
+            writer(indexName).deleteDocuments(new Term(LuceneDocuments.ID_FIELD, documentId));
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not delete document '" + documentId + "' from Lucene index '" +
+                    indexName + "'", e);
+        }
+    }
+
+    /**
+     * Acquires searcher for the specified index. Acquired searcher must be released via
+     * {@link #release(String, IndexSearcher)}.
+     *
+     * @param indexName index name.
+     * @return searcher or {@code null} if index does not exist yet.
+     */
+    public IndexSearcher acquire(String indexName) {
+
+        try {
+            SearcherManager manager = index(indexName).searcherManager();
+            return (manager != null) ? manager.acquire() : null;
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not acquire searcher for Lucene index '" + indexName + "'", e);
+        }
+    }
+
+    public void release(String indexName, IndexSearcher searcher) {
+
+        try {
+            index(indexName).searcherManager.release(searcher);
+        } catch (IOException e) {
+            log.warn("Can not release searcher of Lucene index '{}'", indexName, e);
+        }
+    }
+
+    private IndexWriter writer(String indexName) {
+
+        if (!writable) {
+            throw new IllegalStateException("Lucene indices at '" + root + "' are opened for searching only");
+        }
+
+        return index(indexName).writer;
+    }
+
+    private LuceneIndex index(String indexName) {
+
+        if (indexName == null || indexName.isEmpty()) {
+            throw new IllegalArgumentException("Index name can not be empty");
+        }
+
+        return indexes.computeIfAbsent(indexName, name -> {
+            try {
+                return new LuceneIndex(name);
+            } catch (IOException e) {
+                throw new IllegalStateException("Can not open Lucene index '" + name + "' at '" + root + "'", e);
+            }
+        });
+    }
+
+    private void refreshAll() {
+        indexes.forEach((name, index) -> {
+            try {
+                index.refresh();
+            } catch (Exception e) {
+                log.warn("Can not refresh Lucene index '{}'", name, e);
+            }
+        });
+    }
+
+    /**
+     * Commits changes of all the indices, so they survive process crash and become visible to read-only instances.
+     *
+     * @throws IOException if any of the indices can not be committed.
+     */
+    public void commit() throws IOException {
+        for (LuceneIndex index : indexes.values()) {
+            index.commit();
+        }
+    }
+
+    private void commitAll() {
+        indexes.forEach((name, index) -> {
+            try {
+                index.commit();
+            } catch (Exception e) {
+                log.warn("Can not commit Lucene index '{}'", name, e);
+            }
+        });
+    }
+
+    /**
+     * Commits and closes the indices. Writable instance, which is still shared by other owners, is committed only.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (writable) {
+            synchronized (writableIndexes) {
+                if (--owners > 0) {
+                    commit();
+                    return;
+                }
+
+                writableIndexes.remove(root, this);
+            }
+        }
+
+        scheduler.shutdownNow();
+        if (writable) {
+            commit();
+        }
+
+        for (LuceneIndex index : indexes.values()) {
+            index.close();
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.mapr.ojai.search.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.QueryBuilder;
+import org.elasticsearch.common.regex.Regex;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Provides analysis and field information required to translate OJAI search queries into Lucene queries.
+ */
+public class LuceneQueryContext {
+
+    private final Analyzer analyzer;
+    private final IndexReader reader;
+    private final QueryBuilder queryBuilder;
+
+    public LuceneQueryContext(Analyzer analyzer, IndexReader reader) {
+        this.analyzer = analyzer;
+        this.reader = reader;
+        this.queryBuilder = new QueryBuilder(analyzer);
+    }
+
+    public Analyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    public QueryBuilder getQueryBuilder() {
+        return queryBuilder;
+    }
+
+    /**
+     * Analyzes text the same way as it was analyzed at index time.
+     *
+     * @param field field name.
+     * @param text  text to analyze.
+     * @return list of terms.
+     */
+    public List<String> analyze(String field, String text) {
+
+        List<String> terms = new ArrayList<>();
+        try (TokenStream tokenStream = analyzer.tokenStream(field, text)) {
+
+            CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                terms.add(termAttribute.toString());
+            }
+            tokenStream.end();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not analyze text '" + text + "' of field '" + field + "'", e);
+        }
+
+        return terms;
+    }
+
+    /**
+     * Creates query, which matches exact value of the field. Since embedded Lucene index stores all the fields as
+     * analyzed text, the value is analyzed the same way and multi-term values are matched as phrases.
+     *
+     * @param field field name.
+     * @param value exact value.
+     * @return Lucene query.
+     */
+    public Query exactQuery(String field, String value) {
+
+        List<String> terms = analyze(field, value);
+        if (terms.isEmpty()) {
+            return new MatchNoDocsQuery();
+        }
+
+        if (terms.size() == 1) {
+            return new TermQuery(new Term(field, terms.get(0)));
+        }
+
+        Query phraseQuery = queryBuilder.createPhraseQuery(field, value);
+        return (phraseQuery != null) ? phraseQuery : new MatchNoDocsQuery();
+    }
+
+    /**
+     * Resolves field name, which can be specified with wildcards (eg: "*_name"), to the list of indexed fields.
+     *
+     * @param fieldPattern field name or wildcard pattern.
+     * @return list of matching indexed fields.
+     */
+    public List<String> resolveFields(String fieldPattern) {
+
+        List<String> fields = new ArrayList<>();
+        if (!Regex.isSimpleMatchPattern(fieldPattern)) {
+            fields.add(fieldPattern);
+            return fields;
+        }
+
+        for (FieldInfo fieldInfo : MultiFields.getMergedFieldInfos(reader)) {
+            if (fieldInfo.getIndexOptions() != IndexOptions.NONE && !fieldInfo.name.startsWith("_") &&
+                    Regex.simpleMatch(fieldPattern, fieldInfo.name)) {
+                fields.add(fieldInfo.name);
+            }
+        }
+
+        return fields;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.mapr.ojai.search.service;
+
+/**
+ * Additive-increase/multiplicative-decrease limit of concurrent requests. Limit grows by one per limit of healthy
+ * responses and halves on rejection or response time over the threshold, so the indexer stays near the capacity of
+ * the cluster without rejection storms. Requests are released by transport threads, so the limiter is thread-safe.
+ */
+class AdaptiveConcurrencyLimiter {
+
+    private static final int MIN_LIMIT = 1;
+
+    private final int maxLimit;
+    private final long latencyThresholdMs;
+    private final long overloadWindowMs;
+
+    private double limit = MIN_LIMIT;
+    private int inFlight;
+    private long overloadedAtMs;
+
+    /**
+     * @param maxLimit           upper bound of the limit.
+     * @param latencyThresholdMs response time, above which the limit is decreased.
+     * @param overloadWindowMs   time, for which the limiter is reported overloaded after a decrease at the minimum
+     *                           limit.
+     */
+    AdaptiveConcurrencyLimiter(int maxLimit, long latencyThresholdMs, long overloadWindowMs) {
+        this.maxLimit = maxLimit;
+        this.latencyThresholdMs = latencyThresholdMs;
+        this.overloadWindowMs = overloadWindowMs;
+    }
+
+    /**
+     * Waits until the number of in-flight requests is below the limit.
+     */
+    synchronized void acquire() throws InterruptedException {
+
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+
+        inFlight++;
+    }
+
+    /**
+     * Releases the request and adjusts the limit according to its outcome.
+     *
+     * @param latencyMs response time of the request.
+     * @param rejected  whether the request or some of its items were rejected.
+     */
+    synchronized void release(long latencyMs, boolean rejected) {
+
+        inFlight--;
+        if (rejected || latencyMs > latencyThresholdMs) {
+            if ((int) limit == MIN_LIMIT) {
+                overloadedAtMs = System.currentTimeMillis();
+            }
+            limit = Math.max(MIN_LIMIT, limit / 2);
+        } else {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+
+        notifyAll();
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Returns whether requests were rejected or slow even at the minimum limit recently, so the load has to be
+     * reduced further.
+     */
+    synchronized boolean isOverloaded() {
+        return overloadedAtMs > 0 && System.currentTimeMillis() - overloadedAtMs < overloadWindowMs;
+    }
+
+}
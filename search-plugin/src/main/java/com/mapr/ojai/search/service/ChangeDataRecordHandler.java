@@ -1,41 +1,142 @@
 package com.mapr.ojai.search.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mapr.ojai.search.config.IndexConfig;
 import com.mapr.ojai.search.config.SearchServiceConfig;
+import com.mapr.ojai.search.config.TableConfig;
+import com.mapr.ojai.search.util.DocumentIds;
+import com.mapr.ojai.search.util.OjaiSearchServiceUtils;
+import com.mapr.ojai.search.util.OjaiValues;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.ojai.Document;
+import org.ojai.DocumentConstants;
 import org.ojai.FieldPath;
 import org.ojai.KeyValue;
 import org.ojai.Value;
+import org.ojai.store.Connection;
+import org.ojai.store.DocumentStore;
+import org.ojai.store.DriverManager;
 import org.ojai.store.cdc.ChangeDataRecord;
+import org.ojai.store.cdc.ChangeDataRecordType;
 import org.ojai.store.cdc.ChangeNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
-public class ChangeDataRecordHandler {
+public class ChangeDataRecordHandler implements Closeable {
 
     private static final Logger log = LoggerFactory.getLogger(ChangeDataRecordHandler.class);
     private static final ObjectMapper mapper = new ObjectMapper();
 
-    private final SearchServiceConfig config;
-    private final ElasticSearchIndexService searchService;
+    /**
+     * Maximum number of cached field paths per table, so tables with unbounded set of field names do not exhaust
+     * memory.
+     */
+    private static final int MAX_CACHED_FIELD_PATHS = 10_000;
+
+    /**
+     * Per-thread container of the update changes. Index services do not retain changes after the call, so the
+     * container is cleared and reused for each update.
+     */
+    private static final ThreadLocal<ObjectNode> updateChanges = ThreadLocal.withInitial(mapper::createObjectNode);
+
+    private SearchServiceConfig config;
+    private final IndexService searchService;
+    private final DeadLetterQueue deadLetterQueue;
+    private final IndexingWatermarks watermarks;
+
+    /**
+     * MapR-DB connection and stores, which are opened on demand to fetch the fields of updated documents.
+     */
+    private Connection connection;
+    private final Map<String, DocumentStore> stores = new HashMap<>();
+
+    /**
+     * Path strings of the changed fields by table path, so each field path of the table's schema is rendered once.
+     */
+    private final Map<String, Map<FieldPath, String>> fieldPathStrings = new ConcurrentHashMap<>();
+
+    /**
+     * Number of updates, which changed none of the indexed fields and were not sent to the index.
+     */
+    private volatile long skippedUpdates;
 
     public ChangeDataRecordHandler(SearchServiceConfig config) {
         this.config = config;
-        this.searchService = new ElasticSearchIndexService(config);
+        this.deadLetterQueue = DeadLetterQueue.create(config.getDeadLetter());
+        this.searchService = createIndexService(config, deadLetterQueue);
+        this.watermarks = new IndexingWatermarks(config);
+    }
+
+    static IndexService createIndexService(SearchServiceConfig config, DeadLetterQueue deadLetterQueue) {
+        return (config.getBackend() == SearchServiceConfig.Backend.LUCENE)
+                ? new LuceneIndexService(config)
+                : new ElasticSearchIndexService(config, deadLetterQueue);
+    }
+
+    /**
+     * Handles Change Data Record according to its type. Failure of a single record does not stop processing of the
+     * changelog, failed record is sent to the dead-letter queue.
+     *
+     * @param consumerRecord consumed Change Data Record.
+     */
+    public void handle(ConsumerRecord<byte[], ChangeDataRecord> consumerRecord) {
+
+        // The ChangeDataRecord contains all the changes made to a document
+        ChangeDataRecord changeDataRecord = consumerRecord.value();
+        ChangeDataRecordType recordType = changeDataRecord.getType();
+        try {
+            switch (recordType) {
+                case RECORD_INSERT:
+                    handleInsert(consumerRecord);
+                    break;
+                case RECORD_UPDATE:
+                    handleUpdate(consumerRecord);
+                    break;
+                case RECORD_DELETE:
+                    handleDelete(consumerRecord);
+                    break;
+                default:
+                    log.warn("Get record of unknown type '{}'. Ignoring ...", recordType);
+            }
+        } catch (Exception e) {
+            log.error("Can not handle Change Data Record at {}", ChangeSource.of(consumerRecord), e);
+
+            Value id = changeDataRecord.getId();
+            String documentId = (id == null) ? null : DocumentIds.encode(id);
+            DeadLetterRecord.Operation operation = (recordType == ChangeDataRecordType.RECORD_DELETE)
+                    ? DeadLetterRecord.Operation.DELETE
+                    : (recordType == ChangeDataRecordType.RECORD_UPDATE)
+                    ? DeadLetterRecord.Operation.UPDATE
+                    : DeadLetterRecord.Operation.INDEX;
+
+            deadLetterQueue.send(new DeadLetterRecord(config.tablePathForChangelog(consumerRecord.topic()).orElse(null),
+                    documentId, operation, ChangeSource.of(consumerRecord), null).withReason(e.toString()));
+        }
+
+        // Dead-lettered records are processed as well, so they do not hold watermark back
+        watermarks.processed(consumerRecord.topic(), consumerRecord.partition(), changeDataRecord.getOpTimestamp());
     }
 
     public void handleInsert(ConsumerRecord<byte[], ChangeDataRecord> consumerRecord) {
 
         ChangeDataRecord changeDataRecord = consumerRecord.value();
-        String documentId = changeDataRecord.getId().getString();
-        log.info("Inserted document with id = '{}'", documentId);
+        String documentId = DocumentIds.encode(changeDataRecord.getId());
+        log.debug("Inserted document with id = '{}'", documentId);
 
         Optional<String> optionalTablePath = config.tablePathForChangelog(consumerRecord.topic());
         if (!optionalTablePath.isPresent()) {
@@ -64,16 +165,15 @@ public class ChangeDataRecordHandler {
             return;
         }
 
-        String jsonString = changeNodeValue.asJsonString();
-
-        searchService.saveIndexForTable(tablePath, documentId, parseJsonString(jsonString));
+        searchService.saveIndexForTable(tablePath, documentId, OjaiValues.toJsonNode(changeNodeValue),
+                ChangeSource.of(consumerRecord));
     }
 
     public void handleUpdate(ConsumerRecord<byte[], ChangeDataRecord> consumerRecord) {
 
         ChangeDataRecord changeDataRecord = consumerRecord.value();
-        String documentId = changeDataRecord.getId().getString();
-        log.info("Updated document with id = '{}'", documentId);
+        String documentId = DocumentIds.encode(changeDataRecord.getId());
+        log.debug("Updated document with id = '{}'", documentId);
 
         Optional<String> optionalTablePath = config.tablePathForChangelog(consumerRecord.topic());
         if (!optionalTablePath.isPresent()) {
@@ -83,23 +183,54 @@ public class ChangeDataRecordHandler {
         }
 
         String tablePath = optionalTablePath.get();
-        ObjectNode changes = mapper.createObjectNode();
-        for (Map.Entry<FieldPath, ChangeNode> changeNodeEntry : changeDataRecord) {
+        Set<String> indexedFields = config.indexedFieldsForTable(tablePath);
+        List<String> targetFields = targetFields(tablePath);
+        ObjectNode changes = updateChanges.get();
+        try {
+            int indexedChanges = 0;
+            for (Map.Entry<FieldPath, ChangeNode> changeNodeEntry : changeDataRecord) {
 
-            ChangeNode changeNode = changeNodeEntry.getValue();
-            String jsonString = changeNode.getValue().asJsonString();
-            String fieldPathAsString = changeNodeEntry.getKey().asPathString();
-            changes.set(fieldPathAsString, parseJsonString(jsonString));
-        }
+                // Values of the fields, which are not indexed, are neither materialized nor parsed
+                String fieldPathAsString = fieldPathString(tablePath, changeNodeEntry.getKey());
+                boolean indexed = indexedFields.isEmpty() || indexedFields.contains(fieldPathAsString);
+                if (!indexed && !targetFields.contains(fieldPathAsString)) {
+                    continue;
+                }
+
+                changes.set(fieldPathAsString, OjaiValues.toJsonNode(changeNodeEntry.getValue().getValue()));
+                if (indexed) {
+                    indexedChanges++;
+                }
+            }
+
+            if (indexedChanges == 0) {
+                log.debug("Update of document with id = '{}' changed none of the indexed fields. Skipping ...",
+                        documentId);
+                skippedUpdates++;
+                return;
+            }
 
-        searchService.saveIndexForTable(tablePath, documentId, changes);
+            // Index and shard of the document are determined by its routing and timestamp fields, so the ones, which
+            // are not changed by the update, are fetched from MapR-DB
+            List<String> missingFields = targetFields.stream()
+                    .filter(field -> !OjaiSearchServiceUtils.containsField(changes, field))
+                    .collect(Collectors.toList());
+            if (!missingFields.isEmpty() && !fetchFields(tablePath, changeDataRecord.getId(), missingFields, changes)) {
+                log.debug("Updated document with id = '{}' does not exist anymore. Skipping ...", documentId);
+                return;
+            }
+
+            searchService.updateIndexForTable(tablePath, documentId, changes, ChangeSource.of(consumerRecord));
+        } finally {
+            changes.removeAll();
+        }
     }
 
     public void handleDelete(ConsumerRecord<byte[], ChangeDataRecord> consumerRecord) {
 
         ChangeDataRecord changeDataRecord = consumerRecord.value();
-        String deletedDocumentId = changeDataRecord.getId().getString();
-        log.info("Deleted document with id = '{}'", deletedDocumentId);
+        String deletedDocumentId = DocumentIds.encode(changeDataRecord.getId());
+        log.debug("Deleted document with id = '{}'", deletedDocumentId);
 
         Optional<String> optionalTablePath = config.tablePathForChangelog(consumerRecord.topic());
         if (!optionalTablePath.isPresent()) {
@@ -109,19 +240,192 @@ public class ChangeDataRecordHandler {
         }
 
         String tablePath = optionalTablePath.get();
-        searchService.deleteIndexForTable(tablePath, deletedDocumentId);
+        searchService.deleteIndexForTable(tablePath, deletedDocumentId, ChangeSource.of(consumerRecord));
+    }
+
+    /**
+     * Sends pending changes to the index. Should be called after each batch of consumed Change Data Records.
+     *
+     * @param consumerLagMs age of the latest consumed Change Data Record.
+     */
+    public void flush(long consumerLagMs) {
+        searchService.flush(consumerLagMs);
+    }
+
+    /**
+     * Makes flushed changes visible to search and publishes watermarks of the tables. Must be called after
+     * {@link #flush(long)}.
+     *
+     * @param assignment      partitions, assigned to the consumer.
+     * @param caughtUp        partitions, which have no unprocessed Change Data Records.
+     * @param polledAt        time of the poll, after which caught-up partitions are determined.
+     * @param partitionCounts number of partitions by changelogs of the assigned partitions.
+     */
+    public void publishWatermarks(Set<TopicPartition> assignment, Set<TopicPartition> caughtUp, long polledAt,
+                                  Map<String, Integer> partitionCounts) {
+        watermarks.retain(assignment);
+        searchService.publishWatermarks(watermarks.partitionWatermarks(assignment, caughtUp, polledAt,
+                partitionCounts));
+    }
+
+    /**
+     * Applies reloaded config. Must be called after {@link #flush(long)}, so each batch of Change Data Records is
+     * handled with a single config.
+     *
+     * @param config reloaded config.
+     */
+    public void reconfigure(SearchServiceConfig config) {
+        searchService.reconfigure(config);
+        watermarks.reconfigure(config);
+        fieldPathStrings.keySet().removeIf(tablePath -> !config.tableConfig(tablePath).isPresent());
+        stores.entrySet().removeIf(store -> {
+            if (config.tableConfig(store.getKey()).isPresent()) {
+                return false;
+            }
+
+            store.getValue().close();
+            return true;
+        });
+        this.config = config;
+    }
+
+    /**
+     * Flushes pending changes and releases index service, dead-letter queue and MapR-DB connection.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            searchService.close();
+        } finally {
+            release();
+        }
     }
 
-    private JsonNode parseJsonString(String jsonString) {
+    /**
+     * Releases index service, dead-letter queue and MapR-DB connection without flushing pending changes. Called if
+     * flush did not complete in time, so the changes are consumed again after restart.
+     */
+    public void abort() throws IOException {
+        try {
+            searchService.abort();
+        } finally {
+            release();
+        }
+    }
 
-        JsonNode node = null;
+    private void release() throws IOException {
         try {
-            node = mapper.readValue(jsonString, JsonNode.class);
-        } catch (IOException e) {
-            log.warn("Can not parse JSON string '{}' as instance of Jackson JsonNode", jsonString);
+            deadLetterQueue.close();
+        } finally {
+            stores.values().forEach(DocumentStore::close);
+            stores.clear();
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Returns number of updates, which changed none of the indexed fields and were not sent to the index.
+     */
+    public long getSkippedUpdates() {
+        return skippedUpdates;
+    }
+
+    /**
+     * Returns the current limit of concurrent requests to the index backend.
+     */
+    public int getConcurrencyLimit() {
+        return searchService.getConcurrencyLimit();
+    }
+
+    /**
+     * Returns whether the index backend is overloaded, so consumption of the changelogs should be paused.
+     */
+    public boolean isOverloaded() {
+        return searchService.isOverloaded();
+    }
+
+    /**
+     * Returns the size of the changes, which are spilled locally while the index backend is unavailable.
+     */
+    public long getSpilledBytes() {
+        return searchService.getSpilledBytes();
+    }
+
+    public DeadLetterQueue getDeadLetterQueue() {
+        return deadLetterQueue;
+    }
+
+    /**
+     * Returns the fields of the table, which determine the index and routing of its documents.
+     */
+    private List<String> targetFields(String tablePath) {
+
+        IndexConfig index = config.tableConfig(tablePath).map(TableConfig::getIndex).orElse(null);
+        if (index == null || config.getBackend() == SearchServiceConfig.Backend.LUCENE) {
+            return Collections.emptyList();
+        }
+
+        List<String> fields = new ArrayList<>(2);
+        if (index.getRoutingField() != null) {
+            fields.add(index.getRoutingField());
+        }
+        if (index.getTimeBucket() != null && index.getTimestampField() != null) {
+            fields.add(index.getTimestampField());
+        }
+
+        return fields;
+    }
+
+    /**
+     * Fetches the specified fields of the document from MapR-DB.
+     *
+     * @return {@code false} if the document does not exist.
+     */
+    private boolean fetchFields(String tablePath, Value id, List<String> fields, ObjectNode changes) {
+
+        DocumentStore store = stores.get(tablePath);
+        if (store == null) {
+            if (connection == null) {
+                connection = DriverManager.getConnection("ojai:mapr:");
+            }
+
+            store = connection.getStore(tablePath);
+            stores.put(tablePath, store);
+        }
+
+        // Id is projected as well, so existing document is found even if it lacks the fields
+        List<String> projection = new ArrayList<>(fields);
+        projection.add(DocumentConstants.ID_KEY);
+        Document document = store.findById(id, projection.toArray(new String[0]));
+        if (document == null) {
+            return false;
+        }
+
+        for (String field : fields) {
+            Value value = document.getValue(field);
+            if (value != null) {
+                changes.set(field, OjaiValues.toJsonNode(value));
+            }
+        }
+
+        return true;
+    }
+
+    private String fieldPathString(String tablePath, FieldPath fieldPath) {
+
+        Map<FieldPath, String> tablePaths = fieldPathStrings.computeIfAbsent(tablePath,
+                path -> new ConcurrentHashMap<>());
+        String pathString = tablePaths.get(fieldPath);
+        if (pathString == null) {
+            pathString = fieldPath.asPathString();
+            if (tablePaths.size() < MAX_CACHED_FIELD_PATHS) {
+                tablePaths.put(fieldPath, pathString);
+            }
         }
 
-        return (node != null) ? node : mapper.createObjectNode();
+        return pathString;
     }
 
 }
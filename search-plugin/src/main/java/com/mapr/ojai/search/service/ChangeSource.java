@@ -0,0 +1,40 @@
+package com.mapr.ojai.search.service;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * Position of the Change Data Record at the changelog, from which the change originates.
+ */
+public class ChangeSource {
+
+    private final String changelog;
+    private final int partition;
+    private final long offset;
+
+    public ChangeSource(String changelog, int partition, long offset) {
+        this.changelog = changelog;
+        this.partition = partition;
+        this.offset = offset;
+    }
+
+    public static ChangeSource of(ConsumerRecord<?, ?> consumerRecord) {
+        return new ChangeSource(consumerRecord.topic(), consumerRecord.partition(), consumerRecord.offset());
+    }
+
+    public String getChangelog() {
+        return changelog;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String toString() {
+        return changelog + "[" + partition + "]@" + offset;
+    }
+}
@@ -0,0 +1,105 @@
+package com.mapr.ojai.search.service;
+
+import com.mapr.ojai.search.config.SearchServiceConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Watches Search Service config file and loads it once it is changed. Invalid configs are logged and ignored. Loaded
+ * config is not applied by the watcher, but is taken by the consumer thread via {@link #poll()} between batches of
+ * Change Data Records, so the config is swapped atomically with respect to indexing.
+ */
+public class ConfigWatcher implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ConfigWatcher.class);
+
+    private final Path configPath;
+    private final WatchService watchService;
+    private final AtomicReference<SearchServiceConfig> pending = new AtomicReference<>();
+    private final Thread thread;
+
+    public ConfigWatcher(String configPath) {
+
+        this.configPath = Paths.get(configPath).toAbsolutePath();
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+
+            // Editors often replace the file instead of modifying it, so the whole directory is watched
+            this.configPath.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not watch config file '" + configPath + "'", e);
+        }
+
+        this.thread = new Thread(this::watch, "ojai-search-config-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Returns config, which was changed since the last call.
+     *
+     * @return changed config or {@code null} if config was not changed.
+     */
+    public SearchServiceConfig poll() {
+        return pending.getAndSet(null);
+    }
+
+    private void watch() {
+
+        while (!Thread.currentThread().isInterrupted()) {
+
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                Object context = event.context();
+                if (context instanceof Path && configPath.getFileName().equals(context)) {
+                    changed = true;
+                }
+            }
+            key.reset();
+
+            if (changed) {
+                load();
+            }
+        }
+    }
+
+    private void load() {
+
+        try {
+            SearchServiceConfig config = SearchServiceConfig.fromFile(configPath.toString());
+            config.validate();
+            pending.set(config);
+            log.info("Config file '{}' is changed and will be applied", configPath);
+        } catch (Exception e) {
+            // File can be partially written, the next modification event will bring the complete one
+            log.warn("Changed config file '{}' can not be applied", configPath, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        watchService.close();
+    }
+
+}
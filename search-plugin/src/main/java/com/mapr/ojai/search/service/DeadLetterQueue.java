@@ -0,0 +1,44 @@
+package com.mapr.ojai.search.service;
+
+import com.mapr.ojai.search.config.DeadLetterConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+
+/**
+ * Destination of changes, which can not be indexed. Dead letters can be resubmitted via
+ * {@link DeadLetterReplayTool}.
+ */
+public interface DeadLetterQueue extends Closeable {
+
+    void send(DeadLetterRecord record);
+
+    @Override
+    default void close() {
+    }
+
+    /**
+     * Creates dead-letter queue according to the config. Dead letters are only logged if config is missing.
+     *
+     * @param config dead-letter queue config, can be {@code null}.
+     * @return dead-letter queue.
+     */
+    static DeadLetterQueue create(DeadLetterConfig config) {
+
+        if (config == null) {
+            Logger log = LoggerFactory.getLogger(DeadLetterQueue.class);
+            return record -> log.error("Change can not be indexed: {}", record);
+        }
+
+        switch (config.getType()) {
+            case STREAM:
+                return new StreamDeadLetterQueue(config.getTopic());
+            case FILE:
+                return new FileDeadLetterQueue(config.getPath());
+            default:
+                throw new IllegalArgumentException("Unknown dead-letter queue type: " + config.getType());
+        }
+    }
+
+}
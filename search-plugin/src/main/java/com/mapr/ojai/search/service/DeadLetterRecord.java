@@ -0,0 +1,134 @@
+package com.mapr.ojai.search.service;
+
+/**
+ * Change, which can not be indexed, along with the failure reason and its position at the changelog.
+ */
+public class DeadLetterRecord {
+
+    public enum Operation {
+        INDEX,
+        UPDATE,
+        DELETE
+    }
+
+    private String tablePath;
+    private String documentId;
+    private Operation operation;
+    private String changelog;
+    private Integer partition;
+    private Long offset;
+    private String reason;
+    private String payload;
+    private long timestamp;
+
+    public DeadLetterRecord() {
+    }
+
+    public DeadLetterRecord(String tablePath, String documentId, Operation operation, ChangeSource source,
+                            String payload) {
+
+        this.tablePath = tablePath;
+        this.documentId = documentId;
+        this.operation = operation;
+        this.payload = payload;
+        if (source != null) {
+            this.changelog = source.getChangelog();
+            this.partition = source.getPartition();
+            this.offset = source.getOffset();
+        }
+    }
+
+    public DeadLetterRecord withReason(String reason) {
+        this.reason = reason;
+        this.timestamp = System.currentTimeMillis();
+        return this;
+    }
+
+    public String getTablePath() {
+        return tablePath;
+    }
+
+    public void setTablePath(String tablePath) {
+        this.tablePath = tablePath;
+    }
+
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public void setOperation(Operation operation) {
+        this.operation = operation;
+    }
+
+    public String getChangelog() {
+        return changelog;
+    }
+
+    public void setChangelog(String changelog) {
+        this.changelog = changelog;
+    }
+
+    public Integer getPartition() {
+        return partition;
+    }
+
+    public void setPartition(Integer partition) {
+        this.partition = partition;
+    }
+
+    public Long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(Long offset) {
+        this.offset = offset;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    /**
+     * Indexed document source, if it is available.
+     */
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "DeadLetterRecord{" +
+                "tablePath='" + tablePath + '\'' +
+                ", documentId='" + documentId + '\'' +
+                ", operation=" + operation +
+                ", changelog='" + changelog + '\'' +
+                ", partition=" + partition +
+                ", offset=" + offset +
+                ", reason='" + reason + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,232 @@
+package com.mapr.ojai.search.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mapr.ojai.search.config.DeadLetterConfig;
+import com.mapr.ojai.search.config.SearchServiceConfig;
+import com.mapr.ojai.search.util.DocumentIds;
+import com.mapr.ojai.search.util.OjaiValues;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.ojai.Document;
+import org.ojai.Value;
+import org.ojai.store.Connection;
+import org.ojai.store.DocumentStore;
+import org.ojai.store.DriverManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/**
+ * Resubmits dead letters to the index. Since the dead letter can be caused by a malformed change, replay does not
+ * reuse its payload. Instead, the current state of the document is fetched from MapR-DB JSON Table and indexed, or
+ * removed from the index if the document does not exist anymore. Thus replay is idempotent and can be repeated.
+ * <p>
+ * Usage: {@code DeadLetterReplayTool <config.yml>}. Dead letters are read from the queue, declared at the config.
+ * Dead letters, which fail again, are sent back to the dead-letter queue, but are not replayed by the same run, so a
+ * failing dead letter does not loop forever.
+ */
+public final class DeadLetterReplayTool {
+
+    private static final Logger log = LoggerFactory.getLogger(DeadLetterReplayTool.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final long CONSUMER_POLL_TIMEOUT = 5_000L;
+    private static final String REPLAY_GROUP_ID = "ojai-search-dlq-replay";
+
+    private final SearchServiceConfig config;
+    private final Connection connection;
+    private final IndexService indexService;
+    private int replayed;
+
+    private DeadLetterReplayTool(SearchServiceConfig config, IndexService indexService) {
+        this.config = config;
+        this.connection = DriverManager.getConnection("ojai:mapr:");
+        this.indexService = indexService;
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: DeadLetterReplayTool <config.yml>");
+        }
+
+        SearchServiceConfig config = SearchServiceConfig.fromFile(args[0]);
+        config.validate();
+        if (config.getDeadLetter() == null) {
+            throw new IllegalStateException("Config does not declare dead-letter queue");
+        }
+
+        // Dead-letter file is renamed before the queue is opened, so dead letters, which fail again, are written to
+        // the new file rather than appended to the replayed one
+        DeadLetterConfig deadLetter = config.getDeadLetter();
+        Path replayPath = (deadLetter.getType() == DeadLetterConfig.Type.FILE) ? rotate(deadLetter.getPath()) : null;
+
+        DeadLetterQueue deadLetterQueue = DeadLetterQueue.create(deadLetter);
+        IndexService indexService = (config.getBackend() == SearchServiceConfig.Backend.LUCENE)
+                ? new LuceneIndexService(config)
+                : new ElasticSearchIndexService(config, deadLetterQueue);
+
+        DeadLetterReplayTool tool = new DeadLetterReplayTool(config, indexService);
+        switch (deadLetter.getType()) {
+            case FILE:
+                tool.replayFile(replayPath);
+                break;
+            case STREAM:
+                tool.replayStream(deadLetter.getTopic());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown dead-letter queue type: " + deadLetter.getType());
+        }
+
+        indexService.close();
+        deadLetterQueue.close();
+        tool.connection.close();
+        log.info("{} dead letters replayed", tool.replayed);
+    }
+
+    /**
+     * Renames dead-letter file, so it can be replayed while dead letters, which fail again, are written to the new
+     * file.
+     *
+     * @return path of the renamed file.
+     */
+    private static Path rotate(String path) throws IOException {
+        Path replayPath = Paths.get(path + ".replay-" + System.currentTimeMillis());
+        Files.move(Paths.get(path), replayPath);
+        return replayPath;
+    }
+
+    /**
+     * Replays renamed dead-letter file.
+     */
+    private void replayFile(Path replayPath) throws IOException {
+
+        try (BufferedReader reader = Files.newBufferedReader(replayPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    replay(mapper.readValue(line, DeadLetterRecord.class));
+                }
+            }
+        }
+
+        log.info("Replayed dead-letter file is kept at '{}'", replayPath);
+    }
+
+    /**
+     * Replays dead-letter topic up to the end offsets, captured at start. Dead letters, which fail again, are appended
+     * after these offsets, so they are left for the next run.
+     */
+    private void replayStream(String topic) throws IOException {
+
+        Properties consumerProperties = new Properties();
+        consumerProperties.setProperty("group.id", REPLAY_GROUP_ID);
+        consumerProperties.setProperty("enable.auto.commit", "false");
+        consumerProperties.setProperty("auto.offset.reset", "earliest");
+        consumerProperties.setProperty("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+        consumerProperties.setProperty("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+
+        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(consumerProperties)) {
+
+            List<TopicPartition> partitions = consumer.partitionsFor(topic).stream()
+                    .map(partition -> new TopicPartition(topic, partition.partition()))
+                    .collect(Collectors.toList());
+            consumer.assign(partitions);
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+            while (!reached(consumer, endOffsets)) {
+
+                ConsumerRecords<String, String> records = consumer.poll(CONSUMER_POLL_TIMEOUT);
+                if (records.isEmpty()) {
+                    break;
+                }
+
+                for (ConsumerRecord<String, String> record : records) {
+                    long endOffset = endOffsets.get(new TopicPartition(record.topic(), record.partition()));
+                    if (record.offset() < endOffset) {
+                        replay(mapper.readValue(record.value(), DeadLetterRecord.class));
+                    }
+                }
+
+                // Offsets past the end ones are not committed, since their dead letters are not replayed
+                indexService.flush(0L);
+                Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+                for (TopicPartition partition : partitions) {
+                    offsets.put(partition, new OffsetAndMetadata(Math.min(consumer.position(partition),
+                            endOffsets.get(partition))));
+                }
+                consumer.commitSync(offsets);
+            }
+        }
+    }
+
+    private static boolean reached(KafkaConsumer<?, ?> consumer, Map<TopicPartition, Long> endOffsets) {
+
+        for (Map.Entry<TopicPartition, Long> endOffset : endOffsets.entrySet()) {
+            if (consumer.position(endOffset.getKey()) < endOffset.getValue()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void replay(DeadLetterRecord record) throws IOException {
+
+        if (record.getTablePath() == null || record.getDocumentId() == null) {
+            log.warn("Dead letter can not be replayed, since its table or document is unknown: {}", record);
+            return;
+        }
+
+        if (!config.tableConfig(record.getTablePath()).isPresent()) {
+            log.warn("Dead letter can not be replayed, since its table is not configured anymore: {}", record);
+            return;
+        }
+
+        DocumentStore store = connection.getStore(record.getTablePath());
+        Object id = DocumentIds.decode(record.getDocumentId());
+        Document document = (id instanceof String)
+                ? store.findById((String) id)
+                : store.findById(idValue(connection, id));
+        if (document == null) {
+            indexService.deleteIndexForTable(record.getTablePath(), record.getDocumentId(), null);
+        } else {
+            JsonNode changes = OjaiValues.toJsonNode(document);
+            indexService.saveIndexForTable(record.getTablePath(), record.getDocumentId(), changes, null);
+        }
+
+        replayed++;
+    }
+
+    /**
+     * Converts decoded binary or numeric id into OJAI value.
+     */
+    private static Value idValue(Connection connection, Object id) {
+
+        Document idHolder = connection.newDocument();
+        if (id instanceof ByteBuffer) {
+            idHolder.set("_id", (ByteBuffer) id);
+        } else {
+            idHolder.set("_id", (Long) id);
+        }
+
+        return idHolder.getId();
+    }
+
+}
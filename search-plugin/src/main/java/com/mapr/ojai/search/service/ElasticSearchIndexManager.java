@@ -0,0 +1,435 @@
+package com.mapr.ojai.search.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mapr.ojai.search.config.FieldConfig;
+import com.mapr.ojai.search.config.IndexConfig;
+import com.mapr.ojai.search.config.MappingConfig;
+import com.mapr.ojai.search.config.TableConfig;
+import com.mapr.ojai.search.util.OjaiSearchServiceUtils;
+import org.elasticsearch.action.admin.indices.alias.Alias;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.mapper.RoutingFieldMapper;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHitField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves and creates ElasticSearch indices according to the table's {@link IndexConfig}:
+ * <ul>
+ * <li>plain tables are indexed to the single index, named after the table path;</li>
+ * <li>aliased tables are indexed to the concrete index behind the alias, named after the table path;</li>
+ * <li>time-bucketed tables are indexed to the per-bucket indices, which all belong to the alias, named after the
+ * table path.</li>
+ * </ul>
+ * Search Client always searches the index or alias named after the table path.
+ */
+public class ElasticSearchIndexManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ElasticSearchIndexManager.class);
+
+    private static final DateTimeFormatter DAY_BUCKET_FORMAT = DateTimeFormatter.ofPattern("yyyy.MM.dd");
+    private static final DateTimeFormatter MONTH_BUCKET_FORMAT = DateTimeFormatter.ofPattern("yyyy.MM");
+    private static final DateTimeFormatter YEAR_BUCKET_FORMAT = DateTimeFormatter.ofPattern("yyyy");
+    private static final DateTimeFormatter REINDEX_SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    /**
+     * Maximum number of documents, looked up by a single search request, which is well below max result window.
+     */
+    private static final int LOOKUP_BATCH_SIZE = 1_000;
+
+    /**
+     * Suffix of the bucket index of the documents, which do not have a valid timestamp.
+     */
+    public static final String UNDATED_BUCKET = "undated";
+
+    private static final String AUTOCOMPLETE_ANALYZER = "ojai_autocomplete";
+    private static final String AUTOCOMPLETE_FILTER = "ojai_autocomplete_edge_ngram";
+    private static final int AUTOCOMPLETE_MIN_GRAM = 1;
+    private static final int AUTOCOMPLETE_MAX_GRAM = 20;
+
+    private final TransportClient client;
+
+    /**
+     * Indices, which are known to exist, so there is no need to check them on every change.
+     */
+    private final Set<String> existingIndices = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Index, to which document is written, along with the routing value.
+     */
+    public static class IndexTarget {
+
+        private final String index;
+        private final String routing;
+
+        IndexTarget(String index, String routing) {
+            this.index = index;
+            this.routing = routing;
+        }
+
+        public String getIndex() {
+            return index;
+        }
+
+        public String getRouting() {
+            return routing;
+        }
+    }
+
+    public ElasticSearchIndexManager(TransportClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Resolves index and routing of the changed document and creates the index if it does not exist.
+     * <p>
+     * Target is determined by the values of routing and timestamp fields only, so each document is always written to
+     * the same index and shard. Thus changes must contain these fields, the caller fetches them from MapR-DB if an
+     * update does not change them. Documents without timestamp are indexed to the {@value #UNDATED_BUCKET} bucket.
+     *
+     * @param table     table config, can be {@code null}.
+     * @param tablePath table path.
+     * @param changes   document changes, including routing and timestamp fields.
+     * @return write target.
+     */
+    public IndexTarget resolveWriteTarget(TableConfig table, String tablePath, JsonNode changes) {
+
+        String aliasName = OjaiSearchServiceUtils.tablePathToIndexName(tablePath);
+        IndexConfig indexConfig = (table != null) ? table.getIndex() : null;
+        if (indexConfig == null) {
+            ensureIndex(aliasName, table, tablePath, null);
+            return new IndexTarget(aliasName, null);
+        }
+
+        String routing = fieldValue(changes, indexConfig.getRoutingField());
+        if (indexConfig.getTimeBucket() == null) {
+            ensureIndex(aliasName, table, tablePath, indexConfig.usesAlias() ? aliasName : null);
+            return new IndexTarget(aliasName, routing);
+        }
+
+        Instant timestamp = parseTimestamp(fieldValue(changes, indexConfig.getTimestampField()));
+        String bucketIndex = aliasName + "-" + ((timestamp != null)
+                ? bucketSuffix(indexConfig.getTimeBucket(), timestamp)
+                : UNDATED_BUCKET);
+
+        ensureIndex(bucketIndex, table, tablePath, aliasName);
+        return new IndexTarget(bucketIndex, routing);
+    }
+
+    /**
+     * Creates the index of the write target, which was resolved earlier, if it does not exist. Used for the changes,
+     * which were spilled while ElasticSearch was unavailable.
+     *
+     * @param table     table config, can be {@code null}.
+     * @param tablePath table path.
+     * @param target    write target, resolved by {@link #resolveWriteTarget(TableConfig, String, JsonNode)}.
+     */
+    public void ensureWriteTarget(TableConfig table, String tablePath, IndexTarget target) {
+
+        String aliasName = OjaiSearchServiceUtils.tablePathToIndexName(tablePath);
+        IndexConfig indexConfig = (table != null) ? table.getIndex() : null;
+        if (indexConfig == null) {
+            ensureIndex(target.getIndex(), table, tablePath, null);
+        } else if (indexConfig.getTimeBucket() == null) {
+            ensureIndex(target.getIndex(), table, tablePath, indexConfig.usesAlias() ? aliasName : null);
+        } else {
+            ensureIndex(target.getIndex(), table, tablePath, aliasName);
+        }
+    }
+
+    /**
+     * Whether index or routing of the deleted document have to be looked up, since delete does not carry the routing
+     * and timestamp fields of the document.
+     */
+    public boolean requiresTargetLookup(TableConfig table) {
+        IndexConfig indexConfig = (table != null) ? table.getIndex() : null;
+        return indexConfig != null && (indexConfig.getTimeBucket() != null || indexConfig.getRoutingField() != null);
+    }
+
+    /**
+     * Looks up concrete indices and routings of the indexed documents. Indices are refreshed first, so the documents,
+     * which are indexed, but not visible to search yet, are found as well. Caller must wait until all the writes of
+     * the documents complete.
+     *
+     * @param tablePath   table path.
+     * @param documentIds document identifiers.
+     * @return targets of each indexed document by its identifier. Documents, which are not indexed, are absent.
+     */
+    public Map<String, List<IndexTarget>> lookupTargets(String tablePath, Collection<String> documentIds) {
+
+        String aliasName = OjaiSearchServiceUtils.tablePathToIndexName(tablePath);
+        client.admin().indices().prepareRefresh(aliasName)
+                .setIndicesOptions(IndicesOptions.lenientExpandOpen())
+                .get();
+
+        Map<String, List<IndexTarget>> targets = new HashMap<>();
+        List<String> ids = new ArrayList<>(documentIds);
+        for (int from = 0; from < ids.size(); from += LOOKUP_BATCH_SIZE) {
+
+            List<String> batch = ids.subList(from, Math.min(from + LOOKUP_BATCH_SIZE, ids.size()));
+            SearchResponse response = client.prepareSearch(aliasName)
+                    .setIndicesOptions(IndicesOptions.lenientExpandOpen())
+                    .setTypes(tablePath)
+                    .setQuery(QueryBuilders.idsQuery(tablePath).addIds(batch.toArray(new String[0])))
+                    .setFetchSource(false)
+                    .setSize(batch.size())
+                    .get();
+
+            for (SearchHit hit : response.getHits()) {
+                SearchHitField routing = hit.field(RoutingFieldMapper.NAME);
+                targets.computeIfAbsent(hit.getId(), id -> new ArrayList<>())
+                        .add(new IndexTarget(hit.getIndex(), (routing != null) ? routing.getValue() : null));
+            }
+        }
+
+        return targets;
+    }
+
+    /**
+     * Creates concrete index, which will be used as reindex destination for the specified table.
+     *
+     * @param table     table config, can be {@code null}.
+     * @param tablePath table path.
+     * @return name of created index.
+     */
+    public String createReindexDestination(TableConfig table, String tablePath) {
+
+        String aliasName = OjaiSearchServiceUtils.tablePathToIndexName(tablePath);
+        String indexName = aliasName + "-" + REINDEX_SUFFIX_FORMAT.format(ZonedDateTime.now(ZoneOffset.UTC));
+        createIndex(indexName, table, tablePath, null);
+
+        return indexName;
+    }
+
+    private void ensureIndex(String indexName, TableConfig table, String tablePath, String aliasName) {
+
+        if (existingIndices.contains(indexName)) {
+            return;
+        }
+
+        try {
+            // Index or alias with such name can exist
+            boolean exists = client.admin().indices().prepareExists(indexName).get().isExists();
+            if (!exists) {
+                // Concrete index of aliased table is named after reindex suffix format, so it can be swapped later
+                String concreteName = (aliasName != null && aliasName.equals(indexName))
+                        ? indexName + "-" + REINDEX_SUFFIX_FORMAT.format(ZonedDateTime.now(ZoneOffset.UTC))
+                        : indexName;
+                createIndex(concreteName, table, tablePath, aliasName);
+            }
+
+            existingIndices.add(indexName);
+        } catch (Exception e) {
+            log.info("Can not create ElasticSearch index:'" + indexName + "'", e);
+        }
+    }
+
+    private void createIndex(String indexName, TableConfig table, String tablePath, String aliasName) {
+
+        MappingConfig mappingConfig = (table != null) ? table.getMapping() : null;
+        CreateIndexRequestBuilder request = client.admin().indices().prepareCreate(indexName)
+                .setSettings(indexSettings((table != null) ? table.getIndex() : null, hasAutocomplete(mappingConfig)));
+
+        if (mappingConfig != null) {
+            request.addMapping(tablePath, mapping(tablePath, mappingConfig));
+        }
+
+        if (aliasName != null) {
+            request.addAlias(new Alias(aliasName));
+        }
+
+        request.get();
+        log.info("ElasticSearch index '{}' created", indexName);
+    }
+
+    private static Settings indexSettings(IndexConfig indexConfig, boolean autocomplete) {
+
+        Settings.Builder settings = Settings.builder();
+        if (autocomplete) {
+            // Indexes prefixes of lowercased words, while search text is analyzed by the standard analyzer
+            settings.put("index.analysis.filter." + AUTOCOMPLETE_FILTER + ".type", "edge_ngram")
+                    .put("index.analysis.filter." + AUTOCOMPLETE_FILTER + ".min_gram", AUTOCOMPLETE_MIN_GRAM)
+                    .put("index.analysis.filter." + AUTOCOMPLETE_FILTER + ".max_gram", AUTOCOMPLETE_MAX_GRAM)
+                    .put("index.analysis.analyzer." + AUTOCOMPLETE_ANALYZER + ".type", "custom")
+                    .put("index.analysis.analyzer." + AUTOCOMPLETE_ANALYZER + ".tokenizer", "standard")
+                    .putArray("index.analysis.analyzer." + AUTOCOMPLETE_ANALYZER + ".filter",
+                            "lowercase", AUTOCOMPLETE_FILTER);
+        }
+
+        if (indexConfig == null) {
+            return settings.build();
+        }
+
+        if (indexConfig.getShards() != null) {
+            settings.put("index.number_of_shards", indexConfig.getShards());
+        }
+
+        if (indexConfig.getReplicas() != null) {
+            settings.put("index.number_of_replicas", indexConfig.getReplicas());
+        }
+
+        if (indexConfig.getRefreshInterval() != null) {
+            settings.put("index.refresh_interval", indexConfig.getRefreshInterval());
+        }
+
+        if (indexConfig.getTranslogDurability() != null) {
+            settings.put("index.translog.durability", indexConfig.getTranslogDurability());
+        }
+
+        if (indexConfig.getTranslogSyncInterval() != null) {
+            settings.put("index.translog.sync_interval", indexConfig.getTranslogSyncInterval());
+        }
+
+        return settings.build();
+    }
+
+    private static boolean hasAutocomplete(MappingConfig mappingConfig) {
+        return mappingConfig != null && mappingConfig.getFields() != null && mappingConfig.getFields().values().stream()
+                .anyMatch(field -> field != null && field.isAutocomplete());
+    }
+
+    private static XContentBuilder mapping(String type, MappingConfig mappingConfig) {
+
+        try {
+            XContentBuilder mapping = XContentFactory.jsonBuilder().startObject().startObject(type);
+            if (mappingConfig.getDynamic() != null) {
+                mapping.field("dynamic", mappingConfig.getDynamic());
+            }
+
+            mapping.startObject("properties");
+            if (mappingConfig.getFields() != null) {
+                for (Map.Entry<String, FieldConfig> field : mappingConfig.getFields().entrySet()) {
+                    fieldMapping(mapping, field.getKey(), field.getValue());
+                }
+            }
+
+            return mapping.endObject().endObject().endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not build mapping for type '" + type + "'", e);
+        }
+    }
+
+    private static void fieldMapping(XContentBuilder mapping, String fieldName, FieldConfig field) throws IOException {
+
+        mapping.startObject(fieldName);
+        mapping.field("type", field.getType());
+
+        if (field.getAnalyzer() != null) {
+            mapping.field("analyzer", field.getAnalyzer());
+        }
+
+        if (field.getIndex() != null) {
+            mapping.field("index", field.getIndex());
+        }
+
+        if (field.getDocValues() != null) {
+            mapping.field("doc_values", field.getDocValues());
+        }
+
+        if (field.getFormat() != null) {
+            mapping.field("format", field.getFormat());
+        }
+
+        if (field.getScalingFactor() != null) {
+            mapping.field("scaling_factor", field.getScalingFactor());
+        }
+
+        if (field.isAutocomplete()) {
+            mapping.startObject("fields")
+                    .startObject(FieldConfig.AUTOCOMPLETE_SUBFIELD)
+                    .field("type", "text")
+                    .field("analyzer", AUTOCOMPLETE_ANALYZER)
+                    .field("search_analyzer", "standard")
+                    .endObject()
+                    .endObject();
+        }
+
+        mapping.endObject();
+    }
+
+    private static String bucketSuffix(IndexConfig.TimeBucket timeBucket, Instant timestamp) {
+
+        ZonedDateTime dateTime = timestamp.atZone(ZoneOffset.UTC);
+        switch (timeBucket) {
+            case DAY:
+                return DAY_BUCKET_FORMAT.format(dateTime);
+            case MONTH:
+                return MONTH_BUCKET_FORMAT.format(dateTime);
+            case YEAR:
+                return YEAR_BUCKET_FORMAT.format(dateTime);
+            default:
+                throw new IllegalArgumentException("Unknown time bucket: " + timeBucket);
+        }
+    }
+
+    /**
+     * Parses timestamp field value, which can be epoch millis, ISO-8601 date or date-time.
+     *
+     * @return timestamp or {@code null} if value is missing or can not be parsed.
+     */
+    private static Instant parseTimestamp(String value) {
+
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            return Instant.ofEpochMilli(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            // not an epoch millis
+        }
+
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            // not an ISO-8601 date-time
+        }
+
+        try {
+            return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+        } catch (DateTimeParseException e) {
+            log.warn("Can not parse timestamp '{}'. Document is indexed to '{}' bucket.", value, UNDATED_BUCKET);
+            return null;
+        }
+    }
+
+    private static String fieldValue(JsonNode changes, String fieldPath) {
+
+        if (fieldPath == null || changes == null) {
+            return null;
+        }
+
+        JsonNode value = OjaiSearchServiceUtils.fieldValue(changes, fieldPath);
+
+        // OJAI extended JSON represents dates as {"$date": "..."} and {"$dateDay": "..."}
+        if (value.isObject() && value.size() == 1) {
+            value = value.elements().next();
+        }
+
+        return (value.isMissingNode() || value.isNull() || value.isContainerNode()) ? null : value.asText();
+    }
+
+}
@@ -2,37 +2,222 @@ package com.mapr.ojai.search.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.mapr.ojai.search.config.BackpressureConfig;
+import com.mapr.ojai.search.config.BulkConfig;
+import com.mapr.ojai.search.config.CatchUpConfig;
+import com.mapr.ojai.search.config.IndexConfig;
 import com.mapr.ojai.search.config.SearchServiceConfig;
+import com.mapr.ojai.search.config.SpillConfig;
 import com.mapr.ojai.search.config.TableConfig;
+import com.mapr.ojai.search.service.ElasticSearchIndexManager.IndexTarget;
 import com.mapr.ojai.search.util.OjaiSearchServiceUtils;
-import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsResponse;
-import org.elasticsearch.action.delete.DeleteResponse;
-import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.ElasticsearchTimeoutException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.transport.NoNodeAvailableException;
 import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.discovery.MasterNotDiscoveredException;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.engine.VersionConflictEngineException;
+import org.elasticsearch.node.NodeClosedException;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.elasticsearch.transport.ConnectTransportException;
+import org.elasticsearch.transport.ReceiveTimeoutTransportException;
 import org.elasticsearch.transport.client.PreBuiltTransportClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Optional;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
-public class ElasticSearchIndexService {
+/**
+ * Sends changes to ElasticSearch via bulk requests. Up to the adaptive limit of bulk requests are in flight at once,
+ * while documents of the pending bulk request are not in flight, so changes of each document are applied in order.
+ * Responses are handled by the calling thread, and {@link #flush(long)} returns once all the requests complete.
+ * <p>
+ * If spill log is configured, changes, which can not be sent since ElasticSearch is unavailable or keeps rejecting
+ * them, are written to the local spill log, along with all the subsequent changes, so the changes of each document
+ * stay in order. Spilled changes are coalesced and replayed by {@link #flush(long)} once ElasticSearch recovers.
+ */
+public class ElasticSearchIndexService implements IndexService {
 
     private static final Logger log = LoggerFactory.getLogger(ElasticSearchIndexService.class);
-    private static final ObjectMapper mapper = new ObjectMapper();
 
-    private final SearchServiceConfig config;
+    private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
+    private static final String NUMBER_OF_REPLICAS_SETTING = "index.number_of_replicas";
+    private static final String DEFAULT_REFRESH_INTERVAL = "1s";
+    private static final int DEFAULT_NUMBER_OF_REPLICAS = 1;
+    private static final String TRANSPORT_COMPRESS_SETTING = "transport.tcp.compress";
+
+    /**
+     * Fills the fields of the indexed document, which are absent, with the backfilled values. Document is not
+     * reindexed if all its fields are present.
+     */
+    private static final String BACKFILL_SCRIPT = "boolean changed = false; "
+            + "for (entry in params.document.entrySet()) { "
+            + "if (!ctx._source.containsKey(entry.getKey())) { ctx._source[entry.getKey()] = entry.getValue(); "
+            + "changed = true; } } "
+            + "if (!changed) { ctx.op = 'none' }";
+    private static final int BACKFILL_RETRY_ON_CONFLICT = 3;
+
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+    private static final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+    private static final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+
+    private volatile SearchServiceConfig config;
     private final TransportClient client;
+    private final ElasticSearchIndexManager indexManager;
+
+    private final DeadLetterQueue deadLetterQueue;
+    private final boolean backfill;
+
+    private BulkRequestBuilder pendingBulk;
+
+    /**
+     * Changes of the pending bulk request in the same order as bulk actions, so failed bulk items can be sent to the
+     * dead-letter queue.
+     */
+    private final List<DeadLetterRecord> pendingRecords = new ArrayList<>();
+
+    /**
+     * Sources of the pending bulk request, which are rendered as dead-letter payloads only if bulk items fail.
+     */
+    private final List<JsonNode> pendingSources = new ArrayList<>();
+
+    /**
+     * Keys of the documents of the pending bulk request.
+     */
+    private final Set<String> pendingDocuments = new HashSet<>();
+
+    /**
+     * Write targets of the documents of the pending bulk request, so their deletes do not have to be looked up.
+     */
+    private final Map<String, IndexTarget> pendingTargets = new HashMap<>();
+
+    /**
+     * Deletes, which targets are not known yet, by document keys. They are looked up and added to the pending bulk
+     * request before it is sent or before the subsequent write of the same document.
+     */
+    private final Map<String, SpilledChange> unresolvedDeletes = new LinkedHashMap<>();
+
+    private PooledSourceBuffer pendingBuffer;
+    private final Deque<PooledSourceBuffer> freeBuffers = new ArrayDeque<>();
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    /**
+     * Bulk requests, which are completed by transport threads and wait to be handled by the calling thread.
+     */
+    private final BlockingQueue<InFlightBulk> completedBulks = new LinkedBlockingQueue<>();
+    private int inFlightBulks;
+
+    /**
+     * Keys of the documents of in-flight bulk requests, including retried ones.
+     */
+    private final Set<String> inFlightDocuments = new HashSet<>();
+
+    /**
+     * Indices, to which pending bulk request writes, along with their table configs.
+     */
+    private final Map<String, TableConfig> pendingIndices = new HashMap<>();
+
+    private boolean catchUp;
+
+    /**
+     * Concrete indices, which settings were changed in catch-up mode, along with settings to be restored.
+     */
+    private final Map<String, Settings> catchUpIndices = new HashMap<>();
+
+    /**
+     * Write targets, either indices or aliases, which entered catch-up mode.
+     */
+    private final Set<String> catchUpTargets = new HashSet<>();
+
+    /**
+     * Log of the changes, which are written while ElasticSearch is unavailable, {@code null} if spill is disabled.
+     */
+    private final SpillLog spillLog;
+    private long unavailableAtMs;
+    private boolean replaying;
+    private boolean replayFailed;
+
+    /**
+     * Bulk request, sent to ElasticSearch, along with its changes.
+     */
+    private static final class InFlightBulk {
+
+        private final BulkRequest request;
+        private final List<DeadLetterRecord> records;
+        private final List<JsonNode> sources;
+        private final Set<String> documents;
+        private final PooledSourceBuffer buffer;
+        private final int attempt;
+        private long startNanos;
+
+        private volatile BulkResponse response;
+        private volatile Exception failure;
+
+        private InFlightBulk(BulkRequest request, List<DeadLetterRecord> records, List<JsonNode> sources,
+                             Set<String> documents, PooledSourceBuffer buffer, int attempt) {
+            this.request = request;
+            this.records = records;
+            this.sources = sources;
+            this.documents = documents;
+            this.buffer = buffer;
+            this.attempt = attempt;
+        }
+    }
 
     public ElasticSearchIndexService(SearchServiceConfig config) {
+        this(config, DeadLetterQueue.create(null));
+    }
+
+    public ElasticSearchIndexService(SearchServiceConfig config, DeadLetterQueue deadLetterQueue) {
+        this(config, deadLetterQueue, false);
+    }
+
+    /**
+     * @param config          service config.
+     * @param deadLetterQueue queue of the failed changes.
+     * @param backfill        whether the service indexes documents, read from MapR-DB concurrently with the consumer.
+     *                        Backfilled documents never overwrite indexed values, which can be newer, and are not
+     *                        spilled, so the spill log is owned by the consumer only.
+     */
+    public ElasticSearchIndexService(SearchServiceConfig config, DeadLetterQueue deadLetterQueue, boolean backfill) {
 
         InetAddress inetAddress;
         try {
@@ -43,32 +228,57 @@ public class ElasticSearchIndexService {
 
         // Create ElasticSearch Client
         this.config = config;
-        this.client = new PreBuiltTransportClient(Settings.EMPTY)
+        Settings settings = Settings.builder()
+                .put(TRANSPORT_COMPRESS_SETTING, config.getBulk().isCompress())
+                .build();
+        this.client = new PreBuiltTransportClient(settings)
                 .addTransportAddress(new InetSocketTransportAddress(inetAddress, config.getElasticPort()));
+        this.indexManager = new ElasticSearchIndexManager(client);
+        this.deadLetterQueue = deadLetterQueue;
+        this.backfill = backfill;
+
+        BackpressureConfig backpressure = config.getBackpressure();
+        this.limiter = new AdaptiveConcurrencyLimiter(backpressure.getMaxConcurrentRequests(),
+                backpressure.getLatencyThresholdMs(), backpressure.getPauseMs());
+
+        try {
+            this.spillLog = (config.getSpill() != null && !backfill) ? new SpillLog(config.getSpill()) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not open spill log at '" + config.getSpill().getDirectory() + "'", e);
+        }
     }
 
-    /**
-     * Should be called on document insert/update.
-     *
-     * @param tablePath
-     * @param documentId
-     * @param changes
-     */
-    public void saveIndexForTable(String tablePath, String documentId, JsonNode changes) {
+    @Override
+    public void saveIndexForTable(String tablePath, String documentId, JsonNode changes,
+                                  ChangeSource changeSource) {
+        write(DeadLetterRecord.Operation.INDEX, tablePath, documentId, changes, changeSource);
+    }
 
-        String indexName = OjaiSearchServiceUtils.tablePathToIndexName(tablePath);
-        // Create index
+    @Override
+    public void updateIndexForTable(String tablePath, String documentId, JsonNode changes,
+                                    ChangeSource changeSource) {
+        write(DeadLetterRecord.Operation.UPDATE, tablePath, documentId, changes, changeSource);
+    }
+
+    private void write(DeadLetterRecord.Operation operation, String tablePath, String documentId, JsonNode changes,
+                       ChangeSource changeSource) {
+
+        TableConfig table = config.tableConfig(tablePath).orElse(null);
+        IndexTarget target;
         try {
-            IndicesExistsResponse existsResponse = client.admin().indices().prepareExists(indexName).get();
-            if (!existsResponse.isExists()) {
-                client.admin().indices().prepareCreate(indexName).get();
+            target = indexManager.resolveWriteTarget(table, tablePath, changes);
+        } catch (RuntimeException e) {
+            if (spillLog == null || !isUnavailable(e)) {
+                throw e;
             }
-        } catch (Exception e) {
-            log.info("Can not create ElasticSearch index:'" + indexName + "'", e);
+
+            // Target is resolved at replay
+            unavailable(e);
+            target = null;
         }
 
-        Set<String> allowedFields = getAllowedFieldsForTable(tablePath);
-        JsonNode allowed = copyOnlyAllowedFields(allowedFields, changes);
+        Set<String> allowedFields = config.indexedFieldsForTable(tablePath);
+        JsonNode allowed = OjaiSearchServiceUtils.copyOnlyAllowedFields(allowedFields, changes);
 
         if (allowed == null) {
             log.info("Document with id: '{}' was changed, but none of the fields are allowed to be sent to the ES",
@@ -76,67 +286,866 @@ public class ElasticSearchIndexService {
             return;
         }
 
-        IndexResponse response = client.prepareIndex(indexName, tablePath, documentId)
-                .setSource(allowed.toString(), XContentType.JSON)
-                .get();
+        // Updated fields are merged into the indexed document, so their paths are expanded into nested objects
+        JsonNode source = (operation == DeadLetterRecord.Operation.UPDATE)
+                ? OjaiSearchServiceUtils.expandFieldPaths(allowed)
+                : allowed;
+        if (target == null || spilling()) {
+            spill(new SpilledChange(tablePath, documentId, operation,
+                    (target != null) ? target.getIndex() : null, (target != null) ? target.getRouting() : null,
+                    source, changeSource));
+            return;
+        }
+
+        add(operation, target, table, tablePath, documentId, source, changeSource);
+    }
+
+    private void add(DeadLetterRecord.Operation operation, IndexTarget target, TableConfig table, String tablePath,
+                     String documentId, JsonNode source, ChangeSource changeSource) {
+
+        // Delete of the document must precede its subsequent write at the bulk
+        String key = documentKey(tablePath, documentId);
+        if (unresolvedDeletes.containsKey(key)) {
+            resolveDeletes();
+        }
+
+        BulkConfig.SourceFormat format = config.getBulk().getFormat();
+        BytesReference encoded;
+        try {
+            encoded = pendingBuffer().encode(sourceMapper(format), source);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (operation == DeadLetterRecord.Operation.UPDATE) {
+            // Document is created from the changes if its insert is not indexed yet
+            bulk(target.getIndex(), table).add(client.prepareUpdate(target.getIndex(), tablePath, documentId)
+                    .setRouting(target.getRouting())
+                    .setDoc(new IndexRequest().source(encoded, sourceContentType(format)))
+                    .setDocAsUpsert(true));
+        } else if (backfill) {
+            // Document is created if it is not indexed yet, otherwise only its absent fields are filled
+            Map<String, Object> params = Collections.singletonMap("document",
+                    jsonMapper.convertValue(source, Map.class));
+            bulk(target.getIndex(), table).add(client.prepareUpdate(target.getIndex(), tablePath, documentId)
+                    .setRouting(target.getRouting())
+                    .setScript(new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, BACKFILL_SCRIPT, params))
+                    .setUpsert(new IndexRequest().source(encoded, sourceContentType(format)))
+                    .setRetryOnConflict(BACKFILL_RETRY_ON_CONFLICT));
+        } else {
+            bulk(target.getIndex(), table).add(client.prepareIndex(target.getIndex(), tablePath, documentId)
+                    .setRouting(target.getRouting())
+                    .setSource(encoded, sourceContentType(format)));
+        }
+        pendingRecords.add(new DeadLetterRecord(tablePath, documentId, operation, changeSource, null));
+        pendingSources.add(source);
+        pendingDocuments.add(key);
+        pendingTargets.put(key, target);
+
+        flushIfFull();
+    }
+
+    @Override
+    public void deleteIndexForTable(String tablePath, String documentId, ChangeSource source) {
+
+        if (spilling()) {
+            spill(new SpilledChange(tablePath, documentId, DeadLetterRecord.Operation.DELETE, null, null, null,
+                    source));
+            return;
+        }
+
+        delete(tablePath, documentId, source);
+    }
+
+    private void delete(String tablePath, String documentId, ChangeSource source) {
+
+        TableConfig table = config.tableConfig(tablePath).orElse(null);
+        IndexTarget target = pendingTargets.get(documentKey(tablePath, documentId));
+        if (target == null && !indexManager.requiresTargetLookup(table)) {
+            target = new IndexTarget(OjaiSearchServiceUtils.tablePathToIndexName(tablePath), null);
+        }
+
+        if (target == null) {
+            // Concrete index and routing of the deleted document are looked up for the whole pending bulk at once
+            unresolvedDeletes.put(documentKey(tablePath, documentId), new SpilledChange(tablePath, documentId,
+                    DeadLetterRecord.Operation.DELETE, null, null, null, source));
+        } else {
+            addDelete(target, table, tablePath, documentId, source);
+        }
+
+        flushIfFull();
+    }
+
+    private void addDelete(IndexTarget target, TableConfig table, String tablePath, String documentId,
+                           ChangeSource source) {
+
+        bulk(target.getIndex(), table).add(client.prepareDelete(target.getIndex(), tablePath, documentId)
+                .setRouting(target.getRouting()));
+        pendingRecords.add(new DeadLetterRecord(tablePath, documentId, DeadLetterRecord.Operation.DELETE,
+                source, null));
+        pendingSources.add(null);
+        pendingDocuments.add(documentKey(tablePath, documentId));
+    }
+
+    /**
+     * Looks up targets of the unresolved deletes and adds them to the pending bulk. Deletes of the documents, which
+     * are not indexed, are dropped.
+     */
+    private void resolveDeletes() {
+
+        if (unresolvedDeletes.isEmpty()) {
+            return;
+        }
+
+        List<SpilledChange> deletes = new ArrayList<>(unresolvedDeletes.values());
+        unresolvedDeletes.clear();
+
+        // Documents are found only once their writes are completed
+        if (deletes.stream().anyMatch(delete ->
+                inFlightDocuments.contains(documentKey(delete.getTablePath(), delete.getDocumentId())))) {
+            awaitInFlightBulks();
+        }
+
+        Map<String, List<SpilledChange>> tableDeletes = new LinkedHashMap<>();
+        deletes.forEach(delete -> tableDeletes.computeIfAbsent(delete.getTablePath(), path -> new ArrayList<>())
+                .add(delete));
+        for (Map.Entry<String, List<SpilledChange>> entry : tableDeletes.entrySet()) {
+
+            String tablePath = entry.getKey();
+            Map<String, List<IndexTarget>> targets;
+            try {
+                targets = indexManager.lookupTargets(tablePath, entry.getValue().stream()
+                        .map(SpilledChange::getDocumentId)
+                        .collect(Collectors.toList()));
+            } catch (RuntimeException e) {
+                if (replaying) {
+                    throw e;
+                }
+
+                if (spillLog != null && isUnavailable(e)) {
+                    unavailable(e);
+                    entry.getValue().forEach(this::spill);
+                } else {
+                    log.error("Can not look up {} deleted documents of table '{}'", entry.getValue().size(),
+                            tablePath, e);
+                    entry.getValue().forEach(delete -> deadLetterQueue.send(new DeadLetterRecord(tablePath,
+                            delete.getDocumentId(), DeadLetterRecord.Operation.DELETE, delete.changeSource(), null)
+                            .withReason(e.toString())));
+                }
+                continue;
+            }
+
+            TableConfig table = config.tableConfig(tablePath).orElse(null);
+            for (SpilledChange delete : entry.getValue()) {
+                List<IndexTarget> documentTargets = targets.get(delete.getDocumentId());
+                if (documentTargets == null) {
+                    log.debug("Deleted document with id: '{}' is not indexed", delete.getDocumentId());
+                    continue;
+                }
+
+                for (IndexTarget target : documentTargets) {
+                    addDelete(target, table, tablePath, delete.getDocumentId(), delete.changeSource());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void flush(long consumerLagMs) {
+
+        CatchUpConfig catchUpConfig = config.getCatchUp();
+        boolean shouldCatchUp = catchUpConfig.isForce() || (catchUpConfig.isEnabled() && ((catchUp)
+                ? consumerLagMs > catchUpConfig.getRecoveredLagMs()
+                : consumerLagMs > catchUpConfig.getLagThresholdMs()));
+
+        if (shouldCatchUp && !catchUp) {
+            log.info("Consumer lag is {} ms. Entering catch-up mode", consumerLagMs);
+            catchUp = true;
+            pendingIndices.forEach(this::enterCatchUp);
+        }
+
+        flushPendingBulk();
+        replaySpilled();
+
+        if (!shouldCatchUp && catchUp) {
+            log.info("Consumer lag is {} ms. Leaving catch-up mode", consumerLagMs);
+            exitCatchUp();
+            catchUp = false;
+        }
+    }
+
+    @Override
+    public void publishWatermarks(List<PartitionWatermark> partitionWatermarks) {
+
+        // Spilled changes are not visible to search yet
+        if (partitionWatermarks.isEmpty() || spilling()) {
+            return;
+        }
+
+        String[] indexNames = partitionWatermarks.stream()
+                .map(watermark -> OjaiSearchServiceUtils.tablePathToIndexName(watermark.getTablePath()))
+                .distinct()
+                .toArray(String[]::new);
+
+        try {
+            client.admin().indices().prepareRefresh(indexNames)
+                    .setIndicesOptions(IndicesOptions.lenientExpandOpen())
+                    .get();
+
+            // Watermark is stored per partition as external version, so it never moves backwards. Version conflict
+            // means that the previous owner of the partition has already published a later watermark
+            BulkRequestBuilder bulk = client.prepareBulk();
+            for (PartitionWatermark watermark : partitionWatermarks) {
+                bulk.add(client
+                        .prepareIndex(OjaiSearchServiceUtils.WATERMARK_INDEX, OjaiSearchServiceUtils.WATERMARK_TYPE,
+                                OjaiSearchServiceUtils.watermarkId(watermark.getTablePath(), watermark.getPartition()))
+                        .setVersion(watermark.getTimestamp())
+                        .setVersionType(VersionType.EXTERNAL_GTE)
+                        .setSource(XContentType.JSON,
+                                "tablePath", watermark.getTablePath(),
+                                "partition", watermark.getPartition(),
+                                OjaiSearchServiceUtils.WATERMARK_PARTITIONS_FIELD, watermark.getPartitions(),
+                                "timestamp", watermark.getTimestamp()));
+            }
+
+            BulkResponse response = bulk.get();
+            for (BulkItemResponse item : response.getItems()) {
+                if (item.isFailed() && !(item.getFailure().getCause() instanceof VersionConflictEngineException)) {
+                    log.warn("Can not publish watermark '{}': {}", item.getId(), item.getFailureMessage());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Can not publish watermarks {}", partitionWatermarks, e);
+        }
+    }
+
+    @Override
+    public void reconfigure(SearchServiceConfig config) {
+        this.config = config;
+    }
 
-        log.info("Elasticsearch Index Response: '{}'", response);
+    @Override
+    public int getConcurrencyLimit() {
+        return limiter.getLimit();
     }
 
     /**
-     * Should be called on document delete.
-     *
-     * @param documentId
+     * Consumption is not paused while changes are spilled, since they are not sent to ElasticSearch.
      */
-    public void deleteIndexForTable(String tablePath, String documentId) {
+    @Override
+    public boolean isOverloaded() {
+        return !spilling() && limiter.isOverloaded();
+    }
 
-        String indexName = OjaiSearchServiceUtils.tablePathToIndexName(tablePath);
-        DeleteResponse response = client.prepareDelete(indexName, tablePath, documentId).get();
-        log.info("Elasticsearch Delete Response: '{}'", response);
+    @Override
+    public long getSpilledBytes() {
+        return (spillLog != null) ? spillLog.getBytes() : 0L;
+    }
+
+    @Override
+    public void close() {
+
+        flushPendingBulk();
+        if (catchUp) {
+            exitCatchUp();
+            catchUp = false;
+        }
+
+        if (spillLog != null) {
+            spillLog.close();
+        }
+
+        client.close();
     }
 
     /**
-     * Only specified fields will be sent to the ElasticSearch.
-     *
-     * @param original all the changes.
-     * @return changes for the specified fields.
+     * Closes the client, so the requests of the thread, which may still be flushing, fail fast. Neither pending nor
+     * spilled changes are touched, since that thread may still use them. Settings of the indices in catch-up mode are
+     * restored by the next run.
      */
-    private JsonNode copyOnlyAllowedFields(Set<String> allowedFields, JsonNode original) {
+    @Override
+    public void abort() {
+        log.warn("ElasticSearch index service is aborted, pending changes are discarded");
+        client.close();
+    }
+
+    public ElasticSearchIndexManager getIndexManager() {
+        return indexManager;
+    }
 
-        ObjectNode allowed = null;
-        Iterator<String> fieldNamesIterator = original.fieldNames();
-        while (fieldNamesIterator.hasNext()) {
+    public TransportClient getClient() {
+        return client;
+    }
 
-            String fieldName = fieldNamesIterator.next();
-            if (allowedFields != null && !allowedFields.isEmpty() && !allowedFields.contains(fieldName)) {
-                continue;
+    private BulkRequestBuilder bulk(String indexName, TableConfig table) {
+
+        if (pendingBulk == null) {
+            pendingBulk = client.prepareBulk();
+        }
+
+        if (!pendingIndices.containsKey(indexName)) {
+            pendingIndices.put(indexName, table);
+            if (catchUp) {
+                enterCatchUp(indexName, table);
             }
+        }
+
+        return pendingBulk;
+    }
+
+    private void flushIfFull() {
+
+        int bulkActions = (catchUp) ? config.getCatchUp().getBulkActions() : config.getBulk().getActions();
+        int actions = ((pendingBulk != null) ? pendingBulk.numberOfActions() : 0) + unresolvedDeletes.size();
+        if (actions > 0 && actions >= bulkActions) {
+            sendPendingBulk();
+        }
+    }
+
+    private PooledSourceBuffer pendingBuffer() {
+
+        if (pendingBuffer == null) {
+            pendingBuffer = freeBuffers.isEmpty() ? new PooledSourceBuffer() : freeBuffers.pop();
+        }
+
+        return pendingBuffer;
+    }
+
+    private static String documentKey(String tablePath, String documentId) {
+        return tablePath + '\u0000' + documentId;
+    }
+
+    /**
+     * Sends the pending bulk request and waits until all the in-flight requests complete.
+     */
+    private void flushPendingBulk() {
+        sendPendingBulk();
+        awaitInFlightBulks();
+    }
+
+    /**
+     * Sends the pending bulk request without waiting for the response. If some of its documents are still in flight,
+     * in-flight requests are awaited first, so changes of the document are not reordered.
+     */
+    private void sendPendingBulk() {
+
+        resolveDeletes();
+        if (pendingBulk == null || pendingBulk.numberOfActions() == 0) {
+            return;
+        }
+
+        InFlightBulk bulk = new InFlightBulk(pendingBulk.request(), new ArrayList<>(pendingRecords),
+                new ArrayList<>(pendingSources), new HashSet<>(pendingDocuments), pendingBuffer, 0);
+        pendingBulk = null;
+        pendingBuffer = null;
+        pendingRecords.clear();
+        pendingSources.clear();
+        pendingDocuments.clear();
+        pendingTargets.clear();
+        pendingIndices.clear();
 
-            if (allowed == null) {
-                allowed = mapper.createObjectNode();
+        handleCompletedBulks();
+        if (!Collections.disjoint(bulk.documents, inFlightDocuments)) {
+            awaitInFlightBulks();
+        }
+
+        // Once changes are spilled, subsequent ones are spilled as well, so they are not applied out of order
+        if (spilling() && !replaying) {
+            spillChanges(bulk, allItems(bulk));
+            release(bulk);
+            return;
+        }
+
+        dispatch(bulk);
+    }
+
+    private void dispatch(InFlightBulk bulk) {
+
+        inFlightBulks++;
+        inFlightDocuments.addAll(bulk.documents);
+        try {
+            limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            bulk.failure = e;
+            completedBulks.add(bulk);
+            return;
+        }
+
+        bulk.startNanos = System.nanoTime();
+        client.bulk(bulk.request, new ActionListener<BulkResponse>() {
+
+            @Override
+            public void onResponse(BulkResponse response) {
+                limiter.release(elapsedMs(bulk), hasRejections(response));
+                bulk.response = response;
+                completedBulks.add(bulk);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                limiter.release(elapsedMs(bulk), isRejection(e));
+                bulk.failure = e;
+                completedBulks.add(bulk);
+            }
+        });
+    }
+
+    private void awaitInFlightBulks() {
+
+        try {
+            while (inFlightBulks > 0) {
+                handleCompleted(completedBulks.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + inFlightBulks + " bulk responses", e);
+        }
+    }
+
+    private void handleCompletedBulks() {
+
+        InFlightBulk completed;
+        while ((completed = completedBulks.poll()) != null) {
+            handleCompleted(completed);
+        }
+    }
+
+    /**
+     * Retries rejected bulk items, spills ones, which can not be applied while ElasticSearch is unavailable, and sends
+     * other failed ones to the dead-letter queue.
+     */
+    private void handleCompleted(InFlightBulk bulk) {
+
+        inFlightBulks--;
+        int maxRetries = config.getBackpressure().getMaxRetries();
+        if (bulk.failure != null) {
+            if (isRejection(bulk.failure) && bulk.attempt < maxRetries) {
+                retry(bulk, allItems(bulk));
+                return;
+            }
+
+            if (spillLog != null && isUnavailable(bulk.failure)) {
+                unavailable(bulk.failure);
+                spillChanges(bulk, allItems(bulk));
+                release(bulk);
+                return;
+            }
+
+            log.error("Can not execute ElasticSearch bulk request of {} actions", bulk.records.size(), bulk.failure);
+            String reason = "Bulk request failed: " + bulk.failure;
+            for (int i = 0; i < bulk.records.size(); i++) {
+                deadLetterQueue.send(withPayload(bulk.records.get(i), bulk.sources.get(i)).withReason(reason));
             }
+            release(bulk);
+            return;
+        }
+
+        BulkResponse response = bulk.response;
+        log.info("Elasticsearch Bulk Response: {} actions in {}", response.getItems().length, response.getTook());
+
+        // Successful items are already applied, rejected ones are retried or spilled, other failed ones are
+        // dead-lettered
+        List<Integer> rejected = new ArrayList<>();
+        List<Integer> unavailable = new ArrayList<>();
+        if (response.hasFailures()) {
+            for (BulkItemResponse item : response.getItems()) {
+                if (!item.isFailed()) {
+                    continue;
+                }
+
+                if (item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS && bulk.attempt < maxRetries) {
+                    rejected.add(item.getItemId());
+                    continue;
+                }
+
+                if (spillLog != null && (item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS ||
+                        item.getFailure().getStatus() == RestStatus.SERVICE_UNAVAILABLE)) {
+                    unavailable.add(item.getItemId());
+                    continue;
+                }
+
+                log.warn("Can not {} document with id: '{}' at index '{}': {}", item.getOpType(), item.getId(),
+                        item.getIndex(), item.getFailureMessage());
+                deadLetterQueue.send(withPayload(bulk.records.get(item.getItemId()),
+                        bulk.sources.get(item.getItemId())).withReason(item.getFailureMessage()));
+            }
+        }
+
+        if (!unavailable.isEmpty()) {
+            unavailableAtMs = System.currentTimeMillis();
+            spillChanges(bulk, unavailable);
+        }
 
-            allowed.set(fieldName, original.get(fieldName));
+        if (rejected.isEmpty()) {
+            release(bulk);
+        } else {
+            retry(bulk, rejected);
+        }
+    }
+
+    private static List<Integer> allItems(InFlightBulk bulk) {
+
+        List<Integer> items = new ArrayList<>(bulk.records.size());
+        for (int i = 0; i < bulk.records.size(); i++) {
+            items.add(i);
+        }
+
+        return items;
+    }
+
+    /**
+     * Spills the specified items of the bulk request. During replay items are not spilled, since they are still at
+     * the spill log, and replay is repeated later instead.
+     */
+    private void spillChanges(InFlightBulk bulk, List<Integer> items) {
+
+        if (replaying) {
+            replayFailed = true;
+            return;
+        }
+
+        for (int item : items) {
+            DeadLetterRecord record = bulk.records.get(item);
+            DocWriteRequest<?> request = bulk.request.requests().get(item);
+            ChangeSource source = (record.getChangelog() != null)
+                    ? new ChangeSource(record.getChangelog(), record.getPartition(), record.getOffset())
+                    : null;
+            spill(new SpilledChange(record.getTablePath(), record.getDocumentId(), record.getOperation(),
+                    request.index(), request.routing(), bulk.sources.get(item), source));
+        }
+    }
+
+    /**
+     * Returns whether changes are being spilled, so subsequent changes have to be spilled as well.
+     */
+    private boolean spilling() {
+        return spillLog != null && !spillLog.isEmpty();
+    }
+
+    private void unavailable(Exception e) {
+        unavailableAtMs = System.currentTimeMillis();
+        log.debug("ElasticSearch is unavailable", e);
+    }
+
+    /**
+     * Appends the change to the spill log or sends it to the dead-letter queue if the log is full.
+     */
+    private void spill(SpilledChange change) {
+
+        if (spillLog.isEmpty()) {
+            log.warn("ElasticSearch is unavailable. Spilling changes to the local log");
         }
 
-        return allowed;
+        try {
+            if (!spillLog.append(change)) {
+                JsonNode source = change.getSource();
+                deadLetterQueue.send(new DeadLetterRecord(change.getTablePath(), change.getDocumentId(),
+                        change.getOperation(), change.changeSource(), (source != null) ? source.toString() : null)
+                        .withReason("Spill log is full"));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
-    private Set<String> getAllowedFieldsForTable(String tablePath) {
+    /**
+     * Replays spilled changes in order, once the retry interval after the last failure passes. Changes of each read
+     * batch are coalesced, and the checkpoint is moved only after all of them are applied, so failed replay is
+     * repeated later. Replay of an index or delete change is idempotent.
+     */
+    private void replaySpilled() {
 
-        if (config.getTables() == null || config.getTables().isEmpty()) {
-            return Collections.emptySet();
+        if (spillLog == null) {
+            return;
         }
 
-        Optional<TableConfig> optionalTable = config.getTables().stream()
-                .filter(t -> tablePath.equals(t.getPath()))
-                .findAny();
+        // Spilled changes must be durable before offsets of their Change Data Records are committed
+        spillLog.sync();
+
+        SpillConfig spillConfig = config.getSpill();
+        if (spillLog.isEmpty() || System.currentTimeMillis() - unavailableAtMs < spillConfig.getRetryIntervalMs()) {
+            return;
+        }
+
+        log.info("Replaying {} bytes of spilled changes", spillLog.getBytes());
+        replaying = true;
+        replayFailed = false;
+        try {
+            while (!spillLog.isEmpty() && !replayFailed) {
+                SpillLog.Batch batch = spillLog.read(spillConfig.getReplayActions());
+                for (SpilledChange change : SpillLog.coalesce(batch.getChanges())) {
+                    replay(change);
+                }
+
+                flushPendingBulk();
+                if (!replayFailed) {
+                    spillLog.commit(batch);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            if (!isUnavailable(e)) {
+                throw e;
+            }
+
+            // Changes, added to the pending bulk before the failure, are still at the spill log
+            discardPendingBulk();
+            unavailable(e);
+            replayFailed = true;
+        } finally {
+            replaying = false;
+        }
+
+        if (replayFailed) {
+            unavailableAtMs = System.currentTimeMillis();
+            log.warn("ElasticSearch is still unavailable, {} bytes of spilled changes are left", spillLog.getBytes());
+        } else {
+            log.info("Spilled changes are replayed");
+        }
+    }
+
+    private void replay(SpilledChange change) {
 
-        if (!optionalTable.isPresent()) {
-            return Collections.emptySet();
+        String tablePath = change.getTablePath();
+        if (change.getOperation() == DeadLetterRecord.Operation.DELETE || change.isDeleteFirst()) {
+            delete(tablePath, change.getDocumentId(), change.changeSource());
+        }
+
+        if (change.getOperation() != DeadLetterRecord.Operation.DELETE) {
+            TableConfig table = config.tableConfig(tablePath).orElse(null);
+            IndexTarget target;
+            if (change.getIndex() != null) {
+                target = new IndexTarget(change.getIndex(), change.getRouting());
+                indexManager.ensureWriteTarget(table, tablePath, target);
+            } else {
+                target = indexManager.resolveWriteTarget(table, tablePath, change.getSource());
+            }
+
+            add(change.getOperation(), target, table, tablePath, change.getDocumentId(), change.getSource(),
+                    change.changeSource());
+        }
+    }
+
+    private void discardPendingBulk() {
+
+        if (pendingBuffer != null) {
+            pendingBuffer.release();
+            freeBuffers.push(pendingBuffer);
+        }
+
+        pendingBulk = null;
+        pendingBuffer = null;
+        pendingRecords.clear();
+        pendingSources.clear();
+        pendingDocuments.clear();
+        pendingTargets.clear();
+        pendingIndices.clear();
+        unresolvedDeletes.clear();
+    }
+
+    /**
+     * Resends the specified items after exponential backoff. Backoff blocks the calling thread, which slows down
+     * consumption of the changelogs as well.
+     */
+    private void retry(InFlightBulk bulk, List<Integer> items) {
+
+        long backoffMs = config.getBackpressure().getRetryBackoffMs() << bulk.attempt;
+        log.warn("{} bulk items are rejected by ElasticSearch, retrying in {} ms", items.size(), backoffMs);
+
+        BulkRequest request = new BulkRequest();
+        List<DeadLetterRecord> records = new ArrayList<>(items.size());
+        List<JsonNode> sources = new ArrayList<>(items.size());
+        Set<String> documents = new HashSet<>();
+        for (int item : items) {
+            DeadLetterRecord record = bulk.records.get(item);
+            request.add(bulk.request.requests().get(item));
+            records.add(record);
+            sources.add(bulk.sources.get(item));
+            documents.add(documentKey(record.getTablePath(), record.getDocumentId()));
+        }
+
+        // Retried request references sources of the original one, so the buffer is released after the retry
+        for (String document : bulk.documents) {
+            if (!documents.contains(document)) {
+                inFlightDocuments.remove(document);
+            }
+        }
+
+        InFlightBulk retried = new InFlightBulk(request, records, sources, documents, bulk.buffer,
+                bulk.attempt + 1);
+        try {
+            TimeUnit.MILLISECONDS.sleep(backoffMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            retried.failure = e;
+            inFlightBulks++;
+            completedBulks.add(retried);
+            return;
+        }
+
+        dispatch(retried);
+    }
+
+    private void release(InFlightBulk bulk) {
+
+        inFlightDocuments.removeAll(bulk.documents);
+
+        // Completed request no longer references encoded sources. Requests of deletes only have no buffer
+        if (bulk.buffer != null) {
+            bulk.buffer.release();
+            freeBuffers.push(bulk.buffer);
+        }
+    }
+
+    private static long elapsedMs(InFlightBulk bulk) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - bulk.startNanos);
+    }
+
+    private static boolean hasRejections(BulkResponse response) {
+
+        if (!response.hasFailures()) {
+            return false;
+        }
+
+        for (BulkItemResponse item : response.getItems()) {
+            if (item.isFailed() && item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isRejection(Exception e) {
+        return ExceptionsHelper.unwrapCause(e) instanceof EsRejectedExecutionException;
+    }
+
+    /**
+     * Whether the failure means that ElasticSearch is unreachable or overloaded, rather than that the change itself
+     * can not be indexed.
+     */
+    private static boolean isUnavailable(Exception e) {
+        Throwable cause = ExceptionsHelper.unwrapCause(e);
+        return cause instanceof EsRejectedExecutionException || cause instanceof NoNodeAvailableException ||
+                cause instanceof ConnectTransportException || cause instanceof ReceiveTimeoutTransportException ||
+                cause instanceof NodeClosedException || cause instanceof MasterNotDiscoveredException ||
+                cause instanceof ElasticsearchTimeoutException;
+    }
+
+    private static DeadLetterRecord withPayload(DeadLetterRecord record, JsonNode source) {
+
+        if (source != null) {
+            record.setPayload(source.toString());
+        }
+
+        return record;
+    }
+
+    private static ObjectMapper sourceMapper(BulkConfig.SourceFormat format) {
+        switch (format) {
+            case SMILE:
+                return smileMapper;
+            case CBOR:
+                return cborMapper;
+            default:
+                return jsonMapper;
+        }
+    }
+
+    private static XContentType sourceContentType(BulkConfig.SourceFormat format) {
+        switch (format) {
+            case SMILE:
+                return XContentType.SMILE;
+            case CBOR:
+                return XContentType.CBOR;
+            default:
+                return XContentType.JSON;
+        }
+    }
+
+    /**
+     * Disables periodic refresh and replicas of the index, remembering the settings to be restored.
+     */
+    private void enterCatchUp(String indexName, TableConfig table) {
+
+        if (!catchUpTargets.add(indexName)) {
+            return;
+        }
+
+        // Write target can be an alias, while settings belong to its concrete indices
+        GetSettingsResponse current;
+        try {
+            current = client.admin().indices().prepareGetSettings(indexName).get();
+        } catch (Exception e) {
+            log.warn("Can not get settings of ElasticSearch index '{}' for catch-up", indexName, e);
+            return;
+        }
+
+        Iterator<String> concreteIndices = current.getIndexToSettings().keysIt();
+        while (concreteIndices.hasNext()) {
+            String concreteIndex = concreteIndices.next();
+            if (!catchUpIndices.containsKey(concreteIndex)) {
+                enterCatchUp(concreteIndex, current, table);
+            }
+        }
+    }
+
+    private void enterCatchUp(String indexName, GetSettingsResponse current, TableConfig table) {
+
+        try {
+            String refreshInterval = current.getSetting(indexName, REFRESH_INTERVAL_SETTING);
+            String replicas = current.getSetting(indexName, NUMBER_OF_REPLICAS_SETTING);
+
+            // Settings can already be changed by the previous run, which stopped in catch-up mode
+            IndexConfig indexConfig = (table != null) ? table.getIndex() : null;
+            if (refreshInterval == null || "-1".equals(refreshInterval)) {
+                refreshInterval = (indexConfig != null && indexConfig.getRefreshInterval() != null)
+                        ? indexConfig.getRefreshInterval()
+                        : DEFAULT_REFRESH_INTERVAL;
+            }
+
+            if (replicas == null || "0".equals(replicas)) {
+                replicas = String.valueOf((indexConfig != null && indexConfig.getReplicas() != null)
+                        ? indexConfig.getReplicas()
+                        : DEFAULT_NUMBER_OF_REPLICAS);
+            }
+
+            client.admin().indices().prepareUpdateSettings(indexName)
+                    .setSettings(Settings.builder()
+                            .put(REFRESH_INTERVAL_SETTING, "-1")
+                            .put(NUMBER_OF_REPLICAS_SETTING, 0))
+                    .get();
+
+            catchUpIndices.put(indexName, Settings.builder()
+                    .put(REFRESH_INTERVAL_SETTING, refreshInterval)
+                    .put(NUMBER_OF_REPLICAS_SETTING, replicas)
+                    .build());
+
+            log.info("Refresh and replicas of ElasticSearch index '{}' are disabled for catch-up", indexName);
+        } catch (Exception e) {
+            log.warn("Can not change settings of ElasticSearch index '{}' for catch-up", indexName, e);
+        }
+    }
+
+    /**
+     * Restores settings of the indices, changed in catch-up mode, and refreshes them.
+     */
+    private void exitCatchUp() {
+
+        for (Map.Entry<String, Settings> index : catchUpIndices.entrySet()) {
+            try {
+                client.admin().indices().prepareUpdateSettings(index.getKey()).setSettings(index.getValue()).get();
+                client.admin().indices().prepareRefresh(index.getKey()).get();
+                log.info("Settings of ElasticSearch index '{}' are restored after catch-up", index.getKey());
+            } catch (Exception e) {
+                log.warn("Can not restore settings of ElasticSearch index '{}' after catch-up", index.getKey(), e);
+            }
         }
 
-        return optionalTable.get().getIndexedFields();
+        catchUpIndices.clear();
+        catchUpTargets.clear();
     }
 
 }
@@ -0,0 +1,60 @@
+package com.mapr.ojai.search.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends dead letters to the local file, one JSON record per line.
+ */
+public class FileDeadLetterQueue implements DeadLetterQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(FileDeadLetterQueue.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final String path;
+    private final BufferedWriter writer;
+
+    public FileDeadLetterQueue(String path) {
+
+        this.path = path;
+        try {
+            this.writer = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Can not open dead-letter file: '" + path + "'", e);
+        }
+    }
+
+    @Override
+    public synchronized void send(DeadLetterRecord record) {
+
+        try {
+            writer.write(mapper.writeValueAsString(record));
+            writer.newLine();
+            writer.flush();
+        } catch (JsonProcessingException e) {
+            log.error("Can not serialize dead letter: {}", record, e);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not write dead letter to the file: '" + path + "'", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Can not close dead-letter file: '{}'", path, e);
+        }
+    }
+
+}
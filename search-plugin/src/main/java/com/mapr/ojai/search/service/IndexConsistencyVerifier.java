@@ -0,0 +1,448 @@
+package com.mapr.ojai.search.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mapr.ojai.search.config.SearchServiceConfig;
+import com.mapr.ojai.search.util.DocumentIds;
+import com.mapr.ojai.search.util.OjaiValues;
+import com.mapr.ojai.search.util.OjaiSearchServiceUtils;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.SortOrder;
+import org.ojai.Document;
+import org.ojai.DocumentStream;
+import org.ojai.store.Connection;
+import org.ojai.store.DriverManager;
+import org.ojai.store.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Verifies that the table's index matches MapR-DB JSON Table and optionally repairs the differences. Documents are
+ * split into hash buckets by their ids. The first pass scans the table and the index in parallel and compares
+ * per-bucket digests of document ids and hashes of the indexed-field projection. The second pass rescans only the
+ * mismatched buckets, finds missing, extra and outdated documents and, in repair mode, reindexes or deletes them via
+ * bulk requests. Repaired buckets are recorded in the checkpoint file, so an interrupted run resumes where it stopped.
+ * <p>
+ * Documents, which are changed while the verifier is running, may be reported as mismatched. Repair indexes the
+ * current state of the documents, so it is safe to run along with Search Service.
+ * <p>
+ * Usage: {@code IndexConsistencyVerifier <config.yml> <table path> [--repair] [--buckets=N] [--checkpoint=file]}
+ */
+public final class IndexConsistencyVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexConsistencyVerifier.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Serializes projections with sorted keys, so the hash does not depend on the order of the fields.
+     */
+    private static final ObjectWriter canonicalWriter = mapper.writer()
+            .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+    private static final int DEFAULT_BUCKETS = 1024;
+    private static final int SCROLL_SIZE = 1000;
+    private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(5);
+
+    /**
+     * Number of mismatched buckets, which documents are kept in memory and repaired at once.
+     */
+    private static final int BUCKETS_PER_PASS = 64;
+
+    /**
+     * Number of mismatched document ids, which are logged per pass.
+     */
+    private static final int LOGGED_IDS_LIMIT = 20;
+
+    private final SearchServiceConfig config;
+    private final String tablePath;
+    private final int buckets;
+    private final Path checkpointPath;
+
+    private final ElasticSearchIndexService indexService;
+    private final TransportClient client;
+    private final ExecutorService scanExecutor = Executors.newFixedThreadPool(2);
+
+    /**
+     * Receives the scanned documents.
+     */
+    private interface DocumentVisitor {
+        void visit(String documentId, JsonNode projection);
+    }
+
+    /**
+     * Order-independent digests of the buckets: number of documents and sum of document hashes.
+     */
+    private static final class BucketDigests {
+
+        private final long[] counts;
+        private final long[] sums;
+
+        private BucketDigests(int buckets) {
+            this.counts = new long[buckets];
+            this.sums = new long[buckets];
+        }
+
+        private void add(int bucket, long documentHash) {
+            counts[bucket]++;
+            sums[bucket] += documentHash;
+        }
+
+        private boolean matches(BucketDigests other, int bucket) {
+            return counts[bucket] == other.counts[bucket] && sums[bucket] == other.sums[bucket];
+        }
+    }
+
+    private IndexConsistencyVerifier(SearchServiceConfig config, String tablePath, int buckets, Path checkpointPath) {
+        this.config = config;
+        this.tablePath = tablePath;
+        this.buckets = buckets;
+        this.checkpointPath = checkpointPath;
+        this.indexService = new ElasticSearchIndexService(config);
+        this.client = indexService.getClient();
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: IndexConsistencyVerifier <config.yml> <table path> " +
+                    "[--repair] [--buckets=N] [--checkpoint=file]");
+        }
+
+        SearchServiceConfig config = SearchServiceConfig.fromFile(args[0]);
+        String tablePath = args[1];
+        boolean repair = false;
+        int buckets = DEFAULT_BUCKETS;
+        Path checkpointPath = Paths.get(OjaiSearchServiceUtils.tablePathToIndexName(tablePath) + ".verify.json");
+        for (int i = 2; i < args.length; i++) {
+            if ("--repair".equals(args[i])) {
+                repair = true;
+            } else if (args[i].startsWith("--buckets=")) {
+                buckets = Integer.parseInt(args[i].substring("--buckets=".length()));
+            } else if (args[i].startsWith("--checkpoint=")) {
+                checkpointPath = Paths.get(args[i].substring("--checkpoint=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown option '" + args[i] + "'");
+            }
+        }
+
+        if (!config.tableConfig(tablePath).isPresent()) {
+            throw new IllegalArgumentException("Config does not contain table '" + tablePath + "'");
+        }
+
+        if (config.getBackend() != SearchServiceConfig.Backend.ELASTIC) {
+            throw new IllegalStateException("Only Elasticsearch indices can be verified");
+        }
+
+        if (buckets <= 0) {
+            throw new IllegalArgumentException("Number of buckets must be positive");
+        }
+
+        IndexConsistencyVerifier verifier = new IndexConsistencyVerifier(config, tablePath, buckets, checkpointPath);
+        try {
+            verifier.verify(repair);
+        } finally {
+            verifier.close();
+        }
+    }
+
+    private void verify(boolean repair) throws IOException {
+
+        Set<Integer> repaired = new TreeSet<>();
+        // Checkpoint tracks repair progress, verification alone always starts over
+        List<Integer> mismatched = repair ? readCheckpoint(repaired) : null;
+        if (mismatched == null) {
+            mismatched = compareDigests();
+            if (repair) {
+                writeCheckpoint(mismatched, repaired);
+            }
+        } else {
+            log.info("Resuming from checkpoint '{}': {} mismatched buckets, {} repaired", checkpointPath,
+                    mismatched.size(), repaired.size());
+        }
+
+        List<Integer> remaining = new ArrayList<>();
+        for (Integer bucket : mismatched) {
+            if (!repaired.contains(bucket)) {
+                remaining.add(bucket);
+            }
+        }
+
+        long differences = 0;
+        for (int from = 0; from < remaining.size(); from += BUCKETS_PER_PASS) {
+
+            Set<Integer> group = new HashSet<>(remaining.subList(from,
+                    Math.min(from + BUCKETS_PER_PASS, remaining.size())));
+            differences += compareDocuments(group, repair);
+
+            if (repair) {
+                repaired.addAll(group);
+                writeCheckpoint(mismatched, repaired);
+            }
+        }
+
+        if (repair) {
+            log.info("Index of table '{}' is repaired, {} documents reindexed or deleted", tablePath, differences);
+            Files.deleteIfExists(checkpointPath);
+        } else {
+            log.info("Index of table '{}' has {} mismatched buckets and {} mismatched documents", tablePath,
+                    mismatched.size(), differences);
+        }
+    }
+
+    /**
+     * First pass: scans the table and the index in parallel and returns buckets, which digests differ.
+     */
+    private List<Integer> compareDigests() {
+
+        BucketDigests tableDigests = new BucketDigests(buckets);
+        BucketDigests indexDigests = new BucketDigests(buckets);
+        scanInParallel(
+                (documentId, projection) -> tableDigests.add(bucket(documentId), documentHash(documentId, projection)),
+                (documentId, projection) -> indexDigests.add(bucket(documentId), documentHash(documentId, projection)));
+
+        List<Integer> mismatched = new ArrayList<>();
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            if (!tableDigests.matches(indexDigests, bucket)) {
+                mismatched.add(bucket);
+            }
+        }
+
+        log.info("{} of {} buckets of table '{}' do not match the index", mismatched.size(), buckets, tablePath);
+        return mismatched;
+    }
+
+    /**
+     * Second pass: compares documents of the specified buckets and repairs the differences if requested.
+     *
+     * @return number of missing, extra and outdated documents.
+     */
+    private long compareDocuments(Set<Integer> group, boolean repair) {
+
+        Map<String, JsonNode> tableDocuments = new HashMap<>();
+        Map<String, Long> indexHashes = new HashMap<>();
+        scanInParallel(
+                (documentId, projection) -> {
+                    if (group.contains(bucket(documentId))) {
+                        tableDocuments.put(documentId, projection);
+                    }
+                },
+                (documentId, projection) -> {
+                    if (group.contains(bucket(documentId))) {
+                        indexHashes.put(documentId, documentHash(documentId, projection));
+                    }
+                });
+
+        List<String> outdated = new ArrayList<>();
+        for (Map.Entry<String, JsonNode> document : tableDocuments.entrySet()) {
+            Long indexHash = indexHashes.remove(document.getKey());
+            if (indexHash == null || indexHash != documentHash(document.getKey(), document.getValue())) {
+                outdated.add(document.getKey());
+            }
+        }
+
+        // Remaining index documents do not exist in the table
+        Set<String> extra = indexHashes.keySet();
+        log.info("Buckets {}: {} missing or outdated documents, {} extra documents. Samples: {}, {}", group,
+                outdated.size(), extra.size(), sample(outdated), sample(extra));
+
+        if (repair) {
+            for (String documentId : outdated) {
+                indexService.saveIndexForTable(tablePath, documentId, tableDocuments.get(documentId), null);
+            }
+
+            for (String documentId : extra) {
+                indexService.deleteIndexForTable(tablePath, documentId, null);
+            }
+
+            indexService.flush(0L);
+        }
+
+        return outdated.size() + extra.size();
+    }
+
+    private void scanInParallel(DocumentVisitor tableVisitor, DocumentVisitor indexVisitor) {
+
+        Future<?> tableScan = scanExecutor.submit(() -> scanTable(tableVisitor));
+        Future<?> indexScan = scanExecutor.submit(() -> scanIndex(indexVisitor));
+        try {
+            tableScan.get();
+            indexScan.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Verification of table '" + tablePath + "' is interrupted", e);
+        } catch (ExecutionException e) {
+            tableScan.cancel(true);
+            indexScan.cancel(true);
+            throw new IllegalStateException("Can not scan table '" + tablePath + "' or its index", e.getCause());
+        }
+    }
+
+    private void scanTable(DocumentVisitor visitor) {
+
+        Set<String> indexedFields = config.indexedFieldsForTable(tablePath);
+        try (Connection connection = DriverManager.getConnection("ojai:mapr:")) {
+
+            Query query = connection.newQuery();
+            if (!indexedFields.isEmpty()) {
+                query.select(indexedFields.toArray(new String[0]));
+            }
+
+            try (DocumentStream documents = connection.getStore(tablePath).find(query.build())) {
+                for (Document document : documents) {
+                    JsonNode projection = projection(indexedFields, OjaiValues.toJsonNode(document));
+
+                    // Indexer skips documents without indexed fields as well
+                    if (projection.size() > 0) {
+                        visitor.visit(DocumentIds.encode(document.getId()), projection);
+                    }
+                }
+            }
+        }
+    }
+
+    private void scanIndex(DocumentVisitor visitor) {
+
+        Set<String> indexedFields = config.indexedFieldsForTable(tablePath);
+        SearchResponse response = client.prepareSearch(OjaiSearchServiceUtils.tablePathToIndexName(tablePath))
+                .setTypes(tablePath)
+                .setIndicesOptions(IndicesOptions.lenientExpandOpen())
+                .setScroll(SCROLL_KEEP_ALIVE)
+                .addSort("_doc", SortOrder.ASC)
+                .setSize(SCROLL_SIZE)
+                .get();
+
+        try {
+            while (response.getHits().getHits().length > 0) {
+                for (SearchHit hit : response.getHits().getHits()) {
+                    String source = hit.getSourceAsString();
+                    JsonNode document = (source != null) ? mapper.readTree(source) : mapper.createObjectNode();
+                    visitor.visit(hit.getId(), projection(indexedFields, document));
+                }
+
+                response = client.prepareSearchScroll(response.getScrollId()).setScroll(SCROLL_KEEP_ALIVE).get();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (response.getScrollId() != null) {
+                client.prepareClearScroll().addScrollId(response.getScrollId()).get();
+            }
+        }
+    }
+
+    /**
+     * Applies the same projection as the indexer. Document id is not a part of the hashed content.
+     */
+    private static JsonNode projection(Set<String> indexedFields, JsonNode document) {
+
+        JsonNode allowed = OjaiSearchServiceUtils.copyOnlyAllowedFields(indexedFields, document);
+        ObjectNode projection = (allowed != null) ? (ObjectNode) allowed : mapper.createObjectNode();
+        projection.remove("_id");
+
+        return projection;
+    }
+
+    private int bucket(String documentId) {
+        return (int) Math.floorMod(murmur(documentId.getBytes(StandardCharsets.UTF_8)), (long) buckets);
+    }
+
+    private static long documentHash(String documentId, JsonNode projection) {
+
+        byte[] content;
+        try {
+            content = canonicalWriter.writeValueAsBytes(mapper.treeToValue(projection, Object.class));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return 31 * murmur(documentId.getBytes(StandardCharsets.UTF_8)) + murmur(content);
+    }
+
+    private static long murmur(byte[] bytes) {
+        return MurmurHash3.hash128(bytes, 0, bytes.length, 0, new MurmurHash3.Hash128()).h1;
+    }
+
+    private static List<String> sample(Set<String> documentIds) {
+        return sample(new ArrayList<>(documentIds));
+    }
+
+    private static List<String> sample(List<String> documentIds) {
+        return documentIds.subList(0, Math.min(LOGGED_IDS_LIMIT, documentIds.size()));
+    }
+
+    /**
+     * Reads mismatched buckets from the checkpoint file and adds already repaired buckets to the specified set.
+     *
+     * @return mismatched buckets or {@code null} if there is no checkpoint for this table and number of buckets.
+     */
+    private List<Integer> readCheckpoint(Set<Integer> repaired) throws IOException {
+
+        if (!Files.exists(checkpointPath)) {
+            return null;
+        }
+
+        JsonNode checkpoint = mapper.readTree(checkpointPath.toFile());
+        if (!tablePath.equals(checkpoint.path("tablePath").asText()) || checkpoint.path("buckets").asInt() != buckets) {
+            log.warn("Checkpoint '{}' is created for another table or number of buckets and is ignored",
+                    checkpointPath);
+            return null;
+        }
+
+        List<Integer> mismatched = new ArrayList<>();
+        checkpoint.path("mismatched").forEach(bucket -> mismatched.add(bucket.asInt()));
+        checkpoint.path("repaired").forEach(bucket -> repaired.add(bucket.asInt()));
+
+        return mismatched;
+    }
+
+    private void writeCheckpoint(List<Integer> mismatched, Set<Integer> repaired) throws IOException {
+
+        ObjectNode checkpoint = mapper.createObjectNode();
+        checkpoint.put("tablePath", tablePath);
+        checkpoint.put("buckets", buckets);
+        ArrayNode mismatchedNode = checkpoint.putArray("mismatched");
+        mismatched.forEach(mismatchedNode::add);
+        ArrayNode repairedNode = checkpoint.putArray("repaired");
+        repaired.forEach(repairedNode::add);
+
+        // Checkpoint is replaced atomically, so it is never left half-written
+        Path temp = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+        mapper.writeValue(temp.toFile(), checkpoint);
+        Files.move(temp, checkpointPath, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void close() {
+        scanExecutor.shutdownNow();
+        indexService.close();
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.mapr.ojai.search.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mapr.ojai.search.config.SearchServiceConfig;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * Index backend, which stores searchable representation of MapR-DB JSON documents.
+ */
+public interface IndexService extends Closeable {
+
+    /**
+     * Should be called on document insert. Indexed document is replaced with the changes.
+     *
+     * @param tablePath
+     * @param documentId index document id, see {@link com.mapr.ojai.search.util.DocumentIds}.
+     * @param changes    changed fields, which must not be retained after the call, since the caller may reuse them.
+     * @param source     changelog position of the change, can be {@code null} if change does not come from the
+     *                   changelog.
+     */
+    void saveIndexForTable(String tablePath, String documentId, JsonNode changes, ChangeSource source);
+
+    /**
+     * Should be called on document update. Changes are merged into the indexed document, backends, which can not
+     * merge, replace it.
+     *
+     * @param tablePath
+     * @param documentId index document id, see {@link com.mapr.ojai.search.util.DocumentIds}.
+     * @param changes    changed fields keyed by field paths, along with the fields, which determine the index of the
+     *                   document. Must not be retained after the call, since the caller may reuse them.
+     * @param source     changelog position of the change, can be {@code null} if change does not come from the
+     *                   changelog.
+     */
+    default void updateIndexForTable(String tablePath, String documentId, JsonNode changes, ChangeSource source) {
+        saveIndexForTable(tablePath, documentId, changes, source);
+    }
+
+    /**
+     * Should be called on document delete.
+     *
+     * @param tablePath
+     * @param documentId
+     * @param source     changelog position of the change, can be {@code null} if change does not come from the
+     *                   changelog.
+     */
+    void deleteIndexForTable(String tablePath, String documentId, ChangeSource source);
+
+    /**
+     * Sends pending changes to the index. Called after each batch of consumed Change Data Records.
+     *
+     * @param consumerLagMs age of the latest consumed Change Data Record, zero if consumer is up to date.
+     */
+    default void flush(long consumerLagMs) {
+    }
+
+    /**
+     * Makes flushed changes visible to search and publishes watermarks of the changelog partitions. Called after
+     * flush in consistent-read mode, which config validation allows only for backends, which implement this method.
+     *
+     * @param partitionWatermarks watermarks of the assigned partitions, all the changes up to which are flushed.
+     */
+    default void publishWatermarks(List<PartitionWatermark> partitionWatermarks) {
+    }
+
+    /**
+     * Returns the current limit of concurrent requests to the index backend.
+     */
+    default int getConcurrencyLimit() {
+        return 1;
+    }
+
+    /**
+     * Returns whether the index backend is overloaded even at the minimum concurrency, so consumption of the
+     * changelogs should be paused.
+     */
+    default boolean isOverloaded() {
+        return false;
+    }
+
+    /**
+     * Returns the size of the changes, which are spilled locally while the index backend is unavailable.
+     */
+    default long getSpilledBytes() {
+        return 0L;
+    }
+
+    /**
+     * Applies reloaded config. Called by the consumer thread between batches, after pending changes are flushed.
+     *
+     * @param config reloaded config, which differs from the current one by hot-reloadable settings only.
+     */
+    void reconfigure(SearchServiceConfig config);
+
+    /**
+     * Flushes pending changes and releases resources, owned by this index service.
+     */
+    @Override
+    default void close() {
+        flush(0L);
+    }
+
+    /**
+     * Releases resources without flushing pending changes, which are consumed again after restart. Called if flush did
+     * not complete in time, so another thread may still be inside this index service.
+     */
+    default void abort() {
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.mapr.ojai.search.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput metrics of the Search Service instance. Metrics are updated by the consumer thread and read via JMX
+ * under {@value #OBJECT_NAME} name.
+ */
+public class IndexingMetrics implements IndexingMetricsMXBean {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexingMetrics.class);
+
+    public static final String OBJECT_NAME = "com.mapr.ojai.search:type=IndexingMetrics";
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final String groupId;
+
+    private volatile long recordsProcessed;
+    private volatile long updatesSkipped;
+    private volatile long spilledBytes;
+    private volatile long batchesProcessed;
+    private volatile long consumerLagMs;
+    private volatile int assignedPartitions;
+    private volatile long rebalances;
+    private volatile double recordsPerSecond;
+    private volatile int concurrencyLimit;
+    private volatile int pausedPartitions;
+
+    private long windowStartNanos = System.nanoTime();
+    private long windowRecords;
+
+    public IndexingMetrics(String groupId) {
+        this.groupId = groupId;
+    }
+
+    /**
+     * Registers metrics at the platform MBean server. Registration failure does not affect indexing.
+     */
+    public void register() {
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (Exception e) {
+            log.warn("Can not register indexing metrics MBean", e);
+        }
+    }
+
+    public void batchProcessed(int records, long consumerLagMs) {
+
+        this.recordsProcessed += records;
+        this.batchesProcessed++;
+        this.consumerLagMs = consumerLagMs;
+
+        windowRecords += records;
+        long elapsedNanos = System.nanoTime() - windowStartNanos;
+        if (elapsedNanos >= WINDOW_NANOS) {
+            recordsPerSecond = windowRecords * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+            log.info("Processed {} records/s, {} partitions assigned, consumer lag is {} ms, concurrency limit is {}",
+                    String.format("%.1f", recordsPerSecond), assignedPartitions, consumerLagMs, concurrencyLimit);
+
+            windowStartNanos = System.nanoTime();
+            windowRecords = 0;
+        }
+    }
+
+    public void updatesSkipped(long updatesSkipped) {
+        this.updatesSkipped = updatesSkipped;
+    }
+
+    public void spilled(long spilledBytes) {
+        this.spilledBytes = spilledBytes;
+    }
+
+    public void backpressure(int concurrencyLimit, int pausedPartitions) {
+        this.concurrencyLimit = concurrencyLimit;
+        this.pausedPartitions = pausedPartitions;
+    }
+
+    public void rebalanced(int assignedPartitions) {
+        this.assignedPartitions = assignedPartitions;
+        this.rebalances++;
+    }
+
+    @Override
+    public String getGroupId() {
+        return groupId;
+    }
+
+    @Override
+    public long getRecordsProcessed() {
+        return recordsProcessed;
+    }
+
+    @Override
+    public long getUpdatesSkipped() {
+        return updatesSkipped;
+    }
+
+    @Override
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    @Override
+    public double getRecordsPerSecond() {
+        return recordsPerSecond;
+    }
+
+    @Override
+    public long getBatchesProcessed() {
+        return batchesProcessed;
+    }
+
+    @Override
+    public long getConsumerLagMs() {
+        return consumerLagMs;
+    }
+
+    @Override
+    public int getAssignedPartitions() {
+        return assignedPartitions;
+    }
+
+    @Override
+    public long getRebalances() {
+        return rebalances;
+    }
+
+    @Override
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    @Override
+    public int getPausedPartitions() {
+        return pausedPartitions;
+    }
+
+}
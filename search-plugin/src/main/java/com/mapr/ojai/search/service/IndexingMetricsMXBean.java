@@ -0,0 +1,52 @@
+package com.mapr.ojai.search.service;
+
+/**
+ * Throughput metrics of the Search Service instance, exposed via JMX. Comparing them across instances of the same
+ * consumer group shows how evenly the load is spread.
+ */
+public interface IndexingMetricsMXBean {
+
+    String getGroupId();
+
+    /**
+     * Total number of Change Data Records, handled by this instance.
+     */
+    long getRecordsProcessed();
+
+    /**
+     * Total number of updates, which changed none of the indexed fields and were skipped without index writes.
+     */
+    long getUpdatesSkipped();
+
+    /**
+     * Size of the changes, which are spilled to the local log while ElasticSearch is unavailable and not replayed yet.
+     */
+    long getSpilledBytes();
+
+    /**
+     * Number of Change Data Records per second, handled during the last completed measurement window.
+     */
+    double getRecordsPerSecond();
+
+    long getBatchesProcessed();
+
+    /**
+     * Age of the latest Change Data Record of the last batch, zero if the batch was empty.
+     */
+    long getConsumerLagMs();
+
+    int getAssignedPartitions();
+
+    long getRebalances();
+
+    /**
+     * Current adaptive limit of concurrent bulk requests to ElasticSearch.
+     */
+    int getConcurrencyLimit();
+
+    /**
+     * Number of changelog partitions, paused since ElasticSearch is overloaded.
+     */
+    int getPausedPartitions();
+
+}
@@ -0,0 +1,79 @@
+package com.mapr.ojai.search.service;
+
+import com.mapr.ojai.search.config.SearchServiceConfig;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Tracks timestamps of the processed Change Data Records per changelog partition and derives partition watermarks:
+ * timestamps, all the changes of the partition up to which are indexed. Changes within partition are processed in
+ * order, so watermark of the lagging partition is the latest processed timestamp. Partition, which is caught up at
+ * poll time, has no unprocessed changes written before the poll, so its watermark is the poll time, even if the table
+ * is quiet. Watermark of the table is the minimum over all its partitions, which may be assigned to other instances,
+ * so it is computed by Search Client.
+ */
+public class IndexingWatermarks {
+
+    private SearchServiceConfig config;
+    private final Map<TopicPartition, Long> partitionTimestamps = new HashMap<>();
+
+    public IndexingWatermarks(SearchServiceConfig config) {
+        this.config = config;
+    }
+
+    public void reconfigure(SearchServiceConfig config) {
+        this.config = config;
+    }
+
+    public void processed(String changelog, int partition, long opTimestamp) {
+        partitionTimestamps.merge(new TopicPartition(changelog, partition), opTimestamp, Math::max);
+    }
+
+    /**
+     * Forgets partitions, which are no longer assigned to this consumer.
+     */
+    public void retain(Set<TopicPartition> assignment) {
+        partitionTimestamps.keySet().retainAll(assignment);
+    }
+
+    /**
+     * Computes watermarks of the assigned partitions. Lagging partition without processed changes has no watermark
+     * yet.
+     *
+     * @param assignment      partitions, assigned to this consumer.
+     * @param caughtUp        partitions, which have no unprocessed Change Data Records.
+     * @param polledAt        time of the poll, after which caught-up partitions are determined.
+     * @param partitionCounts number of partitions by changelogs of the assigned partitions.
+     * @return watermarks of the partitions of the configured tables.
+     */
+    public List<PartitionWatermark> partitionWatermarks(Set<TopicPartition> assignment, Set<TopicPartition> caughtUp,
+                                                        long polledAt, Map<String, Integer> partitionCounts) {
+
+        List<PartitionWatermark> watermarks = new ArrayList<>();
+        for (TopicPartition partition : assignment) {
+
+            Optional<String> tablePath = config.tablePathForChangelog(partition.topic());
+            Integer partitions = partitionCounts.get(partition.topic());
+            if (!tablePath.isPresent() || partitions == null) {
+                continue;
+            }
+
+            Long processed = partitionTimestamps.get(partition);
+            if (caughtUp.contains(partition)) {
+                long timestamp = (processed != null) ? Math.max(processed, polledAt) : polledAt;
+                watermarks.add(new PartitionWatermark(tablePath.get(), partition.partition(), partitions, timestamp));
+            } else if (processed != null) {
+                watermarks.add(new PartitionWatermark(tablePath.get(), partition.partition(), partitions, processed));
+            }
+        }
+
+        return watermarks;
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.mapr.ojai.search.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mapr.ojai.search.config.SearchServiceConfig;
+import com.mapr.ojai.search.lucene.LuceneDocuments;
+import com.mapr.ojai.search.lucene.LuceneIndexes;
+import com.mapr.ojai.search.util.OjaiSearchServiceUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Maintains embedded Lucene indices, which are fed by the same Change Data Records as ElasticSearch indices.
+ */
+public class LuceneIndexService implements IndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(LuceneIndexService.class);
+
+    private volatile SearchServiceConfig config;
+    private final LuceneIndexes indexes;
+
+    public LuceneIndexService(SearchServiceConfig config) {
+
+        if (config.getLucene() == null) {
+            throw new IllegalStateException("Lucene backend is selected, but 'lucene' config section is missing");
+        }
+
+        this.config = config;
+        this.indexes = LuceneIndexes.openForWriting(config.getLucene());
+    }
+
+    @Override
+    public void saveIndexForTable(String tablePath, String documentId, JsonNode changes, ChangeSource source) {
+
+        Set<String> allowedFields = config.indexedFieldsForTable(tablePath);
+        JsonNode allowed = OjaiSearchServiceUtils.copyOnlyAllowedFields(allowedFields, changes);
+
+        if (allowed == null) {
+            log.info("Document with id: '{}' was changed, but none of the fields are allowed to be indexed",
+                    documentId);
+            return;
+        }
+
+        String indexName = OjaiSearchServiceUtils.tablePathToIndexName(tablePath);
+        indexes.update(indexName, documentId, LuceneDocuments.toDocument(documentId, allowed));
+    }
+
+    @Override
+    public void deleteIndexForTable(String tablePath, String documentId, ChangeSource source) {
+
+        String indexName = OjaiSearchServiceUtils.tablePathToIndexName(tablePath);
+        indexes.delete(indexName, documentId);
+    }
+
+    /**
+     * Commits the indices, so flushed changes are durable before the consumer commits their offsets.
+     */
+    @Override
+    public void flush(long consumerLagMs) {
+        try {
+            indexes.commit();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not commit Lucene indices", e);
+        }
+    }
+
+    @Override
+    public void reconfigure(SearchServiceConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Commits and closes the indices. Indices are shared within JVM, so they are closed by the last index service.
+     */
+    @Override
+    public void close() {
+        try {
+            indexes.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not close Lucene indices", e);
+        }
+    }
+
+    public LuceneIndexes getIndexes() {
+        return indexes;
+    }
+
+}
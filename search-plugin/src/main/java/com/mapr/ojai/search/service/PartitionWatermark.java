@@ -0,0 +1,42 @@
+package com.mapr.ojai.search.service;
+
+/**
+ * Watermark of the table's changelog partition: timestamp, all the changes of the partition up to which are indexed.
+ * Carries the number of the changelog's partitions, so Search Client knows which partitions the table's watermark is
+ * the minimum over, regardless of how partitions are assigned to Search Service instances.
+ */
+public class PartitionWatermark {
+
+    private final String tablePath;
+    private final int partition;
+    private final int partitions;
+    private final long timestamp;
+
+    public PartitionWatermark(String tablePath, int partition, int partitions, long timestamp) {
+        this.tablePath = tablePath;
+        this.partition = partition;
+        this.partitions = partitions;
+        this.timestamp = timestamp;
+    }
+
+    public String getTablePath() {
+        return tablePath;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return tablePath + "[" + partition + "/" + partitions + "]@" + timestamp;
+    }
+}
@@ -0,0 +1,111 @@
+package com.mapr.ojai.search.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Encodes document sources of the pending bulk request into shared slabs, so sources are neither built as strings
+ * nor copied into exactly-sized arrays. Slabs are referenced by the bulk request until it is executed, then
+ * {@link #release()} returns them to the pool. Not thread-safe.
+ */
+class PooledSourceBuffer extends OutputStream {
+
+    private static final int SLAB_SIZE = 1 << 20;
+    private static final int MAX_POOLED_SLABS = 8;
+
+    private final Deque<byte[]> freeSlabs = new ArrayDeque<>();
+    private final List<byte[]> usedSlabs = new ArrayList<>();
+
+    private byte[] slab;
+    private int start;
+    private int position;
+
+    /**
+     * Encodes the document with the specified mapper.
+     *
+     * @return encoded bytes, which are valid until the buffer is released.
+     */
+    BytesReference encode(ObjectMapper mapper, JsonNode document) throws IOException {
+
+        start = position;
+        mapper.writeValue(this, document);
+
+        return new BytesArray(slab, start, position - start);
+    }
+
+    /**
+     * Returns slabs to the pool. Must be called only after the bulk request, which references encoded sources, is
+     * executed.
+     */
+    void release() {
+
+        for (byte[] used : usedSlabs) {
+            if (used.length == SLAB_SIZE && freeSlabs.size() < MAX_POOLED_SLABS) {
+                freeSlabs.push(used);
+            }
+        }
+
+        usedSlabs.clear();
+        slab = null;
+        start = 0;
+        position = 0;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        slab[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, slab, position, length);
+        position += length;
+    }
+
+    @Override
+    public void close() {
+        // Mapper closes the target after writing, slabs stay in use until release
+    }
+
+    /**
+     * Moves partially written source to the next slab if the current one has no room, so each source is contiguous.
+     */
+    private void ensureCapacity(int length) {
+
+        if (slab != null && position + length <= slab.length) {
+            return;
+        }
+
+        int written = position - start;
+        byte[] next = takeSlab(written + length);
+        if (written > 0) {
+            System.arraycopy(slab, start, next, 0, written);
+        }
+
+        slab = next;
+        start = 0;
+        position = written;
+    }
+
+    private byte[] takeSlab(int required) {
+
+        byte[] next = (required <= SLAB_SIZE && !freeSlabs.isEmpty())
+                ? freeSlabs.pop()
+                : new byte[Math.max(SLAB_SIZE, required * 2)];
+        usedSlabs.add(next);
+
+        return next;
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.mapr.ojai.search.service;
+
+import com.mapr.ojai.search.config.SearchServiceConfig;
+import com.mapr.ojai.search.config.TableConfig;
+import com.mapr.ojai.search.util.OjaiSearchServiceUtils;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesResponse;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.ReindexAction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Reindexes aliased table to the new index, created with the current table's index config, and atomically swaps the
+ * alias, so the number of shards or mapping can be changed without search downtime. Changes, which are indexed while
+ * reindex is running, are written to the old index, so Search Service must be stopped during reindex. Table, which
+ * is still indexed to the concrete index named after the table, is refused, since its index would have to be deleted
+ * to free the name for the alias.
+ * <p>
+ * Usage: {@code ReindexTool <config.yml> <table path> [--delete-old]}
+ */
+public final class ReindexTool {
+
+    private static final Logger log = LoggerFactory.getLogger(ReindexTool.class);
+
+    private ReindexTool() {
+    }
+
+    public static void main(String[] args) {
+
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: ReindexTool <config.yml> <table path> [--delete-old]");
+        }
+
+        SearchServiceConfig config = SearchServiceConfig.fromFile(args[0]);
+        String tablePath = args[1];
+        boolean deleteOld = args.length > 2 && "--delete-old".equals(args[2]);
+
+        TableConfig table = config.tableConfig(tablePath)
+                .orElseThrow(() -> new IllegalArgumentException("Config does not contain table '" + tablePath + "'"));
+
+        if (table.getIndex() == null || !table.getIndex().isAliased() || table.getIndex().getTimeBucket() != null) {
+            throw new IllegalStateException("Only aliased tables, which are not time-bucketed, can be reindexed");
+        }
+
+        ElasticSearchIndexService indexService = new ElasticSearchIndexService(config);
+        TransportClient client = indexService.getClient();
+        try {
+            reindex(client, indexService.getIndexManager(), table, tablePath, deleteOld);
+        } finally {
+            client.close();
+        }
+    }
+
+    private static void reindex(TransportClient client, ElasticSearchIndexManager indexManager, TableConfig table,
+                                String tablePath, boolean deleteOld) {
+
+        String aliasName = OjaiSearchServiceUtils.tablePathToIndexName(tablePath);
+        List<String> oldIndices = aliasedIndices(client, aliasName);
+
+        // Name of the concrete index can be taken by the alias only by deleting the index, which is never done here
+        if (oldIndices.isEmpty() && client.admin().indices().prepareExists(aliasName).get().isExists()) {
+            throw new IllegalStateException("'" + aliasName + "' is a concrete index, not an alias. Move it behind " +
+                    "the alias first: reindex it to a new index, verify the copy, delete '" + aliasName + "' and add " +
+                    "alias '" + aliasName + "' to the new index");
+        }
+
+        String destination = indexManager.createReindexDestination(table, tablePath);
+        log.info("Reindexing '{}' to '{}'", aliasName, destination);
+
+        BulkByScrollResponse response = ReindexAction.INSTANCE.newRequestBuilder(client)
+                .source(aliasName)
+                .destination(destination)
+                .get();
+
+        if (!response.getBulkFailures().isEmpty() || !response.getSearchFailures().isEmpty()) {
+            throw new IllegalStateException("Reindex of '" + aliasName + "' to '" + destination + "' failed. " +
+                    "Alias is not swapped. Response: " + response);
+        }
+
+        log.info("Reindexed {} documents in {}", response.getCreated() + response.getUpdated(), response.getTook());
+
+        IndicesAliasesRequestBuilder aliasesRequest = client.admin().indices().prepareAliases()
+                .addAliasAction(AliasActions.add().index(destination).alias(aliasName));
+        for (String oldIndex : oldIndices) {
+            aliasesRequest.addAliasAction(AliasActions.remove().index(oldIndex).alias(aliasName));
+        }
+
+        aliasesRequest.get();
+        log.info("Alias '{}' swapped from {} to '{}'", aliasName, oldIndices, destination);
+
+        if (deleteOld && !oldIndices.isEmpty()) {
+            client.admin().indices().prepareDelete(oldIndices.toArray(new String[0])).get();
+            log.info("Old indices {} deleted", oldIndices);
+        }
+    }
+
+    private static List<String> aliasedIndices(TransportClient client, String aliasName) {
+
+        List<String> indices = new ArrayList<>();
+        GetAliasesResponse aliases = client.admin().indices().prepareGetAliases(aliasName).get();
+        Iterator<String> indicesIterator = aliases.getAliases().keysIt();
+        while (indicesIterator.hasNext()) {
+            indices.add(indicesIterator.next());
+        }
+
+        return indices;
+    }
+
+}
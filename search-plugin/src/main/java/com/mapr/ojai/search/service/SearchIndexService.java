@@ -1,35 +1,116 @@
 package com.mapr.ojai.search.service;
 
+import com.mapr.ojai.search.config.ConsistencyConfig;
 import com.mapr.ojai.search.config.SearchServiceConfig;
+import com.mapr.ojai.search.util.ThreadPools;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
 import org.ojai.store.cdc.ChangeDataRecord;
-import org.ojai.store.cdc.ChangeDataRecordType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Consumes changelogs of the tables and indexes Change Data Records. Instances with the same consumer group id share
+ * partitions of the changelogs. Offsets are committed only after the changes are flushed to the index, so
+ * rebalance neither loses nor duplicates work of the revoked partitions.
+ */
 public class SearchIndexService {
 
     private static final Logger log = LoggerFactory.getLogger(SearchIndexService.class);
 
     private static final long CONSUMER_POLL_TIMEOUT = 500L;
-    private static final Properties consumerProperties = new Properties();
 
-    static {
-        consumerProperties.setProperty("group.id", "ojai-search-service");
-        consumerProperties.setProperty("enable.auto.commit", "true");
-        consumerProperties.setProperty("auto.offset.reset", "latest");
-        consumerProperties.setProperty("key.deserializer", "org.apache.kafka.common.serialization.ByteArrayDeserializer");
-        consumerProperties.setProperty("value.deserializer", "com.mapr.db.cdc.ChangeDataRecordDeserializer");
-    }
+    /**
+     * Time to commit offsets and close the consumer after the pending changes are flushed.
+     */
+    private static final long SHUTDOWN_GRACE_MS = 5_000L;
+
+    private final String configPath;
+    private SearchServiceConfig config;
 
     /**
      * Consumer used to consume MapR-DB CDC events.
      */
-    private static final KafkaConsumer<byte[], ChangeDataRecord> consumer = new KafkaConsumer<>(consumerProperties);
+    private final KafkaConsumer<byte[], ChangeDataRecord> consumer;
+    private final ChangeDataRecordHandler cdcHandler;
+    private final IndexingMetrics metrics;
+
+    /**
+     * Runs backfills of the tables, added by config reload. Number of concurrent backfills is limited by permits.
+     */
+    private final ExecutorService backfillExecutor;
+    private final Semaphore backfillPermits;
+
+    private long consumerLagMs;
+
+    private volatile boolean running = true;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * Flushes pending changes and commits offsets before partitions are revoked, so the next owner of the
+     * partitions starts right after the indexed changes.
+     */
+    private class FlushingRebalanceListener implements ConsumerRebalanceListener {
+
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+
+            // Shutdown flushes and commits within its timeout, offsets of unflushed changes must not be committed
+            if (!running) {
+                log.info("Partitions {} are revoked at shutdown", partitions);
+                return;
+            }
+
+            log.info("Partitions {} are revoked. Flushing pending changes", partitions);
+            cdcHandler.flush(consumerLagMs);
+            consumer.commitSync();
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            log.info("Partitions {} are assigned", partitions);
+            metrics.rebalanced(partitions.size());
+        }
+    }
+
+    /**
+     * @param config     service config.
+     * @param configPath path of the config file, which is watched for changes, can be {@code null}.
+     */
+    public SearchIndexService(SearchServiceConfig config, String configPath) {
+
+        config.validate();
+        this.config = config;
+        this.configPath = configPath;
+        this.consumer = new KafkaConsumer<>(consumerProperties(config));
+        this.cdcHandler = new ChangeDataRecordHandler(config);
+        this.metrics = new IndexingMetrics(config.getConsumer().getGroupId());
+        this.backfillExecutor = ThreadPools.newExecutor("ojai-search-backfill",
+                config.getExecution().isVirtualThreads());
+        this.backfillPermits = new Semaphore(config.getExecution().getBackfillConcurrency());
+    }
 
     public static void main(String[] args) {
 
@@ -37,31 +118,270 @@ public class SearchIndexService {
                 ? SearchServiceConfig.fromFile(args[0])
                 : SearchServiceConfig.fromResource("config.yml");
 
-        consumer.subscribe(config.getChangelogs());
-        ChangeDataRecordHandler cdcHandler = new ChangeDataRecordHandler(config);
-        while (true) {
-
-            ConsumerRecords<byte[], ChangeDataRecord> changeRecords = consumer.poll(CONSUMER_POLL_TIMEOUT);
-            for (ConsumerRecord<byte[], ChangeDataRecord> consumerRecord : changeRecords) {
-
-                // The ChangeDataRecord contains all the changes made to a document
-                ChangeDataRecord changeDataRecord = consumerRecord.value();
-                ChangeDataRecordType recordType = changeDataRecord.getType();
-                switch (recordType) {
-                    case RECORD_INSERT:
-                        cdcHandler.handleInsert(consumerRecord);
-                        break;
-                    case RECORD_UPDATE:
-                        cdcHandler.handleUpdate(consumerRecord);
-                        break;
-                    case RECORD_DELETE:
-                        cdcHandler.handleDelete(consumerRecord);
-                        break;
-                    default:
-                        log.warn("Get record of unknown type '{}'. Ignoring ...", recordType);
+        SearchIndexService service = new SearchIndexService(config, (args.length > 0) ? args[0] : null);
+        Runtime.getRuntime().addShutdownHook(new Thread(service::shutdown, "ojai-search-shutdown"));
+        service.run();
+    }
+
+    private static Properties consumerProperties(SearchServiceConfig config) {
+
+        Properties consumerProperties = new Properties();
+        consumerProperties.setProperty("group.id", config.getConsumer().getGroupId());
+        // Offsets are committed after the changes are flushed to the index
+        consumerProperties.setProperty("enable.auto.commit", "false");
+        consumerProperties.setProperty("auto.offset.reset", "latest");
+        consumerProperties.setProperty("key.deserializer", "org.apache.kafka.common.serialization.ByteArrayDeserializer");
+        consumerProperties.setProperty("value.deserializer", "com.mapr.db.cdc.ChangeDataRecordDeserializer");
+
+        return consumerProperties;
+    }
+
+    public void run() {
+
+        metrics.register();
+
+        // Config is reloaded on change only if it is loaded from the file
+        ConfigWatcher configWatcher = (configPath != null) ? new ConfigWatcher(configPath) : null;
+
+        log.info("Consumer '{}' subscribes to {}", config.getConsumer().getGroupId(), config.getAssignedChangelogs());
+        consumer.subscribe(config.getAssignedChangelogs(), new FlushingRebalanceListener());
+        long lastPublishedAt = 0L;
+        try {
+            while (running) {
+
+                // Partitions, caught up after this poll, have no unprocessed changes written before it
+                long polledAt = System.currentTimeMillis();
+                ConsumerRecords<byte[], ChangeDataRecord> changeRecords = consumer.poll(CONSUMER_POLL_TIMEOUT);
+                long latestOpTimestamp = 0L;
+                for (ConsumerRecord<byte[], ChangeDataRecord> consumerRecord : changeRecords) {
+
+                    latestOpTimestamp = Math.max(latestOpTimestamp, consumerRecord.value().getOpTimestamp());
+                    cdcHandler.handle(consumerRecord);
+                }
+
+                consumerLagMs = (latestOpTimestamp > 0) ? System.currentTimeMillis() - latestOpTimestamp : 0L;
+                cdcHandler.flush(consumerLagMs);
+                if (!changeRecords.isEmpty()) {
+                    consumer.commitAsync((offsets, e) -> {
+                        if (e != null) {
+                            log.warn("Can not commit offsets {}", offsets, e);
+                        }
+                    });
+                }
+
+                metrics.batchProcessed(changeRecords.count(), consumerLagMs);
+                metrics.updatesSkipped(cdcHandler.getSkippedUpdates());
+                metrics.spilled(cdcHandler.getSpilledBytes());
+                applyBackpressure();
+
+                ConsistencyConfig consistency = config.getConsistency();
+                if (consistency.isEnabled() &&
+                        System.currentTimeMillis() - lastPublishedAt >= consistency.getPublishIntervalMs()) {
+                    Set<TopicPartition> assignment = consumer.assignment();
+                    cdcHandler.publishWatermarks(assignment, caughtUpPartitions(), polledAt,
+                            partitionCounts(assignment));
+                    lastPublishedAt = System.currentTimeMillis();
+                }
+
+                SearchServiceConfig updated = (configWatcher != null) ? configWatcher.poll() : null;
+                if (updated != null) {
+                    reloadConfig(updated);
                 }
             }
+        } catch (WakeupException e) {
+            // Poll is interrupted by shutdown, records of the last batch are already handled
+            if (running) {
+                throw e;
+            }
+        } finally {
+            drain(configWatcher);
+            stopped.countDown();
+        }
+    }
+
+    /**
+     * Stops consuming and waits until pending changes are flushed and offsets are committed. Called by the shutdown
+     * hook, so SIGTERM leaves the consumer group at the indexed position.
+     */
+    public void shutdown() {
+
+        if (!running) {
+            return;
+        }
+
+        log.info("Search Service is shutting down");
+        running = false;
+        consumer.wakeup();
+
+        try {
+            if (!stopped.await(config.getConsumer().getShutdownTimeoutMs() + SHUTDOWN_GRACE_MS,
+                    TimeUnit.MILLISECONDS)) {
+                log.warn("Search Service is not stopped in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
+    /**
+     * Flushes pending changes within the shutdown timeout, commits final offsets and releases resources. Offsets are
+     * not committed if flush fails or times out, so unflushed changes are consumed again after restart. In that case
+     * the handler is aborted rather than closed, since closing would flush again without time limit, while the flush
+     * thread may still be inside the index service.
+     */
+    private void drain(ConfigWatcher configWatcher) {
+
+        backfillExecutor.shutdownNow();
+        if (configWatcher != null) {
+            try {
+                configWatcher.close();
+            } catch (IOException e) {
+                log.warn("Can not close config watcher", e);
+            }
+        }
+
+        long timeoutMs = config.getConsumer().getShutdownTimeoutMs();
+        ExecutorService flushExecutor = Executors.newSingleThreadExecutor();
+        Future<?> flush = flushExecutor.submit(() -> cdcHandler.flush(consumerLagMs));
+        boolean flushed = false;
+        try {
+            flush.get(timeoutMs, TimeUnit.MILLISECONDS);
+            flushed = true;
+        } catch (TimeoutException e) {
+            log.warn("Pending changes are not flushed in {} ms, offsets are not committed", timeoutMs);
+            flush.cancel(true);
+        } catch (ExecutionException e) {
+            log.warn("Can not flush pending changes, offsets are not committed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            flushExecutor.shutdownNow();
+        }
+
+        try {
+            if (flushed) {
+                commitFinalOffsets();
+            }
+        } finally {
+            consumer.close();
+            try {
+                if (flushed) {
+                    cdcHandler.close();
+                } else {
+                    cdcHandler.abort();
+                }
+            } catch (Exception e) {
+                log.warn("Can not close Change Data Record handler", e);
+            }
+        }
+
+        log.info("Search Service is stopped");
+    }
+
+    private void commitFinalOffsets() {
+
+        try {
+            consumer.commitSync();
+        } catch (WakeupException e) {
+            // Wakeup, requested while the batch was handled, interrupts the first blocking call
+            consumer.commitSync();
+        }
+
+        log.info("Final offsets are committed");
+    }
+
+    public IndexingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Applies reloaded config between batches of Change Data Records. Consumer is re-subscribed only if the set of
+     * changelogs is changed, and tables with added indexed fields are backfilled in the background.
+     */
+    private void reloadConfig(SearchServiceConfig updated) {
+
+        List<String> restartRequired = config.restartRequiredChanges(updated);
+        if (!restartRequired.isEmpty()) {
+            log.warn("Reloaded config changes {}, which require restart. Config is not applied", restartRequired);
+            return;
+        }
+
+        cdcHandler.reconfigure(updated);
+        List<String> changelogs = updated.getAssignedChangelogs();
+        if (!new HashSet<>(config.getAssignedChangelogs()).equals(new HashSet<>(changelogs))) {
+            log.info("Changelogs are changed, re-subscribing to {}", changelogs);
+            consumer.subscribe(changelogs, new FlushingRebalanceListener());
+        }
+
+        for (String tablePath : config.tablesToBackfill(updated)) {
+            TableBackfill backfill = new TableBackfill(updated, tablePath, cdcHandler.getDeadLetterQueue());
+            backfillExecutor.submit(() -> {
+                backfillPermits.acquireUninterruptibly();
+                try {
+                    backfill.run();
+                } finally {
+                    backfillPermits.release();
+                }
+            });
+        }
+
+        log.info("Reloaded config is applied: {}", updated);
+        config = updated;
+    }
+
+    /**
+     * Pauses assigned partitions while the index backend is overloaded. Paused consumer keeps polling, so it stays
+     * in the group, but does not fetch Change Data Records until partitions are resumed.
+     */
+    private void applyBackpressure() {
+
+        Set<TopicPartition> paused = consumer.paused();
+        if (cdcHandler.isOverloaded()) {
+            if (paused.isEmpty()) {
+                log.warn("Index backend is overloaded. Pausing partitions {}", consumer.assignment());
+            }
+            // Partitions, assigned while paused, are paused as well
+            consumer.pause(consumer.assignment());
+        } else if (!paused.isEmpty()) {
+            log.info("Index backend is recovered. Resuming partitions {}", paused);
+            consumer.resume(paused);
+        }
+
+        metrics.backpressure(cdcHandler.getConcurrencyLimit(), consumer.paused().size());
+    }
+
+    /**
+     * Returns assigned partitions, which have no unconsumed Change Data Records.
+     */
+    /**
+     * Returns number of partitions of the changelogs, so watermarks of the partitions, assigned to other instances,
+     * are accounted for by the client.
+     */
+    private Map<String, Integer> partitionCounts(Set<TopicPartition> assignment) {
+
+        Map<String, Integer> partitionCounts = new HashMap<>();
+        for (TopicPartition partition : assignment) {
+            partitionCounts.computeIfAbsent(partition.topic(), changelog -> consumer.partitionsFor(changelog).size());
+        }
+
+        return partitionCounts;
+    }
+
+    private Set<TopicPartition> caughtUpPartitions() {
+
+        Set<TopicPartition> assignment = consumer.assignment();
+        if (assignment.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<TopicPartition> caughtUp = new HashSet<>();
+        for (Map.Entry<TopicPartition, Long> endOffset : consumer.endOffsets(assignment).entrySet()) {
+            if (consumer.position(endOffset.getKey()) >= endOffset.getValue()) {
+                caughtUp.add(endOffset.getKey());
+            }
+        }
+
+        return caughtUp;
+    }
+
 }
@@ -0,0 +1,407 @@
+package com.mapr.ojai.search.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.mapr.ojai.search.config.SpillConfig;
+import com.mapr.ojai.search.util.OjaiSearchServiceUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of changes, which can not be sent to ElasticSearch, stored at memory-mapped segment files of the
+ * local directory. Each record consists of the payload length, CRC32 of the payload and the SMILE-encoded
+ * {@link SpilledChange}. Segments are preallocated and zero-filled, so zero length marks the end of the written
+ * records. Position of the replayed records is stored at the checkpoint file, which is replaced atomically, and fully
+ * replayed segments are deleted. Log is used by the consumer thread only, so it is not thread-safe.
+ */
+class SpillLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SpillLog.class);
+
+    private static final String SEGMENT_PREFIX = "spill-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint.json";
+    private static final int HEADER_BYTES = 8;
+
+    private static final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final long maxBytes;
+
+    /**
+     * Sizes of the segment files by their sequence numbers.
+     */
+    private final TreeMap<Long, Long> segments = new TreeMap<>();
+
+    private long writeSegment;
+    private int writePosition;
+    private MappedByteBuffer writeBuffer;
+    private boolean dirty;
+
+    private long readSegment;
+    private int readPosition;
+    private long readBufferSegment = -1;
+    private ByteBuffer readBuffer;
+
+    /**
+     * Spilled changes, read from the log, along with the position after the last of them. Position is committed
+     * once the changes are replayed.
+     */
+    static final class Batch {
+
+        private final List<SpilledChange> changes;
+        private final long segment;
+        private final int position;
+
+        private Batch(List<SpilledChange> changes, long segment, int position) {
+            this.changes = changes;
+            this.segment = segment;
+            this.position = position;
+        }
+
+        List<SpilledChange> getChanges() {
+            return changes;
+        }
+    }
+
+    SpillLog(SpillConfig config) throws IOException {
+
+        this.directory = Paths.get(config.getDirectory());
+        this.segmentBytes = config.getSegmentBytes();
+        this.maxBytes = config.getMaxBytes();
+
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.put(segmentSequence(file), Files.size(file));
+            }
+        }
+
+        readCheckpoint();
+
+        // Segments before the checkpoint are already replayed
+        while (!segments.isEmpty() && segments.firstKey() < readSegment) {
+            Files.deleteIfExists(segmentPath(segments.pollFirstEntry().getKey()));
+        }
+
+        if (segments.isEmpty()) {
+            createSegment(readSegment, segmentBytes);
+        } else if (segments.firstKey() > readSegment) {
+            log.warn("Spill log segment {} of the checkpoint is missing, replaying from segment {}", readSegment,
+                    segments.firstKey());
+            readSegment = segments.firstKey();
+            readPosition = 0;
+        }
+
+        openWriteSegment(segments.lastKey());
+        if (!isEmpty()) {
+            log.info("Spill log '{}' contains {} bytes of changes to be replayed", directory, getBytes());
+        }
+    }
+
+    /**
+     * Appends the change to the log.
+     *
+     * @param change spilled change.
+     * @return {@code false} if the change does not fit into the maximum size of the log.
+     */
+    boolean append(SpilledChange change) throws IOException {
+
+        byte[] payload = smileMapper.writeValueAsBytes(change);
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (getBytes() + recordBytes > maxBytes) {
+            return false;
+        }
+
+        // Records are not split between segments, so the rest of the segment stays zero-filled
+        if (writePosition + recordBytes > writeBuffer.capacity()) {
+            writeBuffer.force();
+            createSegment(writeSegment + 1, Math.max(segmentBytes, recordBytes));
+            openWriteSegment(writeSegment + 1);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        ByteBuffer record = writeBuffer.duplicate();
+        record.position(writePosition);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        writePosition += recordBytes;
+        dirty = true;
+
+        return true;
+    }
+
+    /**
+     * Flushes the appended records to the disk.
+     */
+    void sync() {
+        if (dirty) {
+            writeBuffer.force();
+            dirty = false;
+        }
+    }
+
+    /**
+     * Reads the changes after the checkpoint. Changes are not committed until {@link #commit(Batch)} is called, so
+     * they are read again if replay fails.
+     *
+     * @param maxChanges maximum number of changes to read.
+     * @return read changes.
+     */
+    Batch read(int maxChanges) throws IOException {
+
+        List<SpilledChange> changes = new ArrayList<>();
+        long segment = readSegment;
+        int position = readPosition;
+        while (changes.size() < maxChanges) {
+
+            if (segment == writeSegment && position >= writePosition) {
+                break;
+            }
+
+            ByteBuffer buffer = segmentBuffer(segment);
+            int length = (position + HEADER_BYTES <= buffer.capacity()) ? buffer.getInt(position) : 0;
+            if (length <= 0) {
+                // Rest of the completed segment is zero-filled
+                segment = segments.higherKey(segment);
+                position = 0;
+                continue;
+            }
+
+            if (length > buffer.capacity() - position - HEADER_BYTES) {
+                throw new IOException("Spill log segment '" + segmentPath(segment) + "' is corrupted at position " +
+                        position);
+            }
+
+            byte[] payload = new byte[length];
+            ByteBuffer record = buffer.duplicate();
+            record.position(position + HEADER_BYTES);
+            record.get(payload);
+
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                throw new IOException("Spill log segment '" + segmentPath(segment) + "' is corrupted at position " +
+                        position);
+            }
+
+            changes.add(smileMapper.readValue(payload, SpilledChange.class));
+            position += HEADER_BYTES + length;
+        }
+
+        return new Batch(changes, segment, position);
+    }
+
+    /**
+     * Moves the checkpoint after the replayed changes and deletes fully replayed segments.
+     */
+    void commit(Batch batch) throws IOException {
+
+        readSegment = batch.segment;
+        readPosition = batch.position;
+        writeCheckpoint();
+
+        while (segments.firstKey() < readSegment) {
+            long segment = segments.pollFirstEntry().getKey();
+            if (segment == readBufferSegment) {
+                readBuffer = null;
+                readBufferSegment = -1;
+            }
+            Files.deleteIfExists(segmentPath(segment));
+        }
+    }
+
+    /**
+     * Returns whether all the appended changes are replayed.
+     */
+    boolean isEmpty() {
+        return readSegment == writeSegment && readPosition >= writePosition;
+    }
+
+    /**
+     * Returns size of the records, which are not replayed yet.
+     */
+    long getBytes() {
+
+        long bytes = writePosition - readPosition;
+        for (Map.Entry<Long, Long> segment : segments.subMap(readSegment, writeSegment).entrySet()) {
+            bytes += segment.getValue();
+        }
+
+        return bytes;
+    }
+
+    @Override
+    public void close() {
+        sync();
+    }
+
+    /**
+     * Coalesces the changes of each document into its last change, keeping the order of the last changes. Since each
+     * index change replaces the whole document, only the last one has to be applied. Update is merged into the
+     * preceding index change or update. Delete, followed by an index change or update, is kept as a flag of the
+     * latter, since the replaced document can be stored at another index.
+     *
+     * @param changes changes in the order of the log.
+     * @return coalesced changes.
+     */
+    static List<SpilledChange> coalesce(List<SpilledChange> changes) {
+
+        Map<String, SpilledChange> latest = new LinkedHashMap<>();
+        for (SpilledChange change : changes) {
+
+            String key = change.getTablePath() + '\u0000' + change.getDocumentId();
+            SpilledChange previous = latest.remove(key);
+            if (previous != null && change.getOperation() != DeadLetterRecord.Operation.DELETE) {
+
+                if (change.getOperation() == DeadLetterRecord.Operation.UPDATE &&
+                        previous.getOperation() != DeadLetterRecord.Operation.DELETE) {
+                    ObjectNode merged = (ObjectNode) previous.getSource().deepCopy();
+                    OjaiSearchServiceUtils.merge(merged, change.getSource());
+                    change.setSource(merged);
+                    change.setOperation(previous.getOperation());
+                }
+
+                if (previous.getOperation() == DeadLetterRecord.Operation.DELETE || previous.isDeleteFirst()) {
+                    change.setDeleteFirst(true);
+                }
+            }
+
+            latest.put(key, change);
+        }
+
+        return new ArrayList<>(latest.values());
+    }
+
+    private void readCheckpoint() throws IOException {
+
+        Path checkpointPath = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(checkpointPath)) {
+            readSegment = segments.isEmpty() ? 0L : segments.firstKey();
+            readPosition = 0;
+            return;
+        }
+
+        JsonNode checkpoint = jsonMapper.readTree(checkpointPath.toFile());
+        readSegment = checkpoint.path("segment").asLong();
+        readPosition = checkpoint.path("position").asInt();
+    }
+
+    private void writeCheckpoint() throws IOException {
+
+        ObjectNode checkpoint = jsonMapper.createObjectNode();
+        checkpoint.put("segment", readSegment);
+        checkpoint.put("position", readPosition);
+
+        // Checkpoint is replaced atomically, so it is never left half-written
+        Path checkpointPath = directory.resolve(CHECKPOINT_FILE);
+        Path temp = checkpointPath.resolveSibling(CHECKPOINT_FILE + ".tmp");
+        jsonMapper.writeValue(temp.toFile(), checkpoint);
+        Files.move(temp, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void createSegment(long segment, long bytes) throws IOException {
+
+        try (RandomAccessFile file = new RandomAccessFile(segmentPath(segment).toFile(), "rw")) {
+            file.setLength(bytes);
+        }
+
+        segments.put(segment, bytes);
+    }
+
+    /**
+     * Maps the segment for writing and finds the end of its valid records. Torn record, left by a crash during
+     * append, is zeroed, so it is neither replayed nor confused with the next record.
+     */
+    private void openWriteSegment(long segment) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            writeBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+
+        writeSegment = segment;
+        writePosition = 0;
+        while (writePosition + HEADER_BYTES <= writeBuffer.capacity()) {
+
+            int length = writeBuffer.getInt(writePosition);
+            // Compared without the sum, which overflows for a torn length
+            if (length <= 0 || length > writeBuffer.capacity() - writePosition - HEADER_BYTES) {
+                break;
+            }
+
+            byte[] payload = new byte[length];
+            ByteBuffer record = writeBuffer.duplicate();
+            record.position(writePosition + HEADER_BYTES);
+            record.get(payload);
+
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            if ((int) crc.getValue() != writeBuffer.getInt(writePosition + 4)) {
+                break;
+            }
+
+            writePosition += HEADER_BYTES + length;
+        }
+
+        if (writePosition + HEADER_BYTES <= writeBuffer.capacity() && writeBuffer.getInt(writePosition) != 0) {
+            log.warn("Spill log segment '{}' has a torn record at position {}, which is discarded",
+                    segmentPath(segment), writePosition);
+            for (int position = writePosition; position < writeBuffer.capacity(); position++) {
+                writeBuffer.put(position, (byte) 0);
+            }
+            writeBuffer.force();
+        }
+    }
+
+    private ByteBuffer segmentBuffer(long segment) throws IOException {
+
+        if (segment == writeSegment) {
+            return writeBuffer;
+        }
+
+        if (segment != readBufferSegment) {
+            try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+                readBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            readBufferSegment = segment;
+        }
+
+        return readBuffer;
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private static long segmentSequence(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.mapr.ojai.search.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Change, written to the spill log while ElasticSearch is unavailable. Index changes carry the source, which is
+ * already restricted to the indexed fields, and the write target if it is resolved.
+ */
+class SpilledChange {
+
+    private String tablePath;
+    private String documentId;
+    private DeadLetterRecord.Operation operation;
+    private String index;
+    private String routing;
+    private JsonNode source;
+    private String changelog;
+    private Integer partition;
+    private Long offset;
+
+    /**
+     * Whether the document must be deleted before it is indexed, since the delete is coalesced with the subsequent
+     * index change of the document. Set at replay only.
+     */
+    @JsonIgnore
+    private boolean deleteFirst;
+
+    public SpilledChange() {
+    }
+
+    SpilledChange(String tablePath, String documentId, DeadLetterRecord.Operation operation, String index,
+                  String routing, JsonNode source, ChangeSource changeSource) {
+
+        this.tablePath = tablePath;
+        this.documentId = documentId;
+        this.operation = operation;
+        this.index = index;
+        this.routing = routing;
+        this.source = source;
+        if (changeSource != null) {
+            this.changelog = changeSource.getChangelog();
+            this.partition = changeSource.getPartition();
+            this.offset = changeSource.getOffset();
+        }
+    }
+
+    /**
+     * Returns position of the change at the changelog, {@code null} if the change does not originate from it.
+     */
+    ChangeSource changeSource() {
+        return (changelog != null && partition != null && offset != null)
+                ? new ChangeSource(changelog, partition, offset)
+                : null;
+    }
+
+    public String getTablePath() {
+        return tablePath;
+    }
+
+    public void setTablePath(String tablePath) {
+        this.tablePath = tablePath;
+    }
+
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+
+    public DeadLetterRecord.Operation getOperation() {
+        return operation;
+    }
+
+    public void setOperation(DeadLetterRecord.Operation operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Concrete index or alias, to which the change is written, {@code null} if it is resolved at replay.
+     */
+    public String getIndex() {
+        return index;
+    }
+
+    public void setIndex(String index) {
+        this.index = index;
+    }
+
+    public String getRouting() {
+        return routing;
+    }
+
+    public void setRouting(String routing) {
+        this.routing = routing;
+    }
+
+    public JsonNode getSource() {
+        return source;
+    }
+
+    public void setSource(JsonNode source) {
+        this.source = source;
+    }
+
+    public String getChangelog() {
+        return changelog;
+    }
+
+    public void setChangelog(String changelog) {
+        this.changelog = changelog;
+    }
+
+    public Integer getPartition() {
+        return partition;
+    }
+
+    public void setPartition(Integer partition) {
+        this.partition = partition;
+    }
+
+    public Long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(Long offset) {
+        this.offset = offset;
+    }
+
+    @JsonIgnore
+    public boolean isDeleteFirst() {
+        return deleteFirst;
+    }
+
+    @JsonIgnore
+    public void setDeleteFirst(boolean deleteFirst) {
+        this.deleteFirst = deleteFirst;
+    }
+
+    @Override
+    public String toString() {
+        return "SpilledChange{" +
+                "tablePath='" + tablePath + '\'' +
+                ", documentId='" + documentId + '\'' +
+                ", operation=" + operation +
+                ", index='" + index + '\'' +
+                ", routing='" + routing + '\'' +
+                ", changelog='" + changelog + '\'' +
+                ", partition=" + partition +
+                ", offset=" + offset +
+                ", deleteFirst=" + deleteFirst +
+                '}';
+    }
+}
@@ -0,0 +1,53 @@
+package com.mapr.ojai.search.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Properties;
+
+/**
+ * Sends dead letters to the MapR Streams topic. Records are keyed by document identifier.
+ */
+public class StreamDeadLetterQueue implements DeadLetterQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamDeadLetterQueue.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final String topic;
+    private final KafkaProducer<String, String> producer;
+
+    public StreamDeadLetterQueue(String topic) {
+
+        Properties producerProperties = new Properties();
+        producerProperties.setProperty("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+        producerProperties.setProperty("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+
+        this.topic = topic;
+        this.producer = new KafkaProducer<>(producerProperties);
+    }
+
+    @Override
+    public void send(DeadLetterRecord record) {
+
+        try {
+            producer.send(new ProducerRecord<>(topic, record.getDocumentId(), mapper.writeValueAsString(record)),
+                    (metadata, exception) -> {
+                        if (exception != null) {
+                            log.error("Can not send dead letter to the topic '{}': {}", topic, record, exception);
+                        }
+                    });
+        } catch (JsonProcessingException e) {
+            log.error("Can not serialize dead letter: {}", record, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        producer.close();
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.mapr.ojai.search.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mapr.ojai.search.config.SearchServiceConfig;
+import com.mapr.ojai.search.config.TableConfig;
+import com.mapr.ojai.search.util.DocumentIds;
+import com.mapr.ojai.search.util.OjaiValues;
+import org.ojai.Document;
+import org.ojai.DocumentStream;
+import org.ojai.store.Connection;
+import org.ojai.store.DriverManager;
+import org.ojai.store.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Indexes the current state of the table's documents, for example after the table or its indexed fields were added to
+ * the config. Only indexed fields are fetched from MapR-DB JSON Table. Backfill uses its own index service, so it runs
+ * concurrently with the consumer. Since the consumer may have already indexed newer changes of the document, backfill
+ * creates documents, which are not indexed yet, and fills absent fields of the indexed ones, but never overwrites
+ * indexed values. ElasticSearch backfill does not spill changes, failed documents are sent to the dead-letter queue.
+ */
+public class TableBackfill implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(TableBackfill.class);
+
+    private final SearchServiceConfig config;
+    private final String tablePath;
+    private final DeadLetterQueue deadLetterQueue;
+
+    public TableBackfill(SearchServiceConfig config, String tablePath, DeadLetterQueue deadLetterQueue) {
+        this.config = config;
+        this.tablePath = tablePath;
+        this.deadLetterQueue = deadLetterQueue;
+    }
+
+    @Override
+    public void run() {
+
+        log.info("Backfilling table '{}'", tablePath);
+        long indexed = 0;
+        try (Connection connection = DriverManager.getConnection("ojai:mapr:");
+             IndexService indexService = createIndexService()) {
+
+            // Routing and timestamp fields determine the index of the document, even if they are not indexed
+            Query query = connection.newQuery();
+            Set<String> indexedFields = config.indexedFieldsForTable(tablePath);
+            if (!indexedFields.isEmpty()) {
+                Set<String> fields = new LinkedHashSet<>(indexedFields);
+                config.tableConfig(tablePath).map(TableConfig::getIndex).ifPresent(index -> {
+                    if (index.getRoutingField() != null) {
+                        fields.add(index.getRoutingField());
+                    }
+                    if (index.getTimestampField() != null) {
+                        fields.add(index.getTimestampField());
+                    }
+                });
+                query.select(fields.toArray(new String[0]));
+            }
+
+            try (DocumentStream documents = connection.getStore(tablePath).find(query.build())) {
+                for (Document document : documents) {
+                    JsonNode changes = OjaiValues.toJsonNode(document);
+                    indexService.saveIndexForTable(tablePath, DocumentIds.encode(document.getId()), changes, null);
+                    indexed++;
+                }
+            }
+
+            indexService.flush(0L);
+            log.info("Table '{}' is backfilled, {} documents indexed", tablePath, indexed);
+        } catch (RuntimeException e) {
+            log.error("Backfill of table '{}' failed after {} documents", tablePath, indexed, e);
+        }
+    }
+
+    private IndexService createIndexService() {
+        return (config.getBackend() == SearchServiceConfig.Backend.LUCENE)
+                ? new LuceneIndexService(config)
+                : new ElasticSearchIndexService(config, deadLetterQueue, true);
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.mapr.ojai.search.util;
+
+import org.ojai.Value;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Encodes MapR-DB document ids of any supported type into index document ids and back. String ids are used as is,
+ * unless they start with the escape char {@code '~'}, which is doubled. Binary ids are encoded as {@code ~b} followed
+ * by unpadded base64url, integral ids as {@code ~n} followed by the decimal number. Encoding uses per-thread scratch
+ * buffers, so the resulting string is the only allocation.
+ */
+public final class DocumentIds {
+
+    private static final char ESCAPE = '~';
+    private static final char BINARY = 'b';
+    private static final char NUMBER = 'n';
+
+    private static final char[] BASE64_URL =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    private static final ThreadLocal<char[][]> scratch = ThreadLocal.withInitial(() -> new char[][]{new char[64]});
+
+    private DocumentIds() {
+    }
+
+    /**
+     * Encodes document id.
+     *
+     * @param id document id.
+     * @return index document id.
+     * @throws IllegalArgumentException if id is neither string, binary nor integral number.
+     */
+    public static String encode(Value id) {
+
+        switch (id.getType()) {
+            case STRING:
+                String string = id.getString();
+                return (string.isEmpty() || string.charAt(0) != ESCAPE) ? string : ESCAPE + string;
+            case BINARY:
+                return encodeBinary(id.getBinary());
+            case BYTE:
+                return encodeNumber(id.getByte());
+            case SHORT:
+                return encodeNumber(id.getShort());
+            case INT:
+                return encodeNumber(id.getInt());
+            case LONG:
+                return encodeNumber(id.getLong());
+            default:
+                throw new IllegalArgumentException("Document id of type '" + id.getType() + "' is not supported");
+        }
+    }
+
+    /**
+     * Decodes index document id.
+     *
+     * @param encoded index document id.
+     * @return {@link String}, {@link ByteBuffer} or {@link Long} document id, which can be used in OJAI conditions.
+     */
+    public static Object decode(String encoded) {
+
+        if (encoded.length() < 2 || encoded.charAt(0) != ESCAPE) {
+            return encoded;
+        }
+
+        switch (encoded.charAt(1)) {
+            case ESCAPE:
+                return encoded.substring(1);
+            case BINARY:
+                return ByteBuffer.wrap(Base64.getUrlDecoder().decode(encoded.substring(2)));
+            case NUMBER:
+                return Long.parseLong(encoded.substring(2));
+            default:
+                throw new IllegalArgumentException("Unknown encoding of document id '" + encoded + "'");
+        }
+    }
+
+    public static List<Object> decodeAll(List<String> encoded) {
+
+        List<Object> decoded = new ArrayList<>(encoded.size());
+        for (String id : encoded) {
+            decoded.add(decode(id));
+        }
+
+        return decoded;
+    }
+
+    private static String encodeBinary(ByteBuffer binary) {
+
+        int position = binary.position();
+        int length = binary.remaining();
+        char[] chars = scratchChars(2 + (length * 4 + 2) / 3);
+        chars[0] = ESCAPE;
+        chars[1] = BINARY;
+
+        int written = 2;
+        int i = 0;
+        for (; i + 2 < length; i += 3) {
+            int bits = (binary.get(position + i) & 0xff) << 16
+                    | (binary.get(position + i + 1) & 0xff) << 8
+                    | (binary.get(position + i + 2) & 0xff);
+            chars[written++] = BASE64_URL[bits >>> 18];
+            chars[written++] = BASE64_URL[(bits >>> 12) & 0x3f];
+            chars[written++] = BASE64_URL[(bits >>> 6) & 0x3f];
+            chars[written++] = BASE64_URL[bits & 0x3f];
+        }
+
+        int tail = length - i;
+        if (tail > 0) {
+            int bits = (binary.get(position + i) & 0xff) << 16
+                    | ((tail > 1) ? (binary.get(position + i + 1) & 0xff) << 8 : 0);
+            chars[written++] = BASE64_URL[bits >>> 18];
+            chars[written++] = BASE64_URL[(bits >>> 12) & 0x3f];
+            if (tail > 1) {
+                chars[written++] = BASE64_URL[(bits >>> 6) & 0x3f];
+            }
+        }
+
+        return new String(chars, 0, written);
+    }
+
+    private static String encodeNumber(long number) {
+
+        char[] chars = scratchChars(22);
+        chars[0] = ESCAPE;
+        chars[1] = NUMBER;
+
+        // Digits are written from the end, as Long.toString does, without the intermediate string
+        int written = chars.length;
+        long remaining = number;
+        do {
+            chars[--written] = (char) ('0' + Math.abs(remaining % 10));
+            remaining /= 10;
+        } while (remaining != 0);
+
+        if (number < 0) {
+            chars[--written] = '-';
+        }
+
+        int digits = chars.length - written;
+        System.arraycopy(chars, written, chars, 2, digits);
+
+        return new String(chars, 0, 2 + digits);
+    }
+
+    private static char[] scratchChars(int length) {
+
+        char[][] holder = scratch.get();
+        if (holder[0].length < length) {
+            holder[0] = new char[Math.max(length, holder[0].length * 2)];
+        }
+
+        return holder[0];
+    }
+
+}
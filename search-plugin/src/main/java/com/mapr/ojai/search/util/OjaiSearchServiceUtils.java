@@ -1,10 +1,40 @@
 package com.mapr.ojai.search.util;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
 public final class OjaiSearchServiceUtils {
 
+    /**
+     * Index of per-partition watermarks, published by Search Service in consistent-read mode. Document id is the table
+     * path along with the changelog partition, and document version is the watermark timestamp. Each document also
+     * carries the number of the changelog's partitions.
+     */
+    public static final String WATERMARK_INDEX = "ojai_search_watermarks";
+    public static final String WATERMARK_TYPE = "watermark";
+    public static final String WATERMARK_PARTITIONS_FIELD = "partitions";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
     private OjaiSearchServiceUtils() {
     }
 
+    /**
+     * Returns id of the watermark document of the table's changelog partition.
+     *
+     * @param tablePath MapR-DB JSON Table path.
+     * @param partition changelog partition.
+     * @return watermark document id.
+     */
+    public static String watermarkId(String tablePath, int partition) {
+        return tablePath + "#" + partition;
+    }
+
     /**
      * Replaces all invalid characters from table path with underscore.
      *
@@ -18,4 +48,111 @@ public final class OjaiSearchServiceUtils {
         return (replaced.startsWith("_")) ? replaced.substring(1) : replaced;
     }
 
+    /**
+     * Only specified fields will be sent to the index.
+     *
+     * @param allowedFields fields, which are allowed to be indexed. Empty set means that all the fields are allowed.
+     * @param original      all the changes.
+     * @return changes for the specified fields or {@code null} if none of the fields are allowed.
+     */
+    public static JsonNode copyOnlyAllowedFields(Set<String> allowedFields, JsonNode original) {
+
+        ObjectNode allowed = null;
+        Iterator<String> fieldNamesIterator = original.fieldNames();
+        while (fieldNamesIterator.hasNext()) {
+
+            String fieldName = fieldNamesIterator.next();
+            if (allowedFields != null && !allowedFields.isEmpty() && !allowedFields.contains(fieldName)) {
+                continue;
+            }
+
+            if (allowed == null) {
+                allowed = mapper.createObjectNode();
+            }
+
+            allowed.set(fieldName, original.get(fieldName));
+        }
+
+        return allowed;
+    }
+
+    /**
+     * Returns the value of the field, which is either keyed by its path, such as 'address.city', or nested.
+     *
+     * @param document  document or changes.
+     * @param fieldPath field path.
+     * @return field value, missing node if the field is absent.
+     */
+    public static JsonNode fieldValue(JsonNode document, String fieldPath) {
+
+        JsonNode value = document.get(fieldPath);
+        return (value != null) ? value : document.at("/" + fieldPath.replace(".", "/"));
+    }
+
+    /**
+     * Returns whether the document contains the field, see {@link #fieldValue(JsonNode, String)}.
+     */
+    public static boolean containsField(JsonNode document, String fieldPath) {
+        return !fieldValue(document, fieldPath).isMissingNode();
+    }
+
+    /**
+     * Converts changes, keyed by field paths, such as 'address.city', into nested objects, so they can be merged into
+     * the indexed document. Quoted field paths are kept as is.
+     *
+     * @param changes changes, keyed by field paths.
+     * @return changes as nested objects.
+     */
+    public static ObjectNode expandFieldPaths(JsonNode changes) {
+
+        ObjectNode expanded = mapper.createObjectNode();
+        Iterator<Map.Entry<String, JsonNode>> fields = changes.fields();
+        while (fields.hasNext()) {
+
+            Map.Entry<String, JsonNode> field = fields.next();
+            String fieldPath = field.getKey();
+            if (fieldPath.indexOf('`') >= 0 || fieldPath.indexOf('.') < 0) {
+                merge(expanded, fieldPath, field.getValue());
+                continue;
+            }
+
+            String[] segments = fieldPath.split("\\.");
+            ObjectNode parent = expanded;
+            for (int i = 0; i < segments.length - 1; i++) {
+                JsonNode child = parent.get(segments[i]);
+                parent = (child != null && child.isObject()) ? (ObjectNode) child : parent.putObject(segments[i]);
+            }
+
+            merge(parent, segments[segments.length - 1], field.getValue());
+        }
+
+        return expanded;
+    }
+
+    /**
+     * Merges changes into the document the same way ElasticSearch merges partial update into the indexed document:
+     * nested objects are merged recursively, other values are replaced.
+     *
+     * @param document document, which is modified in place.
+     * @param changes  changes as nested objects.
+     */
+    public static void merge(ObjectNode document, JsonNode changes) {
+
+        Iterator<Map.Entry<String, JsonNode>> fields = changes.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            merge(document, field.getKey(), field.getValue());
+        }
+    }
+
+    private static void merge(ObjectNode document, String fieldName, JsonNode value) {
+
+        JsonNode existing = document.get(fieldName);
+        if (existing != null && existing.isObject() && value.isObject()) {
+            merge((ObjectNode) existing, value);
+        } else {
+            document.set(fieldName, (value.isObject()) ? value.deepCopy() : value);
+        }
+    }
+
 }
@@ -0,0 +1,106 @@
+package com.mapr.ojai.search.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.ojai.Document;
+import org.ojai.Value;
+import org.ojai.types.ODate;
+import org.ojai.types.OInterval;
+import org.ojai.types.OTime;
+import org.ojai.types.OTimestamp;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts OJAI values into JSON nodes, which are indexed by ElasticSearch according to the declared field types.
+ * Unlike OJAI extended JSON, typed values are converted into plain JSON:
+ * <ul>
+ * <li>timestamps into epoch milliseconds, accepted by 'date' fields;</li>
+ * <li>dates into 'yyyy-MM-dd' strings, accepted by 'date' fields;</li>
+ * <li>times into 'HH:mm:ss.SSS' strings;</li>
+ * <li>intervals into milliseconds;</li>
+ * <li>decimals into JSON numbers without loss of precision;</li>
+ * <li>binary values into base64 strings, accepted by 'binary' fields.</li>
+ * </ul>
+ * Nested maps are converted into JSON objects, so a map with 'lat' and 'lon' numbers is indexed by 'geo_point' field.
+ */
+public final class OjaiValues {
+
+    private static final JsonNodeFactory nodes = JsonNodeFactory.withExactBigDecimals(true);
+
+    private OjaiValues() {
+    }
+
+    public static JsonNode toJsonNode(Value value) {
+        return (value != null) ? convert(value.getObject()) : nodes.nullNode();
+    }
+
+    public static JsonNode toJsonNode(Document document) {
+        return (document != null) ? convert(document.asMap()) : nodes.nullNode();
+    }
+
+    /**
+     * Converts the Java representation of OJAI value, as returned by {@link Value#getObject()}.
+     */
+    private static JsonNode convert(Object object) {
+
+        if (object == null) {
+            return nodes.nullNode();
+        } else if (object instanceof Value) {
+            return convert(((Value) object).getObject());
+        } else if (object instanceof Document) {
+            return convert(((Document) object).asMap());
+        } else if (object instanceof String) {
+            return nodes.textNode((String) object);
+        } else if (object instanceof Boolean) {
+            return nodes.booleanNode((Boolean) object);
+        } else if (object instanceof Byte || object instanceof Short || object instanceof Integer) {
+            return nodes.numberNode(((Number) object).intValue());
+        } else if (object instanceof Long) {
+            return nodes.numberNode((Long) object);
+        } else if (object instanceof Float) {
+            return nodes.numberNode((Float) object);
+        } else if (object instanceof Double) {
+            return nodes.numberNode((Double) object);
+        } else if (object instanceof BigDecimal) {
+            return nodes.numberNode((BigDecimal) object);
+        } else if (object instanceof BigInteger) {
+            return nodes.numberNode((BigInteger) object);
+        } else if (object instanceof OTimestamp) {
+            return nodes.numberNode(((OTimestamp) object).getMillis());
+        } else if (object instanceof ODate) {
+            return nodes.textNode(((ODate) object).toDateStr());
+        } else if (object instanceof OTime) {
+            return nodes.textNode(((OTime) object).toTimeStr());
+        } else if (object instanceof OInterval) {
+            return nodes.numberNode(((OInterval) object).getTimeInMillis());
+        } else if (object instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) object).duplicate();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return nodes.textNode(Base64.getEncoder().encodeToString(bytes));
+        } else if (object instanceof Map) {
+            ObjectNode objectNode = nodes.objectNode();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                objectNode.set(String.valueOf(entry.getKey()), convert(entry.getValue()));
+            }
+            return objectNode;
+        } else if (object instanceof List) {
+            ArrayNode arrayNode = nodes.arrayNode();
+            for (Object element : (List<?>) object) {
+                arrayNode.add(convert(element));
+            }
+            return arrayNode;
+        }
+
+        throw new IllegalArgumentException("Unsupported OJAI value of type " + object.getClass().getName());
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.mapr.ojai.search.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates executors, which run each task at its own thread. Tasks block on ElasticSearch and MapR-DB calls, so
+ * virtual threads are used if requested and supported by the running JVM (Java 21+). Otherwise, tasks run at the
+ * cached pool of daemon platform threads.
+ */
+public final class ThreadPools {
+
+    private static final Logger log = LoggerFactory.getLogger(ThreadPools.class);
+
+    private ThreadPools() {
+    }
+
+    /**
+     * @param name    thread name prefix.
+     * @param virtual whether virtual threads should be used.
+     * @return executor, which should be shut down by the caller.
+     */
+    public static ExecutorService newExecutor(String name, boolean virtual) {
+
+        if (virtual) {
+            ExecutorService executor = newVirtualThreadExecutor(name);
+            if (executor != null) {
+                return executor;
+            }
+
+            log.warn("Virtual threads are not supported by Java {}, '{}' tasks run at platform threads",
+                    System.getProperty("java.version"), name);
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Project targets Java 8, so virtual thread API is accessed reflectively.
+     */
+    private static ExecutorService newVirtualThreadExecutor(String name) {
+
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+
+            Method perTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) perTaskExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+}
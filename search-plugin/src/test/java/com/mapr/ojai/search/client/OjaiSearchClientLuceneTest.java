@@ -0,0 +1,83 @@
+package com.mapr.ojai.search.client;
+
+import com.mapr.ojai.search.client.query.Term;
+import com.mapr.ojai.search.config.LuceneConfig;
+import com.mapr.ojai.search.lucene.LuceneIndexes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ojai.store.Connection;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+
+import static org.junit.Assert.*;
+
+public class OjaiSearchClientLuceneTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LuceneIndexes indexes;
+    private OjaiSearchClient searchClient;
+
+    @Before
+    public void setup() {
+
+        LuceneConfig config = new LuceneConfig();
+        config.setPath(folder.getRoot().getAbsolutePath());
+        indexes = LuceneIndexes.open(config);
+
+        // Searches of the embedded Lucene backend do not touch MapR-DB
+        Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> null);
+        searchClient = new OjaiSearchClient(connection, indexes);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        searchClient.close();
+        indexes.close();
+    }
+
+    @Test(timeout = 10_000)
+    public void tenantPermitIsReleasedWhenSearchReturns() {
+
+        searchClient.registerTenant("acme", new TenantPolicy().maxConcurrentSearches(1));
+
+        // Results are neither fetched nor closed, so no permit may outlive its search
+        for (int i = 0; i < 3; i++) {
+            OjaiSearchClient.OjaiSearchResult result = searchClient.search("/apps/events",
+                    new Term("status", "published"), new SearchOptions().tenant("acme"));
+            assertTrue(result.getHits().isEmpty());
+        }
+
+        assertEquals(3, searchClient.getTenantMetrics("acme").getSearches());
+        assertEquals(0, searchClient.getTenantMetrics("acme").getRejected());
+    }
+
+    @Test(timeout = 10_000)
+    public void tenantPermitIsReleasedWhenCountReturns() {
+
+        searchClient.registerTenant("acme", new TenantPolicy().maxConcurrentSearches(1));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, searchClient.count("/apps/events", new Term("status", "published"),
+                    new SearchOptions().tenant("acme")));
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void countWithReadAfterIsRejectedByLucene() {
+        searchClient.count("/apps/events", new Term("status", "published"),
+                new SearchOptions().readAfter(System.currentTimeMillis()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void searchWithReadAfterIsRejectedByLucene() {
+        searchClient.search("/apps/events", new Term("status", "published"),
+                new SearchOptions().readAfter(System.currentTimeMillis()));
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.mapr.ojai.search.client;
+
+import com.mapr.ojai.search.client.query.Match;
+import com.mapr.ojai.search.client.query.OjaiSearchQuery;
+import com.mapr.ojai.search.client.query.Range;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.script.CompiledScript;
+import org.elasticsearch.script.ScriptType;
+import org.elasticsearch.script.mustache.MustacheScriptEngineService;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PreparedSearchTemplateTest {
+
+    private static final MustacheScriptEngineService mustache = new MustacheScriptEngineService();
+
+    @Test
+    public void structuredQueryIsExecutedInFilterContext() {
+
+        Map<String, Object> source = render(new Range("price").lt(OjaiSearchClient.param("max")),
+                Collections.singletonMap("max", 100), new SearchOptions());
+
+        assertTrue(((Map<?, ?>) source.get("query")).containsKey("constant_score"));
+        assertEquals(10, source.get("size"));
+    }
+
+    @Test
+    public void limitsAreRenderedOnlyIfSet() {
+
+        Map<String, Object> source = render(new Match("title", OjaiSearchClient.param("text")),
+                Collections.singletonMap("text", "new york"), new SearchOptions());
+
+        assertFalse(source.containsKey("timeout"));
+        assertFalse(source.containsKey("terminate_after"));
+        assertFalse(source.containsKey("profile"));
+        assertFalse(source.containsKey("sort"));
+        assertFalse(source.containsKey("highlight"));
+
+        source = render(new Match("title", OjaiSearchClient.param("text")),
+                Collections.singletonMap("text", "new york"),
+                new SearchOptions().maxHits(5).timeoutMs(300).terminateAfter(1000));
+
+        assertEquals(5, source.get("size"));
+        assertEquals("300ms", source.get("timeout"));
+        assertEquals(1000, source.get("terminate_after"));
+    }
+
+    @Test
+    public void profileSortAndHighlightAreRendered() {
+
+        Map<String, Object> source = render(new Match("title", OjaiSearchClient.param("text")),
+                Collections.singletonMap("text", "new york"),
+                new SearchOptions().profile(true).sort("created", false).highlight("title"));
+
+        assertEquals(true, source.get("profile"));
+        assertEquals(true, source.get("track_scores"));
+        assertEquals(1, ((List<?>) source.get("sort")).size());
+        assertEquals(Collections.singletonMap("created", Collections.singletonMap("order", "desc")),
+                ((List<?>) source.get("sort")).get(0));
+        assertTrue(((Map<?, ?>) ((Map<?, ?>) source.get("highlight")).get("fields")).containsKey("title"));
+    }
+
+    @Test
+    public void placeholderValuesAreEscaped() {
+
+        Map<String, Object> source = render(new Match("title", OjaiSearchClient.param("text")),
+                Collections.singletonMap("text", "\"quoted\""), new SearchOptions());
+
+        Map<?, ?> match = (Map<?, ?>) ((Map<?, ?>) source.get("query")).get("match");
+        assertEquals("\"quoted\"", ((Map<?, ?>) match.get("title")).get("query"));
+    }
+
+    /**
+     * Renders the search template the same way ElasticSearch does at execution time.
+     */
+    private static Map<String, Object> render(OjaiSearchQuery query, Map<String, Object> params,
+                                              SearchOptions options) {
+
+        String template = OjaiSearchClient.searchTemplateSource(query);
+        CompiledScript compiled = new CompiledScript(ScriptType.INLINE, "prepared", "mustache",
+                mustache.compile("prepared", template, Collections.emptyMap()));
+        BytesReference rendered = (BytesReference) mustache.executable(compiled,
+                OjaiSearchClient.templateParams(params, options)).run();
+
+        return XContentHelper.convertToMap(rendered, false, XContentType.JSON).v2();
+    }
+
+}
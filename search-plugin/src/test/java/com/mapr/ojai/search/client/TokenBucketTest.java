@@ -0,0 +1,55 @@
+package com.mapr.ojai.search.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+
+    @Test
+    public void burstUpToCapacity() {
+
+        // Refill of this rate is negligible during the test
+        TokenBucket bucket = new TokenBucket(0.001, 3);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    public void refillsAtRate() throws InterruptedException {
+
+        TokenBucket bucket = new TokenBucket(100, 1);
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+
+        Thread.sleep(50L);
+        assertTrue(bucket.tryAcquire());
+    }
+
+    @Test
+    public void refillIsCappedByCapacity() throws InterruptedException {
+
+        TokenBucket bucket = new TokenBucket(1000, 2);
+        Thread.sleep(50L);
+
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+
+        // At most one token can be refilled between the calls
+        int acquired = 0;
+        for (int i = 0; i < 3; i++) {
+            if (bucket.tryAcquire()) {
+                acquired++;
+            }
+        }
+        assertTrue(acquired < 3);
+    }
+
+    @Test
+    public void zeroCapacityNeverAdmits() {
+        assertFalse(new TokenBucket(1000, 0).tryAcquire());
+    }
+
+}
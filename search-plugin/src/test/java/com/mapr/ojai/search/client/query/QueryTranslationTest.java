@@ -0,0 +1,200 @@
+package com.mapr.ojai.search.client.query;
+
+import com.mapr.ojai.search.lucene.LuceneQueryContext;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.MatchQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.index.query.TermQueryBuilder;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ojai.types.ODate;
+import org.ojai.types.OTimestamp;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QueryTranslationTest {
+
+    private static Directory directory;
+    private static DirectoryReader reader;
+    private static LuceneQueryContext context;
+
+    @BeforeClass
+    public static void setup() throws IOException {
+
+        directory = new RAMDirectory();
+        new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer())).close();
+        reader = DirectoryReader.open(directory);
+        context = new LuceneQueryContext(new StandardAnalyzer(), reader);
+    }
+
+    @AfterClass
+    public static void cleanup() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    @Test
+    public void boolClausesAreTranslatedToElasticSearch() {
+
+        BoolQueryBuilder query = (BoolQueryBuilder) new Bool()
+                .must(new Match("description", "new york"))
+                .should(new Match("title", "city"))
+                .filter(new Term("status", "published"))
+                .mustNot(new Term("status", "deleted"))
+                .minimumShouldMatch(1)
+                .query();
+
+        assertEquals(1, query.must().size());
+        assertTrue(query.must().get(0) instanceof MatchQueryBuilder);
+        assertEquals(1, query.should().size());
+        assertEquals(1, query.filter().size());
+        assertEquals("published", ((TermQueryBuilder) query.filter().get(0)).value());
+        assertEquals(1, query.mustNot().size());
+        assertEquals("deleted", ((TermQueryBuilder) query.mustNot().get(0)).value());
+        assertEquals("1", query.minimumShouldMatch());
+    }
+
+    @Test
+    public void structuredMustClauseIsExecutedInFilterContext() {
+
+        BoolQueryBuilder query = (BoolQueryBuilder) new Bool()
+                .must(new Term("status", "published"))
+                .must(new Range("price").lt(100))
+                .query();
+
+        assertTrue(query.must().isEmpty());
+        assertEquals(2, query.filter().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullClauseIsRejected() {
+        new Bool().should(null);
+    }
+
+    @Test
+    public void boolClausesAreTranslatedToLucene() {
+
+        BooleanQuery query = (BooleanQuery) new Bool()
+                .must(new Match("description", "york"))
+                .should(new Match("title", "city"))
+                .must(new Term("status", "published"))
+                .mustNot(new Term("status", "deleted"))
+                .minimumShouldMatch(1)
+                .luceneQuery(context);
+
+        List<BooleanClause> clauses = query.clauses();
+        assertEquals(4, clauses.size());
+        assertEquals(BooleanClause.Occur.MUST, clauses.get(0).getOccur());
+        assertEquals(BooleanClause.Occur.SHOULD, clauses.get(1).getOccur());
+        assertEquals(BooleanClause.Occur.FILTER, clauses.get(2).getOccur());
+        assertEquals(new TermQuery(new org.apache.lucene.index.Term("status", "published")),
+                clauses.get(2).getQuery());
+        assertEquals(BooleanClause.Occur.MUST_NOT, clauses.get(3).getOccur());
+        assertEquals(1, query.getMinimumNumberShouldMatch());
+    }
+
+    @Test
+    public void mustNotOnlyBoolMatchesAllOtherDocumentsInLucene() {
+
+        BooleanQuery query = (BooleanQuery) new Bool()
+                .mustNot(new Term("status", "deleted"))
+                .luceneQuery(context);
+
+        assertEquals(2, query.clauses().size());
+        assertEquals(BooleanClause.Occur.MUST_NOT, query.clauses().get(0).getOccur());
+        assertEquals(BooleanClause.Occur.MUST, query.clauses().get(1).getOccur());
+        assertTrue(query.clauses().get(1).getQuery() instanceof MatchAllDocsQuery);
+    }
+
+    @Test
+    public void rangeBoundsAreTranslatedToElasticSearch() {
+
+        RangeQueryBuilder query = (RangeQueryBuilder) new Range("price").gte(10).lt(20).query();
+        assertEquals("price", query.fieldName());
+        assertEquals(10, query.from());
+        assertTrue(query.includeLower());
+        assertEquals(20, query.to());
+        assertFalse(query.includeUpper());
+    }
+
+    @Test
+    public void openRangeHasNoUpperBound() {
+
+        RangeQueryBuilder query = (RangeQueryBuilder) new Range("price").gt(10).query();
+        assertEquals(10, query.from());
+        assertFalse(query.includeLower());
+        assertNull(query.to());
+    }
+
+    @Test
+    public void ojaiBoundsAreConvertedAsIndexedValues() {
+
+        RangeQueryBuilder query = (RangeQueryBuilder) new Range("created")
+                .gte(new ODate(2017, 1, 1))
+                .lte(new OTimestamp(1500000000000L))
+                .format("yyyy-MM-dd||epoch_millis")
+                .timeZone("+01:00")
+                .query();
+
+        assertEquals("2017-01-01", query.from());
+        assertEquals(1500000000000L, query.to());
+        assertEquals("yyyy-MM-dd||epoch_millis", query.format());
+        assertEquals("+01:00", query.timeZone());
+    }
+
+    @Test
+    public void rangeIsTranslatedToLucenePointRange() {
+
+        assertEquals(DoublePoint.newRangeQuery("price", 10, Math.nextDown(20.0)),
+                new Range("price").gte(10).lt(20).luceneQuery(context));
+
+        assertEquals(DoublePoint.newRangeQuery("price", Math.nextUp(10.0), Double.POSITIVE_INFINITY),
+                new Range("price").gt(10).luceneQuery(context));
+
+        assertEquals(DoublePoint.newRangeQuery("created", Double.NEGATIVE_INFINITY, 1500000000000.0),
+                new Range("created").lte(new OTimestamp(1500000000000L)).luceneQuery(context));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void dateMathRangeIsRejectedByLucene() {
+        new Range("created").gte("now-1d/d").luceneQuery(context);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void rangeTimeZoneIsRejectedByLucene() {
+        new Range("created").gte(new OTimestamp(0L)).timeZone("+01:00").luceneQuery(context);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void queryWithoutLuceneTranslationIsRejectedByLucene() {
+        OjaiSearchQuery external = QueryBuilders::matchAllQuery;
+        external.luceneQuery(context);
+    }
+
+    @Test
+    public void filterClauseIsNotScoredInLucene() {
+
+        Query range = new Range("price").gte(1).luceneQuery(context);
+        BooleanQuery query = (BooleanQuery) new Bool().filter(new Range("price").gte(1)).luceneQuery(context);
+        assertEquals(range, query.clauses().get(0).getQuery());
+        assertEquals(BooleanClause.Occur.FILTER, query.clauses().get(0).getOccur());
+    }
+
+}
@@ -0,0 +1,216 @@
+package com.mapr.ojai.search.config;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SearchServiceConfigTest {
+
+    private static final String TABLE = String.join("\n",
+            "tables:",
+            "  -",
+            "    path: /apps/events",
+            "    changelog: /apps/events_changelog:events");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testConfigIsValid() {
+        SearchServiceConfig.fromResource("config.yml").validate();
+    }
+
+    @Test
+    public void minimalConfigIsValid() throws IOException {
+        config("elastic: localhost:9300", TABLE).validate();
+    }
+
+    @Test
+    public void elasticHostPortIsRequired() throws IOException {
+        assertInvalid(config(TABLE), "Elastic host-port is empty");
+        assertInvalid(config("elastic: localhost", TABLE), "Must be in 'host:port' format");
+        assertInvalid(config("elastic: localhost:port", TABLE), "Can not parse port as number");
+    }
+
+    @Test
+    public void luceneBackendRequiresPathInsteadOfElastic() throws IOException {
+
+        config("backend: lucene", "lucene:", "  path: /tmp/indices", TABLE).validate();
+        assertInvalid(config("backend: lucene", TABLE), "Lucene backend requires 'lucene.path'");
+    }
+
+    @Test
+    public void luceneBackendRejectsSpillAndConsistentReads() throws IOException {
+
+        assertInvalid(config("backend: lucene", "lucene:", "  path: /tmp/indices",
+                "spill:", "  directory: /tmp/spill", TABLE), "Spill log is not supported");
+
+        assertInvalid(config("backend: lucene", "lucene:", "  path: /tmp/indices",
+                "consistency:", "  enabled: true", TABLE), "Consistent-read mode is not supported");
+    }
+
+    @Test
+    public void consistentReadsRequirePositivePublishInterval() throws IOException {
+
+        config("elastic: localhost:9300", "consistency:", "  enabled: true", TABLE).validate();
+        assertInvalid(config("elastic: localhost:9300", "consistency:", "  enabled: true",
+                "  publishIntervalMs: 0", TABLE), "Consistency publish interval must be positive");
+    }
+
+    @Test
+    public void spillSizesAreChecked() throws IOException {
+
+        config("elastic: localhost:9300", "spill:", "  directory: /tmp/spill", TABLE).validate();
+        assertInvalid(config("elastic: localhost:9300", "spill:", "  directory: /tmp/spill",
+                "  segmentBytes: 1024", "  maxBytes: 512", TABLE), "Spill segment size must be positive");
+        assertInvalid(config("elastic: localhost:9300", "spill:", "  segmentBytes: 1024", TABLE),
+                "Spill directory can not be empty");
+    }
+
+    @Test
+    public void deadLetterDestinationIsChecked() throws IOException {
+
+        config("elastic: localhost:9300", "deadLetter:", "  type: stream",
+                "  topic: /apps/dlq:errors", TABLE).validate();
+        config("elastic: localhost:9300", "deadLetter:", "  type: file", "  path: /tmp/dlq.jsonl", TABLE).validate();
+
+        assertInvalid(config("elastic: localhost:9300", "deadLetter:", "  type: stream", "  topic: errors", TABLE),
+                "Dead-letter topic must be in '/stream-name:topic-name' format");
+        assertInvalid(config("elastic: localhost:9300", "deadLetter:", "  type: file", TABLE),
+                "Dead-letter file path can not be empty");
+    }
+
+    @Test
+    public void consumerTablesMustBeDeclared() throws IOException {
+        assertInvalid(config("elastic: localhost:9300", "consumer:", "  tables:", "    - /apps/unknown", TABLE),
+                "Consumer table '/apps/unknown' is not declared at tables");
+    }
+
+    @Test
+    public void allProblemsAreReported() throws IOException {
+
+        SearchServiceConfig config = config("consumer:", "  groupId: ''", "  shutdownTimeoutMs: 0", TABLE);
+        assertInvalid(config, "Elastic host-port is empty");
+        assertInvalid(config, "Consumer group id can not be empty");
+        assertInvalid(config, "Consumer shutdown timeout must be positive");
+    }
+
+    @Test
+    public void timeBucketAndTimestampFieldGoTogether() throws IOException {
+
+        tableConfig("    index:", "      timeBucket: month", "      timestampField: created").validate();
+        assertInvalid(tableConfig("    index:", "      timeBucket: month"),
+                "declares time bucket, but does not declare timestamp field");
+        assertInvalid(tableConfig("    index:", "      timestampField: created"),
+                "declares timestamp field, but does not declare time bucket");
+    }
+
+    @Test
+    public void shardsAndReplicasAreChecked() throws IOException {
+        assertInvalid(tableConfig("    index:", "      shards: 0"), "must have positive number of shards");
+        assertInvalid(tableConfig("    index:", "      replicas: -1"), "can not have negative number of replicas");
+    }
+
+    @Test
+    public void routingFieldMustBeIndexed() throws IOException {
+
+        tableConfig("    indexedFields:", "      - customer_id", "    index:", "      routingField: customer_id")
+                .validate();
+        assertInvalid(tableConfig("    indexedFields:", "      - title", "    index:",
+                "      routingField: customer_id"), "Routing field 'customer_id' of table '/apps/events' must be");
+    }
+
+    @Test
+    public void explicitMappingIsValid() throws IOException {
+
+        tableConfig("    indexedFields:", "      - title", "      - price", "      - location",
+                "    mapping:",
+                "      dynamic: strict",
+                "      fields:",
+                "        title:",
+                "          type: text",
+                "          analyzer: english",
+                "          autocomplete: true",
+                "        price:",
+                "          type: scaled_float",
+                "          scalingFactor: 100",
+                "        location:",
+                "          type: geo_point").validate();
+    }
+
+    @Test
+    public void fieldTypeAndItsOptionsMustMatch() throws IOException {
+
+        assertInvalid(mappedField("type: string"), "has invalid type 'string'");
+        assertInvalid(mappedField("type: keyword", "analyzer: english"), "declares analyzer, but it is not a 'text'");
+        assertInvalid(mappedField("type: long", "autocomplete: true"), "is autocomplete, but it is neither");
+        assertInvalid(mappedField("type: keyword", "format: yyyy-MM-dd"), "declares format, but it is not a 'date'");
+        assertInvalid(mappedField("type: scaled_float"), "must declare scaling factor if and only if");
+        assertInvalid(mappedField("type: double", "scalingFactor: 10"), "must declare scaling factor if and only if");
+        assertInvalid(mappedField("type: scaled_float", "scalingFactor: 0"), "has invalid scaling factor");
+    }
+
+    @Test
+    public void dynamicMappingValueIsChecked() throws IOException {
+        assertInvalid(tableConfig("    mapping:", "      dynamic: sometimes"), "has invalid dynamic mapping value");
+    }
+
+    @Test
+    public void strictMappingMustDeclareIndexedFields() throws IOException {
+
+        assertInvalid(tableConfig("    mapping:", "      dynamic: strict"),
+                "has strict mapping, so it must declare indexed fields");
+
+        assertInvalid(tableConfig("    indexedFields:", "      - title", "      - status",
+                "    mapping:",
+                "      dynamic: strict",
+                "      fields:",
+                "        title:",
+                "          type: text"), "Indexed field 'status' of table '/apps/events' is not declared");
+    }
+
+    private SearchServiceConfig tableConfig(String... tableLines) throws IOException {
+
+        String[] lines = Arrays.copyOf(new String[]{"elastic: localhost:9300", TABLE}, 2 + tableLines.length);
+        System.arraycopy(tableLines, 0, lines, 2, tableLines.length);
+        return config(lines);
+    }
+
+    private SearchServiceConfig mappedField(String... options) throws IOException {
+
+        String[] lines = new String[4 + options.length];
+        lines[0] = "    mapping:";
+        lines[1] = "      fields:";
+        lines[2] = "        field:";
+        for (int i = 0; i < options.length; i++) {
+            lines[3 + i] = "          " + options[i];
+        }
+        lines[lines.length - 1] = "";
+        return tableConfig(lines);
+    }
+
+    private SearchServiceConfig config(String... lines) throws IOException {
+
+        File file = folder.newFile();
+        Files.write(file.toPath(), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return SearchServiceConfig.fromFile(file.getAbsolutePath());
+    }
+
+    private static void assertInvalid(SearchServiceConfig config, String expectedProblem) {
+        try {
+            config.validate();
+            fail("Config is valid, but '" + expectedProblem + "' is expected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(expectedProblem));
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.mapr.ojai.search.lucene;
+
+import com.mapr.ojai.search.config.LuceneConfig;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class LuceneIndexesTest {
+
+    private static final String INDEX = "apps_events";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void searchingInstanceSharesWritableOne() throws IOException {
+
+        LuceneConfig config = config();
+        try (LuceneIndexes writable = LuceneIndexes.openForWriting(config);
+             LuceneIndexes searching = LuceneIndexes.open(config)) {
+            assertSame(writable, searching);
+        }
+    }
+
+    @Test
+    public void closingSearchingInstanceKeepsWriterOpen() throws IOException {
+
+        LuceneConfig config = config();
+        LuceneIndexes writable = LuceneIndexes.openForWriting(config);
+        writable.update(INDEX, "1", document("1"));
+
+        LuceneIndexes searching = LuceneIndexes.open(config);
+        searching.close();
+
+        // Indexing service keeps writing to the shared instance
+        writable.update(INDEX, "2", document("2"));
+        writable.commit();
+        writable.close();
+
+        try (Directory directory = FSDirectory.open(folder.getRoot().toPath().resolve(INDEX));
+             DirectoryReader reader = DirectoryReader.open(directory)) {
+            assertEquals(2, reader.numDocs());
+        }
+    }
+
+    @Test
+    public void lastOwnerClosesWritableInstance() throws IOException {
+
+        LuceneConfig config = config();
+        LuceneIndexes writable = LuceneIndexes.openForWriting(config);
+        LuceneIndexes searching = LuceneIndexes.open(config);
+        writable.update(INDEX, "1", document("1"));
+
+        writable.close();
+        searching.close();
+
+        // Instance is no longer shared, so searching instance is read-only and sees committed changes
+        try (LuceneIndexes reopened = LuceneIndexes.open(config)) {
+            assertNotSame(writable, reopened);
+            IndexSearcher searcher = reopened.acquire(INDEX);
+            try {
+                assertEquals(1, searcher.getIndexReader().numDocs());
+            } finally {
+                reopened.release(INDEX, searcher);
+            }
+        }
+    }
+
+    private LuceneConfig config() {
+        LuceneConfig config = new LuceneConfig();
+        config.setPath(folder.getRoot().getAbsolutePath());
+        return config;
+    }
+
+    private static Document document(String id) {
+        Document document = new Document();
+        document.add(new StringField(LuceneDocuments.ID_FIELD, id, Field.Store.YES));
+        return document;
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.mapr.ojai.search.service;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long LATENCY_THRESHOLD_MS = 100L;
+
+    @Test
+    public void limitStartsAtOne() {
+        assertEquals(1, new AdaptiveConcurrencyLimiter(8, LATENCY_THRESHOLD_MS, 1000L).getLimit());
+    }
+
+    @Test
+    public void limitGrowsByOnePerLimitOfHealthyResponses() throws InterruptedException {
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, LATENCY_THRESHOLD_MS, 1000L);
+        respond(limiter, 1, false);
+        assertEquals(2, limiter.getLimit());
+
+        // Each response adds 1 / limit: 2.5, 2.9, 3.24
+        respond(limiter, 1, false);
+        respond(limiter, 1, false);
+        assertEquals(2, limiter.getLimit());
+
+        respond(limiter, 1, false);
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    public void limitIsCappedByMaxLimit() throws InterruptedException {
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, LATENCY_THRESHOLD_MS, 1000L);
+        for (int i = 0; i < 100; i++) {
+            respond(limiter, 1, false);
+        }
+
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void limitHalvesOnRejectionAndSlowResponse() throws InterruptedException {
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(16, LATENCY_THRESHOLD_MS, 1000L);
+        while (limiter.getLimit() < 16) {
+            respond(limiter, 1, false);
+        }
+
+        respond(limiter, 1, true);
+        assertEquals(8, limiter.getLimit());
+
+        respond(limiter, LATENCY_THRESHOLD_MS + 1, false);
+        assertEquals(4, limiter.getLimit());
+
+        respond(limiter, LATENCY_THRESHOLD_MS, false);
+        assertEquals(4, limiter.getLimit());
+        assertFalse(limiter.isOverloaded());
+    }
+
+    @Test
+    public void overloadedOnlyAfterDecreaseAtMinimumLimit() throws InterruptedException {
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, LATENCY_THRESHOLD_MS, 1000L);
+        respond(limiter, 1, false);
+        respond(limiter, 1, true);
+        assertEquals(1, limiter.getLimit());
+        assertFalse(limiter.isOverloaded());
+
+        respond(limiter, 1, true);
+        assertEquals(1, limiter.getLimit());
+        assertTrue(limiter.isOverloaded());
+    }
+
+    @Test
+    public void overloadExpiresAfterWindow() throws InterruptedException {
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, LATENCY_THRESHOLD_MS, 50L);
+        respond(limiter, 1, true);
+        assertTrue(limiter.isOverloaded());
+
+        Thread.sleep(100L);
+        assertFalse(limiter.isOverloaded());
+    }
+
+    @Test(timeout = 5000L)
+    public void acquireWaitsForRelease() throws InterruptedException {
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, LATENCY_THRESHOLD_MS, 1000L);
+        limiter.acquire();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire();
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+
+        assertFalse(acquired.await(100L, TimeUnit.MILLISECONDS));
+
+        limiter.release(1, false);
+        assertTrue(acquired.await(1L, TimeUnit.SECONDS));
+        waiter.join();
+    }
+
+    private static void respond(AdaptiveConcurrencyLimiter limiter, long latencyMs, boolean rejected)
+            throws InterruptedException {
+        limiter.acquire();
+        limiter.release(latencyMs, rejected);
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.mapr.ojai.search.service;
+
+import com.mapr.ojai.search.config.SearchServiceConfig;
+import com.mapr.ojai.search.config.TableConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class IndexingWatermarksTest {
+
+    private static final String TABLE = "/apps/events";
+    private static final String CHANGELOG = "/apps/events_changelog:events";
+    private static final Map<String, Integer> PARTITION_COUNTS = Collections.singletonMap(CHANGELOG, 2);
+
+    private static final TopicPartition PARTITION_0 = new TopicPartition(CHANGELOG, 0);
+    private static final TopicPartition PARTITION_1 = new TopicPartition(CHANGELOG, 1);
+    private static final Set<TopicPartition> ASSIGNMENT = new HashSet<>(Arrays.asList(PARTITION_0, PARTITION_1));
+
+    private SearchServiceConfig config;
+    private IndexingWatermarks watermarks;
+
+    @Before
+    public void setup() {
+
+        TableConfig table = new TableConfig();
+        table.setPath(TABLE);
+        table.setChangelog(CHANGELOG);
+
+        config = new SearchServiceConfig();
+        config.setTables(Collections.singletonList(table));
+        watermarks = new IndexingWatermarks(config);
+    }
+
+    @Test
+    public void writeIsVisibleToReadAfterNowOnQuietTable() {
+
+        // Write is the last change of the table, its timestamp precedes the time the writer takes after the write
+        long opTimestamp = System.currentTimeMillis();
+        watermarks.processed(CHANGELOG, 0, opTimestamp);
+        long writtenAt = opTimestamp + 5;
+
+        // Nothing else is written, next poll finds both partitions caught up
+        long polledAt = writtenAt + 10;
+        Map<Integer, Long> published = published(watermarks, ASSIGNMENT, ASSIGNMENT, polledAt);
+
+        assertEquals(2, published.size());
+        assertTrue(published.values().stream().allMatch(timestamp -> timestamp >= writtenAt));
+    }
+
+    @Test
+    public void caughtUpPartitionWithoutChangesHasPollTime() {
+
+        Map<Integer, Long> published = published(watermarks, ASSIGNMENT, ASSIGNMENT, 100L);
+        assertEquals(Long.valueOf(100L), published.get(0));
+        assertEquals(Long.valueOf(100L), published.get(1));
+    }
+
+    @Test
+    public void laggingPartitionHasLatestProcessedTimestamp() {
+
+        watermarks.processed(CHANGELOG, 0, 90L);
+        watermarks.processed(CHANGELOG, 1, 50L);
+        watermarks.processed(CHANGELOG, 1, 40L);
+
+        Map<Integer, Long> published = published(watermarks, ASSIGNMENT, Collections.singleton(PARTITION_0), 100L);
+        assertEquals(Long.valueOf(100L), published.get(0));
+        assertEquals(Long.valueOf(50L), published.get(1));
+    }
+
+    @Test
+    public void laggingPartitionWithoutProcessedChangesHasNoWatermark() {
+        assertEquals(Collections.singleton(0),
+                published(watermarks, ASSIGNMENT, Collections.singleton(PARTITION_0), 100L).keySet());
+    }
+
+    @Test
+    public void instancesPublishOnlyTheirOwnPartitions() {
+
+        // Instance A owns caught-up partition 0, instance B owns lagging partition 1
+        IndexingWatermarks other = new IndexingWatermarks(config);
+        other.processed(CHANGELOG, 1, 50L);
+
+        Set<TopicPartition> assignment = Collections.singleton(PARTITION_0);
+        List<PartitionWatermark> first = watermarks.partitionWatermarks(assignment, assignment, 100L,
+                PARTITION_COUNTS);
+        List<PartitionWatermark> second = other.partitionWatermarks(Collections.singleton(PARTITION_1),
+                Collections.emptySet(), 100L, PARTITION_COUNTS);
+
+        assertEquals(1, first.size());
+        assertEquals(0, first.get(0).getPartition());
+        assertEquals(1, second.size());
+        assertEquals(1, second.get(0).getPartition());
+        assertEquals(50L, second.get(0).getTimestamp());
+
+        // Both carry the number of partitions, so the client takes the minimum over both
+        assertEquals(2, first.get(0).getPartitions());
+        assertEquals(2, second.get(0).getPartitions());
+    }
+
+    @Test
+    public void unassignedPartitionsAreForgotten() {
+
+        watermarks.processed(CHANGELOG, 1, 50L);
+        watermarks.retain(Collections.singleton(PARTITION_0));
+
+        Set<TopicPartition> assignment = Collections.singleton(PARTITION_0);
+        assertEquals(Collections.singletonMap(0, 100L), published(watermarks, assignment, assignment, 100L));
+    }
+
+    @Test
+    public void changelogsOfUnknownTablesAreIgnored() {
+
+        Set<TopicPartition> assignment = Collections.singleton(new TopicPartition("/apps/other:other", 0));
+        assertTrue(watermarks.partitionWatermarks(assignment, assignment, 100L,
+                Collections.singletonMap("/apps/other:other", 1)).isEmpty());
+    }
+
+    private static Map<Integer, Long> published(IndexingWatermarks watermarks, Set<TopicPartition> assignment,
+                                                Set<TopicPartition> caughtUp, long polledAt) {
+
+        List<PartitionWatermark> published = watermarks.partitionWatermarks(assignment, caughtUp, polledAt,
+                PARTITION_COUNTS);
+        assertTrue(published.stream().allMatch(watermark -> TABLE.equals(watermark.getTablePath())));
+
+        return published.stream()
+                .collect(Collectors.toMap(PartitionWatermark::getPartition, PartitionWatermark::getTimestamp));
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.mapr.ojai.search.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PooledSourceBufferTest {
+
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    @Test
+    public void encodedSourcesAreReadableByElasticSearch() throws IOException {
+
+        assertReadable(jsonMapper, XContentType.JSON);
+        assertReadable(new ObjectMapper(new SmileFactory()), XContentType.SMILE);
+        assertReadable(new ObjectMapper(new CBORFactory()), XContentType.CBOR);
+    }
+
+    @Test
+    public void sourceIsMovedToNextSlabWhole() throws IOException {
+
+        PooledSourceBuffer buffer = new PooledSourceBuffer();
+        char[] chars = new char[300_000];
+        Arrays.fill(chars, 'x');
+
+        BytesReference first = null;
+        for (int i = 0; i < 5; i++) {
+            ObjectNode document = jsonMapper.createObjectNode().put("id", i).put("text", new String(chars));
+            BytesReference encoded = buffer.encode(jsonMapper, document);
+            if (first == null) {
+                first = encoded;
+            }
+
+            assertEquals(document, jsonMapper.readTree(BytesReference.toBytes(encoded)));
+        }
+
+        // Sources, which are already encoded, stay valid until release
+        assertEquals(0, jsonMapper.readTree(BytesReference.toBytes(first)).get("id").asInt());
+        buffer.release();
+    }
+
+    private static void assertReadable(ObjectMapper mapper, XContentType type) throws IOException {
+
+        ObjectNode document = jsonMapper.createObjectNode().put("title", "new york").put("price", 10.5);
+        document.putArray("tags").add("city").add(1);
+
+        PooledSourceBuffer buffer = new PooledSourceBuffer();
+        BytesReference encoded = buffer.encode(mapper, document);
+        assertEquals(type, XContentFactory.xContentType(encoded));
+
+        Map<String, Object> source = XContentHelper.convertToMap(encoded, false, type).v2();
+        assertEquals("new york", source.get("title"));
+        assertEquals(10.5, source.get("price"));
+        assertEquals(Arrays.asList("city", 1), source.get("tags"));
+        buffer.release();
+    }
+
+}
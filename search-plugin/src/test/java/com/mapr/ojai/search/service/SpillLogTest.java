@@ -0,0 +1,270 @@
+package com.mapr.ojai.search.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mapr.ojai.search.config.SpillConfig;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class SpillLogTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendedChangesAreReadInOrder() throws IOException {
+
+        try (SpillLog spillLog = new SpillLog(config(4096, 1024 * 1024))) {
+            assertTrue(spillLog.isEmpty());
+
+            assertTrue(spillLog.append(change("1", DeadLetterRecord.Operation.INDEX)));
+            assertTrue(spillLog.append(change("2", DeadLetterRecord.Operation.DELETE)));
+            assertFalse(spillLog.isEmpty());
+            assertTrue(spillLog.getBytes() > 0);
+
+            SpillLog.Batch batch = spillLog.read(10);
+            assertEquals(Arrays.asList("1", "2"), ids(batch));
+            assertEquals(DeadLetterRecord.Operation.DELETE, batch.getChanges().get(1).getOperation());
+            assertEquals("value-1", batch.getChanges().get(0).getSource().path("field").asText());
+
+            spillLog.commit(batch);
+            assertTrue(spillLog.isEmpty());
+            assertEquals(0, spillLog.getBytes());
+        }
+    }
+
+    @Test
+    public void readIsLimitedByMaxChanges() throws IOException {
+
+        try (SpillLog spillLog = new SpillLog(config(4096, 1024 * 1024))) {
+            for (int i = 0; i < 5; i++) {
+                spillLog.append(change(String.valueOf(i), DeadLetterRecord.Operation.INDEX));
+            }
+
+            SpillLog.Batch first = spillLog.read(3);
+            assertEquals(Arrays.asList("0", "1", "2"), ids(first));
+            spillLog.commit(first);
+
+            assertEquals(Arrays.asList("3", "4"), ids(spillLog.read(3)));
+        }
+    }
+
+    @Test
+    public void uncommittedChangesAreReplayedAfterRestart() throws IOException {
+
+        SpillConfig config = config(4096, 1024 * 1024);
+        try (SpillLog spillLog = new SpillLog(config)) {
+            spillLog.append(change("1", DeadLetterRecord.Operation.INDEX));
+            spillLog.append(change("2", DeadLetterRecord.Operation.INDEX));
+            spillLog.append(change("3", DeadLetterRecord.Operation.INDEX));
+
+            // Replay of the first change completes, replay of the rest does not
+            spillLog.commit(spillLog.read(1));
+            spillLog.read(2);
+        }
+
+        try (SpillLog reopened = new SpillLog(config)) {
+            assertEquals(Arrays.asList("2", "3"), ids(reopened.read(10)));
+        }
+    }
+
+    @Test
+    public void syncedChangesSurviveCrash() throws IOException {
+
+        SpillConfig config = config(4096, 1024 * 1024);
+
+        // Log is not closed, as if the process crashed after sync
+        SpillLog crashed = new SpillLog(config);
+        crashed.append(change("1", DeadLetterRecord.Operation.INDEX));
+        crashed.sync();
+
+        try (SpillLog reopened = new SpillLog(config)) {
+            assertEquals(Arrays.asList("1"), ids(reopened.read(10)));
+        }
+    }
+
+    @Test
+    public void tornRecordIsTruncatedAfterCrash() throws IOException {
+
+        SpillConfig config = config(4096, 1024 * 1024);
+        long secondRecordAt;
+        try (SpillLog spillLog = new SpillLog(config)) {
+            spillLog.append(change("1", DeadLetterRecord.Operation.INDEX));
+            secondRecordAt = spillLog.getBytes();
+            spillLog.append(change("2", DeadLetterRecord.Operation.INDEX));
+        }
+
+        // Crash during append leaves the header of the second record, but not all of its payload
+        try (RandomAccessFile file = new RandomAccessFile(segmentFiles().get(0).toFile(), "rw")) {
+            file.seek(secondRecordAt + 12);
+            file.write(new byte[]{1, 2, 3, 4});
+        }
+
+        try (SpillLog reopened = new SpillLog(config)) {
+            assertEquals(secondRecordAt, reopened.getBytes());
+
+            // Appended change replaces the torn record
+            reopened.append(change("3", DeadLetterRecord.Operation.INDEX));
+            assertEquals(Arrays.asList("1", "3"), ids(reopened.read(10)));
+        }
+    }
+
+    @Test
+    public void recordLongerThanSegmentIsTruncatedAfterCrash() throws IOException {
+
+        SpillConfig config = config(4096, 1024 * 1024);
+        try (SpillLog spillLog = new SpillLog(config)) {
+            spillLog.append(change("1", DeadLetterRecord.Operation.INDEX));
+        }
+
+        long end;
+        try (SpillLog spillLog = new SpillLog(config)) {
+            end = spillLog.getBytes();
+        }
+
+        // Length of the torn header points past the end of the segment
+        try (RandomAccessFile file = new RandomAccessFile(segmentFiles().get(0).toFile(), "rw")) {
+            file.seek(end);
+            file.writeInt(Integer.MAX_VALUE);
+        }
+
+        try (SpillLog reopened = new SpillLog(config)) {
+            assertEquals(Arrays.asList("1"), ids(reopened.read(10)));
+            reopened.append(change("2", DeadLetterRecord.Operation.INDEX));
+            assertEquals(Arrays.asList("1", "2"), ids(reopened.read(10)));
+        }
+    }
+
+    @Test
+    public void changesAreReadAcrossSegmentsAndReplayedSegmentsAreDeleted() throws IOException {
+
+        SpillConfig config = config(256, 1024 * 1024);
+        List<String> appended = new ArrayList<>();
+        try (SpillLog spillLog = new SpillLog(config)) {
+            for (int i = 0; i < 20; i++) {
+                spillLog.append(change(String.valueOf(i), DeadLetterRecord.Operation.INDEX));
+                appended.add(String.valueOf(i));
+            }
+            assertTrue(segmentFiles().size() > 1);
+
+            SpillLog.Batch batch = spillLog.read(100);
+            assertEquals(appended, ids(batch));
+
+            spillLog.commit(batch);
+            assertTrue(spillLog.isEmpty());
+            assertEquals(1, segmentFiles().size());
+        }
+
+        try (SpillLog reopened = new SpillLog(config)) {
+            assertTrue(reopened.isEmpty());
+            assertTrue(reopened.read(100).getChanges().isEmpty());
+        }
+    }
+
+    @Test
+    public void appendBeyondMaxSizeIsRefused() throws IOException {
+
+        try (SpillLog spillLog = new SpillLog(config(256, 512))) {
+
+            int appended = 0;
+            while (spillLog.append(change(String.valueOf(appended), DeadLetterRecord.Operation.INDEX))) {
+                appended++;
+            }
+
+            assertTrue(appended > 0);
+            assertTrue(spillLog.getBytes() <= 512);
+            assertEquals(appended, spillLog.read(100).getChanges().size());
+        }
+    }
+
+    @Test
+    public void coalesceKeepsLastChangeOfEachDocument() {
+
+        List<SpilledChange> coalesced = SpillLog.coalesce(Arrays.asList(
+                change("1", DeadLetterRecord.Operation.INDEX),
+                change("2", DeadLetterRecord.Operation.INDEX),
+                change("1", DeadLetterRecord.Operation.DELETE)));
+
+        assertEquals(Arrays.asList("2", "1"), coalesced.stream()
+                .map(SpilledChange::getDocumentId)
+                .collect(Collectors.toList()));
+        assertEquals(DeadLetterRecord.Operation.DELETE, coalesced.get(1).getOperation());
+    }
+
+    @Test
+    public void coalesceMergesUpdateIntoPrecedingIndex() {
+
+        SpilledChange index = change("1", DeadLetterRecord.Operation.INDEX);
+        SpilledChange update = change("1", DeadLetterRecord.Operation.UPDATE);
+        ((ObjectNode) update.getSource()).put("other", "updated");
+        ((ObjectNode) update.getSource()).remove("field");
+
+        List<SpilledChange> coalesced = SpillLog.coalesce(Arrays.asList(index, update));
+        assertEquals(1, coalesced.size());
+        assertEquals(DeadLetterRecord.Operation.INDEX, coalesced.get(0).getOperation());
+        assertEquals("value-1", coalesced.get(0).getSource().path("field").asText());
+        assertEquals("updated", coalesced.get(0).getSource().path("other").asText());
+        assertFalse(coalesced.get(0).isDeleteFirst());
+    }
+
+    @Test
+    public void coalesceKeepsDeleteAsFlagOfFollowingIndex() {
+
+        List<SpilledChange> coalesced = SpillLog.coalesce(Arrays.asList(
+                change("1", DeadLetterRecord.Operation.DELETE),
+                change("1", DeadLetterRecord.Operation.INDEX)));
+
+        assertEquals(1, coalesced.size());
+        assertEquals(DeadLetterRecord.Operation.INDEX, coalesced.get(0).getOperation());
+        assertTrue(coalesced.get(0).isDeleteFirst());
+    }
+
+    private SpillConfig config(long segmentBytes, long maxBytes) {
+
+        SpillConfig config = new SpillConfig();
+        config.setDirectory(folder.getRoot().getAbsolutePath());
+        config.setSegmentBytes(segmentBytes);
+        config.setMaxBytes(maxBytes);
+        return config;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.getRoot().toPath(), "spill-*.log")) {
+            stream.forEach(files::add);
+        }
+
+        files.sort(null);
+        return files;
+    }
+
+    private static SpilledChange change(String documentId, DeadLetterRecord.Operation operation) {
+
+        ObjectNode source = mapper.createObjectNode().put("field", "value-" + documentId);
+        return new SpilledChange("/apps/table", documentId, operation, "apps_table", null,
+                (operation == DeadLetterRecord.Operation.DELETE) ? null : source, null);
+    }
+
+    private static List<String> ids(SpillLog.Batch batch) {
+        return batch.getChanges().stream()
+                .map(SpilledChange::getDocumentId)
+                .collect(Collectors.toList());
+    }
+
+}
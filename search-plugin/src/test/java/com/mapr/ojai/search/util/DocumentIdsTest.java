@@ -0,0 +1,134 @@
+package com.mapr.ojai.search.util;
+
+import org.junit.Test;
+import org.ojai.Value;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DocumentIdsTest {
+
+    @Test
+    public void plainStringIdIsUsedAsIs() {
+        assertEquals("user-1", DocumentIds.encode(value(Value.Type.STRING, "user-1")));
+        assertEquals("user-1", DocumentIds.decode("user-1"));
+    }
+
+    @Test
+    public void escapeCharIsDoubled() {
+
+        String encoded = DocumentIds.encode(value(Value.Type.STRING, "~b123"));
+        assertEquals("~~b123", encoded);
+        assertEquals("~b123", DocumentIds.decode(encoded));
+
+        assertEquals("~~", DocumentIds.encode(value(Value.Type.STRING, "~")));
+        assertEquals("~", DocumentIds.decode("~~"));
+    }
+
+    @Test
+    public void escapeCharIsKeptInsideString() {
+        assertEquals("a~b", DocumentIds.encode(value(Value.Type.STRING, "a~b")));
+        assertEquals("a~b", DocumentIds.decode("a~b"));
+    }
+
+    @Test
+    public void emptyAndSingleCharIdsAreNotEscaped() {
+        assertEquals("", DocumentIds.encode(value(Value.Type.STRING, "")));
+        assertEquals("", DocumentIds.decode(""));
+        assertEquals("x", DocumentIds.decode("x"));
+    }
+
+    @Test
+    public void integralIdsRoundTrip() {
+
+        assertEquals("~n42", DocumentIds.encode(value(Value.Type.INT, 42)));
+        assertEquals("~n-7", DocumentIds.encode(value(Value.Type.BYTE, (byte) -7)));
+        assertEquals("~n0", DocumentIds.encode(value(Value.Type.SHORT, (short) 0)));
+
+        for (long id : new long[]{0L, 1L, -1L, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            String encoded = DocumentIds.encode(value(Value.Type.LONG, id));
+            assertEquals("~n" + id, encoded);
+            assertEquals(id, DocumentIds.decode(encoded));
+        }
+    }
+
+    @Test
+    public void binaryIdsRoundTrip() {
+
+        Random random = new Random(42);
+        for (int length = 0; length < 40; length++) {
+
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+
+            String encoded = DocumentIds.encode(value(Value.Type.BINARY, ByteBuffer.wrap(bytes)));
+            assertEquals("~b" + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes), encoded);
+            assertEquals(ByteBuffer.wrap(bytes), DocumentIds.decode(encoded));
+        }
+    }
+
+    @Test
+    public void binaryIdIsEncodedFromItsPosition() {
+
+        ByteBuffer binary = ByteBuffer.wrap(new byte[]{9, 9, 1, 2, 3});
+        binary.position(2);
+
+        String encoded = DocumentIds.encode(value(Value.Type.BINARY, binary));
+        assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 3}), DocumentIds.decode(encoded));
+        assertEquals(2, binary.position());
+    }
+
+    @Test
+    public void longIdsAfterLargeBinaryIdDoNotReuseStaleChars() {
+
+        DocumentIds.encode(value(Value.Type.BINARY, ByteBuffer.wrap(new byte[300])));
+        assertEquals("~n5", DocumentIds.encode(value(Value.Type.LONG, 5L)));
+    }
+
+    @Test
+    public void decodeAllKeepsOrder() {
+
+        List<Object> decoded = DocumentIds.decodeAll(Arrays.asList("a", "~n1", "~~b"));
+        assertEquals(Arrays.asList("a", 1L, "~b"), decoded);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownEncodingIsRejected() {
+        DocumentIds.decode("~x1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedIdTypeIsRejected() {
+        DocumentIds.encode(value(Value.Type.DOUBLE, 1.5));
+    }
+
+    /**
+     * Returns value of the specified type, which answers only the getters used to encode ids.
+     */
+    private static Value value(Value.Type type, Object object) {
+        return (Value) Proxy.newProxyInstance(Value.class.getClassLoader(), new Class<?>[]{Value.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getType":
+                            return type;
+                        case "getString":
+                        case "getBinary":
+                        case "getByte":
+                        case "getShort":
+                        case "getInt":
+                        case "getLong":
+                        case "getObject":
+                            return object;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+}